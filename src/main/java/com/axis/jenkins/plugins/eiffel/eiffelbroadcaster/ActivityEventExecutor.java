@@ -0,0 +1,261 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.EventSigner;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Signs, validates, and enqueues Eiffel activity events on worker threads so that the
+ * listeners that run while Jenkins holds the Queue lock return as soon as the event has
+ * been built. Events are distributed over the workers by the same ordering key as in
+ * {@link MQConnection}, and each worker processes its events one at a time, so the
+ * events of an activity are published in the order they were submitted.
+ * <p>
+ * Optionally, events are signed in parallel by a separate pool with one thread per CPU core
+ * before they reach their worker, which waits for each event's signature in turn. This lets a burst of
+ * events of the same activity be signed concurrently while still being published in order.
+ */
+final class ActivityEventExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ActivityEventExecutor.class);
+
+    /** The name of the termination milestone that's attained when the submitted events have been published. */
+    static final String EVENTS_SUBMITTED = "EiffelBroadcaster.activityEventsSubmitted";
+
+    /** The number of worker threads that events are processed on. */
+    private static final int THREADS = Math.max(1, SystemProperties.getInteger(
+            ActivityEventExecutor.class.getName() + ".threads", 2));
+
+    /** Whether events are signed in parallel by a pool with one thread per CPU core. */
+    private static final boolean PARALLEL_SIGNING = SystemProperties.getBoolean(
+            ActivityEventExecutor.class.getName() + ".parallelSigning");
+
+    /** The maximum time (in milliseconds) to wait for the submitted events when Jenkins shuts down. */
+    private static final long STOP_TIMEOUT = 10000L;
+
+    private static final ActivityEventExecutor INSTANCE = new ActivityEventExecutor(
+            THREADS, PARALLEL_SIGNING ? Runtime.getRuntime().availableProcessors() : 0);
+
+    private final ExecutorService[] workers;
+
+    /** The pool that signs events before they're published, or null if the workers sign the events. */
+    @CheckForNull
+    private final ExecutorService signingPool;
+
+    /**
+     * @param threads the number of workers
+     * @param signingThreads the number of threads that sign events in parallel, or zero
+     *                       to let each worker sign its events
+     */
+    ActivityEventExecutor(int threads, int signingThreads) {
+        workers = new ExecutorService[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(new NamingThreadFactory(
+                    new DaemonThreadFactory(), "Eiffel activity event worker #" + i));
+        }
+        signingPool = signingThreads > 0
+                ? Executors.newFixedThreadPool(signingThreads, new NamingThreadFactory(
+                        new DaemonThreadFactory(), "Eiffel event signer"))
+                : null;
+    }
+
+    @NonNull
+    static ActivityEventExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publishes an event that isn't sent by a build asynchronously.
+     *
+     * @see #submit(EiffelEvent, EventSigner, Run)
+     */
+    @NonNull
+    Future<?> submit(@NonNull final EiffelEvent event, @CheckForNull final EventSigner signer) {
+        return submit(event, signer, null);
+    }
+
+    /**
+     * Publishes an event asynchronously. Errors are logged in the same way as by
+     * {@link Util#tryPublishEvent(EiffelEvent, EventSigner, Run)}. If the executor has been shut down
+     * the event is published by the calling thread.
+     *
+     * @param event the event to publish, which mustn't be modified by the caller afterwards
+     * @param signer the signer to pass on to {@link Util#tryPublishEvent(EiffelEvent, EventSigner, Run)}
+     * @param run the build that sends the event, or null
+     * @return a future that completes when the event has been enqueued, dropped, or failed
+     */
+    @NonNull
+    Future<?> submit(@NonNull final EiffelEvent event, @CheckForNull final EventSigner signer,
+                     @CheckForNull final Run<?, ?> run) {
+        var signed = signer != null ? signAsync(event, signer) : null;
+        try {
+            if (signed == null) {
+                return getWorker(Util.getOrderingKey(event)).submit(() -> Util.tryPublishEvent(event, signer, run));
+            }
+            return getWorker(Util.getOrderingKey(event)).submit(() -> publishSigned(event, signed, run));
+        } catch (RejectedExecutionException e) {
+            logger.debug("The activity event executor has been shut down, publishing {} with id {} inline",
+                    event.getMeta().getType(), event.getMeta().getId());
+            if (signed == null) {
+                Util.tryPublishEvent(event, signer, run);
+            } else {
+                publishSigned(event, signed, run);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Starts signing an event on the signing pool, unless the event would be thrown away anyway
+     * because event publishing is disabled or the broker is unreachable and the queue is full.
+     *
+     * @return a future that completes with true if the event should be published, or null if
+     *         the event should be signed when it's published (which won't happen if it's dropped)
+     */
+    @CheckForNull
+    private CompletableFuture<Boolean> signAsync(@NonNull final EiffelEvent event, @NonNull final EventSigner signer) {
+        if (signingPool == null || Util.isDiscardedUnprepared(event)) {
+            return null;
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> Util.signEvent(event, signer), signingPool);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    /** Waits for an event to be signed and publishes it unless the signing failed. */
+    private static void publishSigned(@NonNull final EiffelEvent event, @NonNull final CompletableFuture<Boolean> signed,
+                                      @CheckForNull final Run<?, ?> run) {
+        if (signed.join()) {
+            Util.tryPublishEvent(event, null, run);
+        }
+    }
+
+    /**
+     * Publishes an event on the worker thread that processes the event's activity and waits for it
+     * to complete, so that the event is published after all previously submitted events of the
+     * activity and before the caller goes on.
+     *
+     * @param event the event to publish
+     * @param signer the signer to pass on to {@link Util#tryPublishEvent(EiffelEvent, EventSigner, Run)}
+     * @param run the build that sends the event
+     */
+    void publish(@NonNull final EiffelEvent event, @CheckForNull final EventSigner signer,
+                 @NonNull final Run<?, ?> run) {
+        try {
+            submit(event, signer, run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Unexpected error when publishing {} with id {}",
+                    event.getMeta().getType(), event.getMeta().getId(), e.getCause());
+        }
+    }
+
+    /**
+     * Waits until all events that were submitted before the call have been processed.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all events were processed within the timeout
+     */
+    boolean flush(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        var deadline = System.nanoTime() + unit.toNanos(timeout);
+        var markers = new ArrayList<Future<?>>(workers.length);
+        for (var worker : workers) {
+            try {
+                markers.add(worker.submit(() -> { }));
+            } catch (RejectedExecutionException e) {
+                // Shut down, so there's nothing left to wait for except what awaitTermination covers.
+            }
+        }
+        for (var marker : markers) {
+            try {
+                marker.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // Can't happen for an empty task.
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Stops accepting new events and waits for the submitted ones to be published. */
+    void stop() {
+        for (var worker : workers) {
+            worker.shutdown();
+        }
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_TIMEOUT);
+        try {
+            for (var worker : workers) {
+                if (!worker.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    logger.warn("Timed out waiting for Eiffel activity events to be published");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // The workers wait for the signatures of their events, so the pool is only stopped after them.
+            if (signingPool != null) {
+                signingPool.shutdown();
+            }
+        }
+    }
+
+    @NonNull
+    private ExecutorService getWorker(@NonNull final String orderingKey) {
+        return workers[Math.floorMod(orderingKey.hashCode(), workers.length)];
+    }
+
+    /**
+     * Publishes the events that are still waiting when Jenkins shuts down,
+     * before the connection to the broker is closed.
+     */
+    @Terminator(attains = EVENTS_SUBMITTED)
+    public static void shutdown() {
+        getInstance().stop();
+    }
+}
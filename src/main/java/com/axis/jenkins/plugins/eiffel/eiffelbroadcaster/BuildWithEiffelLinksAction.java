@@ -26,8 +26,10 @@
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventCodec;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.model.Action;
 import hudson.model.Cause;
@@ -97,6 +99,9 @@ public class BuildWithEiffelLinksAction<
      */
     public static final String URL_SUFFIX = "eiffel";
 
+    private static final ObjectReader LINKS_READER = EventCodec.getMapper().readerFor(
+            new TypeReference<List<EiffelEvent.Link>>() { });
+
     private final JobT job;
 
     public BuildWithEiffelLinksAction(JobT job) {
@@ -190,10 +195,7 @@ public class BuildWithEiffelLinksAction<
         // provides us a JSONObject and we want to use Jackson for the events themselves.
         try {
             var eiffelLinks = formData.getJSONArray(FORM_PARAM_EIFFELLINKS);
-            var mapper = new ObjectMapper();
-            var listType = mapper.getTypeFactory().constructCollectionType(
-                    List.class, EiffelEvent.Link.class);
-            List<EiffelEvent.Link> links = mapper.readValue(eiffelLinks.toString(), listType);
+            List<EiffelEvent.Link> links = LINKS_READER.readValue(eiffelLinks.toString());
             return links.isEmpty() ? null : new EiffelCause(links);
         }
         catch (JSONException e) {
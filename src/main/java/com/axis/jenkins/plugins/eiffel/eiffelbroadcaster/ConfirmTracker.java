@@ -0,0 +1,198 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of the messages published on a single channel that haven't been confirmed by the broker.
+ * Publisher confirm sequence numbers are consecutive within a channel and the number of unconfirmed
+ * messages is bounded, so the messages are kept in a ring indexed by sequence number rather than
+ * in a map with boxed keys. Each message has a deadline by which it should have been confirmed.
+ *
+ * <p>A tracker lives and dies with its channel. When the channel is lost, a confirm times out or
+ * the broker nacks a message, the channel is abandoned and {@link #drain()} hands back the
+ * unconfirmed messages, in publishing order, so that they can be published on a new channel.</p>
+ *
+ * <p>The publisher thread adds messages while the connection's thread confirms them,
+ * so all methods are synchronized.</p>
+ *
+ * @param <T> the type of the messages
+ */
+final class ConfirmTracker<T> {
+    private final Object[] messages;
+    private final long[] deadlines;
+    private final int mask;
+
+    /** The sequence number of the oldest message that may be unconfirmed. */
+    private long firstSequenceNumber = -1;
+
+    /** The sequence number that the next tracked message is expected to have. */
+    private long nextSequenceNumber = -1;
+
+    private int size;
+    private boolean failed;
+
+    /**
+     * Constructor.
+     *
+     * @param maxUnconfirmed the maximum number of unconfirmed messages
+     */
+    ConfirmTracker(int maxUnconfirmed) {
+        if (maxUnconfirmed < 1 || maxUnconfirmed > 1 << 30) {
+            throw new IllegalArgumentException("Invalid number of unconfirmed messages: " + maxUnconfirmed);
+        }
+        var capacity = maxUnconfirmed == 1 ? 1 : Integer.highestOneBit(maxUnconfirmed - 1) << 1;
+        messages = new Object[capacity];
+        deadlines = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Starts tracking a message that is about to be published.
+     *
+     * @param sequenceNumber the message's sequence number, from {@link com.rabbitmq.client.Channel#getNextPublishSeqNo()}
+     * @param message the message
+     * @param deadline the {@link System#nanoTime()} by which the message should have been confirmed
+     * @throws IllegalStateException if the sequence number doesn't follow the previous one,
+     *         or if there are too many unconfirmed messages
+     */
+    synchronized void track(long sequenceNumber, T message, long deadline) {
+        if (nextSequenceNumber < 0) {
+            firstSequenceNumber = sequenceNumber;
+            nextSequenceNumber = sequenceNumber;
+        }
+        if (sequenceNumber != nextSequenceNumber) {
+            throw new IllegalStateException(String.format(
+                    "Expected sequence number %d, got %d", nextSequenceNumber, sequenceNumber));
+        }
+        if (nextSequenceNumber - firstSequenceNumber >= messages.length) {
+            throw new IllegalStateException("Too many unconfirmed messages");
+        }
+        var index = (int) sequenceNumber & mask;
+        messages[index] = message;
+        deadlines[index] = deadline;
+        nextSequenceNumber++;
+        size++;
+    }
+
+    /**
+     * Marks one or more messages as confirmed by the broker.
+     *
+     * @param sequenceNumber the sequence number from the broker's ack
+     * @param multiple whether all messages up to and including the sequence number are confirmed
+     * @return the confirmed messages that were still being tracked, in publishing order
+     */
+    synchronized List<T> confirm(long sequenceNumber, boolean multiple) {
+        var confirmed = new ArrayList<T>();
+        if (size == 0 || sequenceNumber < firstSequenceNumber || sequenceNumber >= nextSequenceNumber) {
+            return confirmed;
+        }
+        var from = multiple ? firstSequenceNumber : sequenceNumber;
+        for (var s = from; s <= sequenceNumber; s++) {
+            var message = remove(s);
+            if (message != null) {
+                confirmed.add(message);
+            }
+        }
+        // Skip past messages that have been confirmed one at a time.
+        while (firstSequenceNumber < nextSequenceNumber && messages[(int) firstSequenceNumber & mask] == null) {
+            firstSequenceNumber++;
+        }
+        return confirmed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T remove(long sequenceNumber) {
+        var index = (int) sequenceNumber & mask;
+        var message = (T) messages[index];
+        if (message != null) {
+            messages[index] = null;
+            size--;
+        }
+        return message;
+    }
+
+    /**
+     * Marks the tracker as failed, because the broker has nacked a message or a message couldn't be
+     * published. The unconfirmed messages are kept so that they can be republished, in order, on a new
+     * channel. There's no way to untrack a message whose publishing failed, since the channel's sequence
+     * number has advanced regardless and the channel has to be abandoned anyway.
+     */
+    synchronized void fail() {
+        failed = true;
+    }
+
+    /**
+     * Returns whether the channel should be abandoned, because the broker has nacked a message
+     * or the oldest unconfirmed message hasn't been confirmed in time.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return true if the tracker has failed or a confirm has timed out
+     */
+    synchronized boolean hasFailed(long now) {
+        return failed || (size > 0 && now - getOldestDeadline() >= 0);
+    }
+
+    /**
+     * Gets the deadline of the oldest unconfirmed message. Messages are tracked in publishing order
+     * with deadlines that don't decrease, so this is also the earliest deadline.
+     *
+     * @return the deadline, or {@link Long#MAX_VALUE} if there are no unconfirmed messages
+     */
+    synchronized long getOldestDeadline() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        return deadlines[(int) firstSequenceNumber & mask];
+    }
+
+    /**
+     * Stops tracking all messages.
+     *
+     * @return the messages that haven't been confirmed, in publishing order
+     */
+    synchronized List<T> drain() {
+        var unconfirmed = new ArrayList<T>(size);
+        for (var s = firstSequenceNumber; size > 0 && s < nextSequenceNumber; s++) {
+            var message = remove(s);
+            if (message != null) {
+                unconfirmed.add(message);
+            }
+        }
+        firstSequenceNumber = nextSequenceNumber;
+        return unconfirmed;
+    }
+
+    /**
+     * Gets the number of unconfirmed messages.
+     *
+     * @return the number of unconfirmed messages
+     */
+    synchronized int size() {
+        return size;
+    }
+}
@@ -27,14 +27,25 @@ package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityFinishedEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityStartedEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventCodec;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.Action;
 import hudson.model.Run;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import jenkins.model.RunAction2;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * An {@link Action} for storing the Eiffel activity events ({@link EiffelActivityTriggeredEvent} (ActT),
@@ -44,15 +55,51 @@ import org.kohsuke.stapler.export.ExportedBean;
  *
  * This action is instantiated when ActT is sent and always contains that event. At that point the contents
  * of ActS and ActF are unknown so the methods for returning those events return null.
+ *
+ * The id, type, and time of each event are stored next to its JSON string, so linking to an event doesn't
+ * require it to be parsed. The public getters parse a new copy of an event on each call, which the caller
+ * is free to modify, while the plugin itself uses shared copies that are kept in memory for as long as
+ * the JVM can spare the memory.
+ *
+ * If enabled in the plugin configuration, the events are stored in the Run's {@link EventJournal} instead of
+ * in this action once it's attached to a Run. The events of actions that are loaded with their events are
+ * migrated to the journal when the Run is next saved, so merely loading a Run (e.g. to render a page) never
+ * writes any files.
  */
 @ExportedBean
-public class EiffelActivityAction implements Action {
+public class EiffelActivityAction implements RunAction2 {
+    private static final Logger logger = LoggerFactory.getLogger(EiffelActivityAction.class);
+
+    private static final String FINISHED_EVENT_TYPE = EiffelActivityFinishedEvent.class.getSimpleName();
+    private static final String STARTED_EVENT_TYPE = EiffelActivityStartedEvent.class.getSimpleName();
+    private static final String TRIGGER_EVENT_TYPE = EiffelActivityTriggeredEvent.class.getSimpleName();
+    private static final Set<String> EVENT_TYPES = Set.of(FINISHED_EVENT_TYPE, STARTED_EVENT_TYPE, TRIGGER_EVENT_TYPE);
+
+    /* The events' JSON strings, unless they're stored in the Run's event journal. */
     private String finishedEventJSON;
     private String startedEventJSON;
     private String triggerEventJSON;
 
+    /* Whether new events are stored in the Run's event journal. */
+    private boolean journaled;
+
+    /* The headers of the events. Null in actions stored by older versions of the plugin until first needed. */
+    private EventHeader finishedEventHeader;
+    private EventHeader startedEventHeader;
+    private EventHeader triggerEventHeader;
+
+    private transient volatile SoftReference<EiffelActivityFinishedEvent> finishedEvent;
+    private transient volatile SoftReference<EiffelActivityStartedEvent> startedEvent;
+    private transient volatile SoftReference<EiffelActivityTriggeredEvent> triggerEvent;
+
+    /* The JSON strings of the events read from the event journal, by event type. */
+    private transient volatile SoftReference<Map<String, String>> journaledEventJSON;
+
+    private transient Run<?, ?> run;
+
     public EiffelActivityAction(@NonNull EiffelActivityTriggeredEvent triggerEvent) throws JsonProcessingException {
         this.triggerEventJSON = triggerEvent.toJSON();
+        this.triggerEventHeader = new EventHeader(triggerEvent);
     }
 
     /**
@@ -61,11 +108,36 @@ public class EiffelActivityAction implements Action {
      */
     @CheckForNull
     public EiffelActivityFinishedEvent getFinishedEvent() throws JsonProcessingException {
-        if (finishedEventJSON == null) {
+        var json = getFinishedEventJSON();
+        return json != null ? EventCodec.readValue(json, EiffelActivityFinishedEvent.class) : null;
+    }
+
+    /** Like {@link #getFinishedEvent()}, but returns a shared copy of the event that must not be modified. */
+    @CheckForNull
+    EiffelActivityFinishedEvent getSharedFinishedEvent() throws JsonProcessingException {
+        var json = getFinishedEventJSON();
+        if (json == null) {
             return null;
         }
-        // It might make sense to cache this value for future use. It's a memory/CPU trade-off.
-        return new ObjectMapper().readValue(finishedEventJSON, EiffelActivityFinishedEvent.class);
+        var ref = finishedEvent;
+        var event = ref != null ? ref.get() : null;
+        if (event == null) {
+            event = EventCodec.readValue(json, EiffelActivityFinishedEvent.class);
+            finishedEvent = new SoftReference<>(event);
+        }
+        return event;
+    }
+
+    /**
+     * Returns the id, type, and time of the Run's {@link EiffelActivityFinishedEvent}, or null if the Run
+     * hasn't completed and no event has been sent.
+     */
+    @CheckForNull
+    public EventHeader getFinishedEventHeader() throws JsonProcessingException {
+        if (finishedEventHeader == null && getFinishedEventJSON() != null) {
+            finishedEventHeader = new EventHeader(getSharedFinishedEvent());
+        }
+        return finishedEventHeader;
     }
 
     /**
@@ -75,12 +147,18 @@ public class EiffelActivityAction implements Action {
     @CheckForNull
     @Exported
     public String getFinishedEventJSON() {
-        return finishedEventJSON;
+        var json = finishedEventJSON;
+        return json != null ? json : getJournaledEventJSON(FINISHED_EVENT_TYPE);
     }
 
     /** Stores the {@link EiffelActivityFinishedEvent} that was sent when this Run completed. */
     void setFinishedEvent(@NonNull EiffelActivityFinishedEvent finishedEvent) throws JsonProcessingException {
-        finishedEventJSON = finishedEvent.toJSON();
+        var json = finishedEvent.toJSON();
+        if (!appendToJournal(json)) {
+            finishedEventJSON = json;
+        }
+        finishedEventHeader = new EventHeader(finishedEvent);
+        this.finishedEvent = null;
     }
 
     /**
@@ -89,11 +167,36 @@ public class EiffelActivityAction implements Action {
      */
     @CheckForNull
     public EiffelActivityStartedEvent getStartedEvent() throws JsonProcessingException {
-        if (startedEventJSON == null) {
+        var json = getStartedEventJSON();
+        return json != null ? EventCodec.readValue(json, EiffelActivityStartedEvent.class) : null;
+    }
+
+    /** Like {@link #getStartedEvent()}, but returns a shared copy of the event that must not be modified. */
+    @CheckForNull
+    EiffelActivityStartedEvent getSharedStartedEvent() throws JsonProcessingException {
+        var json = getStartedEventJSON();
+        if (json == null) {
             return null;
         }
-        // It might make sense to cache this value for future use. It's a memory/CPU trade-off.
-        return new ObjectMapper().readValue(startedEventJSON, EiffelActivityStartedEvent.class);
+        var ref = startedEvent;
+        var event = ref != null ? ref.get() : null;
+        if (event == null) {
+            event = EventCodec.readValue(json, EiffelActivityStartedEvent.class);
+            startedEvent = new SoftReference<>(event);
+        }
+        return event;
+    }
+
+    /**
+     * Returns the id, type, and time of the Run's {@link EiffelActivityStartedEvent}, or null if the Run
+     * hasn't started and no event has been sent.
+     */
+    @CheckForNull
+    public EventHeader getStartedEventHeader() throws JsonProcessingException {
+        if (startedEventHeader == null && getStartedEventJSON() != null) {
+            startedEventHeader = new EventHeader(getSharedStartedEvent());
+        }
+        return startedEventHeader;
     }
 
     /**
@@ -103,25 +206,162 @@ public class EiffelActivityAction implements Action {
     @CheckForNull
     @Exported
     public String getStartedEventJSON() {
-        return startedEventJSON;
+        var json = startedEventJSON;
+        return json != null ? json : getJournaledEventJSON(STARTED_EVENT_TYPE);
     }
 
     /** Stores the {@link EiffelActivityStartedEvent} that was sent when this Run completed. */
     void setStartedEvent(@NonNull EiffelActivityStartedEvent startedEvent) throws JsonProcessingException {
-        startedEventJSON = startedEvent.toJSON();
+        var json = startedEvent.toJSON();
+        if (!appendToJournal(json)) {
+            startedEventJSON = json;
+        }
+        startedEventHeader = new EventHeader(startedEvent);
+        this.startedEvent = null;
     }
 
     /** Returns the Run's EiffelActivityTriggeredEvent. */
     @NonNull
     public EiffelActivityTriggeredEvent getTriggerEvent() throws JsonProcessingException {
-        // It might make sense to cache this value for future use. It's a memory/CPU trade-off.
-        return new ObjectMapper().readValue(triggerEventJSON, EiffelActivityTriggeredEvent.class);
+        return EventCodec.readValue(getRequiredTriggerEventJSON(), EiffelActivityTriggeredEvent.class);
+    }
+
+    /** Like {@link #getTriggerEvent()}, but returns a shared copy of the event that must not be modified. */
+    @NonNull
+    EiffelActivityTriggeredEvent getSharedTriggerEvent() throws JsonProcessingException {
+        var ref = triggerEvent;
+        var event = ref != null ? ref.get() : null;
+        if (event == null) {
+            event = EventCodec.readValue(getRequiredTriggerEventJSON(), EiffelActivityTriggeredEvent.class);
+            triggerEvent = new SoftReference<>(event);
+        }
+        return event;
+    }
+
+    @NonNull
+    private String getRequiredTriggerEventJSON() throws JsonMappingException {
+        var json = getTriggerEventJSON();
+        if (json == null) {
+            throw new JsonMappingException(null, String.format("The ActT of %s couldn't be read", run));
+        }
+        return json;
+    }
+
+    /** Returns the id, type, and time of the Run's {@link EiffelActivityTriggeredEvent}. */
+    @NonNull
+    public EventHeader getTriggerEventHeader() throws JsonProcessingException {
+        if (triggerEventHeader == null) {
+            triggerEventHeader = new EventHeader(getSharedTriggerEvent());
+        }
+        return triggerEventHeader;
+    }
+
+    /** Returns the id of the Run's {@link EiffelActivityTriggeredEvent}, e.g. for linking to it. */
+    @NonNull
+    public UUID getTriggerEventId() throws JsonProcessingException {
+        return getTriggerEventHeader().getId();
     }
 
     /** Returns the Run's {@link EiffelActivityTriggeredEvent} expressed as a JSON string. */
     @Exported
     public String getTriggerEventJSON() {
-        return triggerEventJSON;
+        var json = triggerEventJSON;
+        return json != null ? json : getJournaledEventJSON(TRIGGER_EVENT_TYPE);
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+        moveEventsToJournal();
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    /**
+     * Called by XStream when the Run is saved, which is when the events of a loaded action are migrated.
+     *
+     * @return this action
+     */
+    private Object writeReplace() {
+        moveEventsToJournal();
+        return this;
+    }
+
+    /**
+     * Moves the events stored in this action to the Run's event journal if the journal is enabled. Events
+     * that are already in the journal, e.g. because the Run wasn't saved after an earlier migration, aren't
+     * added again. The Run has to be saved for the migration to be persisted.
+     */
+    private void moveEventsToJournal() {
+        if (journaled || run == null || !EventJournal.isEnabled()) {
+            return;
+        }
+        var journal = EventJournal.of(run);
+        try {
+            var existing = journal.firstEvents(EVENT_TYPES);
+            var events = new LinkedHashMap<String, String>();
+            events.put(TRIGGER_EVENT_TYPE, triggerEventJSON);
+            events.put(STARTED_EVENT_TYPE, startedEventJSON);
+            events.put(FINISHED_EVENT_TYPE, finishedEventJSON);
+            for (var entry : events.entrySet()) {
+                if (entry.getValue() != null && !existing.containsKey(entry.getKey())) {
+                    journal.append(entry.getValue());
+                }
+            }
+            // Readers find the events in the journal from here on.
+            journaledEventJSON = null;
+            journaled = true;
+            triggerEventJSON = null;
+            startedEventJSON = null;
+            finishedEventJSON = null;
+        } catch (IOException e) {
+            logger.warn("Unable to move the Eiffel events of {} to {}, keeping them in build.xml: {}",
+                    run, journal, e.toString());
+        }
+    }
+
+    /**
+     * Appends an event to the Run's event journal if this action's events are stored there.
+     *
+     * @return true if the event was appended, false if it should be stored in this action
+     */
+    private boolean appendToJournal(@NonNull final String eventJSON) {
+        if (!journaled || run == null) {
+            return false;
+        }
+        var journal = EventJournal.of(run);
+        try {
+            journal.append(eventJSON);
+            journaledEventJSON = null;
+            return true;
+        } catch (IOException e) {
+            logger.warn("Unable to append an Eiffel event to {}, storing it in build.xml: {}", journal, e.toString());
+            return false;
+        }
+    }
+
+    /** Returns the JSON string of the first event of a type in the Run's event journal, or null. */
+    @CheckForNull
+    private String getJournaledEventJSON(@NonNull final String eventType) {
+        if (!journaled || run == null) {
+            return null;
+        }
+        var ref = journaledEventJSON;
+        var events = ref != null ? ref.get() : null;
+        if (events == null) {
+            var journal = EventJournal.of(run);
+            try {
+                events = journal.firstEvents(EVENT_TYPES);
+            } catch (IOException e) {
+                logger.warn("Unable to read the Eiffel events of {} from {}: {}", run, journal, e.toString());
+                return null;
+            }
+            journaledEventJSON = new SoftReference<>(events);
+        }
+        return events.get(eventType);
     }
 
     @CheckForNull
@@ -141,4 +381,34 @@ public class EiffelActivityAction implements Action {
     public String getUrlName() {
         return null;
     }
+
+    /** The id, type, and time of an event, which is what's needed to link to it or to list it. */
+    public static final class EventHeader {
+        private final UUID id;
+        private final String type;
+        private final long time;
+
+        public EventHeader(@NonNull EiffelEvent event) {
+            this.id = event.getMeta().getId();
+            this.type = event.getMeta().getType();
+            this.time = event.getMeta().getTime();
+        }
+
+        /** Returns the event's <code>meta.id</code>. */
+        @NonNull
+        public UUID getId() {
+            return id;
+        }
+
+        /** Returns the event's <code>meta.type</code>. */
+        @NonNull
+        public String getType() {
+            return type;
+        }
+
+        /** Returns the event's <code>meta.time</code>, in milliseconds since the epoch. */
+        public long getTime() {
+            return time;
+        }
+    }
 }
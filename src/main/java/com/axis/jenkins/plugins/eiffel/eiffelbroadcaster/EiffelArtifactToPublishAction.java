@@ -25,8 +25,8 @@
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactCreatedEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventCodec;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.Action;
@@ -37,7 +37,8 @@ import org.kohsuke.stapler.export.ExportedBean;
  * Stores information about an {@link EiffelArtifactCreatedEvent} in a {@link hudson.model.Run} so that a future
  * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.pipeline.PublishEiffelArtifactsStep} can construct and
  * send an {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactPublishedEvent} once
- * the artifact is actually available for download.
+ * the artifact is actually available for download. When {@link EventJournal#isEnabled() journaling} is enabled the
+ * event is appended to the Run's {@link EventJournal} instead, and this action is only found in older builds.
  */
 @ExportedBean
 public class EiffelArtifactToPublishAction implements Action {
@@ -49,7 +50,7 @@ public class EiffelArtifactToPublishAction implements Action {
 
     @NonNull
     public EiffelArtifactCreatedEvent getEvent() throws JsonProcessingException {
-        return new ObjectMapper().readValue(eventJSON, EiffelArtifactCreatedEvent.class);
+        return EventCodec.readValue(eventJSON, EiffelArtifactCreatedEvent.class);
     }
 
     @Exported
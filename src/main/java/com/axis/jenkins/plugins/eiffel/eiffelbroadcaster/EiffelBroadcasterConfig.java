@@ -24,12 +24,20 @@
 
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.BundledSchemaProvider;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.ChainedSchemaProvider;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.DirectorySchemaProvider;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEventFactory;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventValidator;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.HashAlgorithm;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.SchemaFetcher;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.SchemaProvider;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.SchemaUriProvider;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.ValidationPolicy;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.routingkeys.FixedRoutingKeyProvider;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.routingkeys.RoutingKeyProvider;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.routingkeys.SepiaRoutingKeyProvider;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.SystemEventSigner;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
@@ -41,21 +49,30 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.Descriptor;
 import hudson.model.Item;
 import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import hudson.util.NamingThreadFactory;
 import hudson.util.Secret;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import javax.servlet.ServletException;
 import jenkins.model.GlobalConfiguration;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.validator.routines.UrlValidator;
@@ -114,6 +131,20 @@ public final class EiffelBroadcasterConfig extends GlobalConfiguration {
 
     /* Messages delivered to durable queues will be logged to disk if persistent delivery is set. */
     private boolean persistentDelivery = true;
+    /* Outbound messages are spooled to disk until confirmed by the broker if set. */
+    private boolean spoolEvents = false;
+    /* The events stored in builds are kept in a separate file per build instead of in build.xml if set. */
+    private boolean journalEvents = false;
+    /* The events sent by builds are recorded in the event index if set. */
+    private boolean indexEvents = false;
+    /* Builds get their activity events in files instead of in environment variables if set. */
+    private boolean passEventsInFiles = false;
+    /* What to do with an outbound message when the internal queue is full. */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+    /* Which outbound messages should be validated against their schemas. */
+    private ValidationPolicy validationPolicy = ValidationPolicy.ALWAYS;
+    /* With the SAMPLED validation policy, one in this many of the plugin's own events is validated. */
+    private int validationSampleInterval = 100;
     /* Application id that can be read by the consumer (optional). */
     private String appId;
     /* A list of strings representing categories to include in the ActTs. */
@@ -133,7 +164,14 @@ public final class EiffelBroadcasterConfig extends GlobalConfiguration {
     /** Hash algorithm to use when signing events sent by the plugin itself. */
     private HashAlgorithm systemSigningHashAlg = HashAlgorithm.SHA_256;
 
-    private transient final EventValidator eventValidator = new EventValidator();
+    /**
+     * Whitespace- or comma-separated prefixes of the <code>meta.schemaUri</code> values that may be fetched
+     * to validate events of types that the plugin has no schema for. Nothing is fetched by default.
+     */
+    private static final String ALLOWED_SCHEMA_URI_PREFIXES = SystemProperties.getString(
+            EiffelBroadcasterConfig.class.getName() + ".allowedSchemaUriPrefixes", "");
+
+    private transient final EventValidator eventValidator = new EventValidator(createSchemaProvider());
 
     public EiffelBroadcasterConfig() {
         super.load();
@@ -145,6 +183,8 @@ public final class EiffelBroadcasterConfig extends GlobalConfiguration {
         req.bindJSON(this, formData);
         save();
         MQConnection.getInstance().initialize(userName, userPassword, serverUri, virtualHost);
+        MQConnection.getInstance().setSpoolEvents(spoolEvents);
+        SystemEventSigner.invalidateCredential();
         return true;
     }
 
@@ -268,6 +308,9 @@ public final class EiffelBroadcasterConfig extends GlobalConfiguration {
      */
     @DataBoundSetter
     public void setExchangeName(String exchangeName) {
+        if (!Objects.equals(this.exchangeName, exchangeName)) {
+            MQConnection.getInstance().invalidateExchangeCache();
+        }
         this.exchangeName = exchangeName;
     }
 
@@ -348,6 +391,124 @@ public final class EiffelBroadcasterConfig extends GlobalConfiguration {
         this.persistentDelivery = pd;
     }
 
+    /**
+     * Returns true if outbound events are to be spooled to disk until confirmed by the broker.
+     *
+     * @return if events are to be spooled to disk.
+     */
+    public boolean getSpoolEvents() {
+        return this.spoolEvents;
+    }
+
+    /**
+     * Sets whether outbound events are to be spooled to disk until confirmed by the broker.
+     *
+     * @param spoolEvents if events are to be spooled to disk.
+     */
+    @DataBoundSetter
+    public void setSpoolEvents(boolean spoolEvents) {
+        this.spoolEvents = spoolEvents;
+    }
+
+    /**
+     * Returns true if the events stored in builds are to be kept in a separate file per build.
+     *
+     * @return if events are to be stored in a per-build event journal.
+     * @see EventJournal
+     */
+    public boolean getJournalEvents() {
+        return this.journalEvents;
+    }
+
+    /**
+     * Sets whether the events stored in builds are to be kept in a separate file per build.
+     *
+     * @param journalEvents if events are to be stored in a per-build event journal.
+     */
+    @DataBoundSetter
+    public void setJournalEvents(boolean journalEvents) {
+        this.journalEvents = journalEvents;
+    }
+
+    /**
+     * Returns true if the events sent by builds are to be recorded in the event index.
+     *
+     * @return if events are to be recorded in the event index.
+     * @see EventIndex
+     */
+    public boolean getIndexEvents() {
+        return this.indexEvents;
+    }
+
+    /**
+     * Sets whether the events sent by builds are to be recorded in the event index.
+     *
+     * @param indexEvents if events are to be recorded in the event index.
+     */
+    @DataBoundSetter
+    public void setIndexEvents(boolean indexEvents) {
+        this.indexEvents = indexEvents;
+    }
+
+    /**
+     * Returns true if builds are to get their activity events in files instead of in environment variables.
+     *
+     * @return if events are to be passed to builds in files.
+     * @see EiffelEventFiles
+     */
+    public boolean getPassEventsInFiles() {
+        return this.passEventsInFiles;
+    }
+
+    /**
+     * Sets whether builds are to get their activity events in files instead of in environment variables.
+     *
+     * @param passEventsInFiles if events are to be passed to builds in files.
+     */
+    @DataBoundSetter
+    public void setPassEventsInFiles(boolean passEventsInFiles) {
+        this.passEventsInFiles = passEventsInFiles;
+    }
+
+    /** Returns what should happen to an outbound event when the internal queue is full. */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /** Sets what should happen to an outbound event when the internal queue is full. */
+    @DataBoundSetter
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /** Returns which outbound events should be validated against their schemas. */
+    public ValidationPolicy getValidationPolicy() {
+        return validationPolicy;
+    }
+
+    /** Sets which outbound events should be validated against their schemas. */
+    @DataBoundSetter
+    public void setValidationPolicy(ValidationPolicy validationPolicy) {
+        this.validationPolicy = validationPolicy;
+    }
+
+    /**
+     * Returns how many of the plugin's own events there are per validated event
+     * when the validation policy is {@link ValidationPolicy#SAMPLED}.
+     */
+    public int getValidationSampleInterval() {
+        return validationSampleInterval;
+    }
+
+    /**
+     * Sets how many of the plugin's own events there are per validated event
+     * when the validation policy is {@link ValidationPolicy#SAMPLED}.
+     */
+    @DataBoundSetter
+    public void setValidationSampleInterval(int validationSampleInterval) {
+        this.validationSampleInterval = Math.max(1, validationSampleInterval);
+    }
+
     /**
      * Returns application id.
      *
@@ -427,6 +588,43 @@ public final class EiffelBroadcasterConfig extends GlobalConfiguration {
         return eventValidator;
     }
 
+    /**
+     * Creates the provider of the schemas used to validate events. The bundled schemas take precedence,
+     * followed by schemas placed in the <code>eiffel-broadcaster/schemas</code> directory of
+     * <code>JENKINS_HOME</code> and finally schemas fetched from an event's <code>meta.schemaUri</code>.
+     */
+    private static SchemaProvider createSchemaProvider() {
+        var dataDir = new File(Jenkins.get().getRootDir(), "eiffel-broadcaster");
+        var allowedPrefixes = Arrays.stream(ALLOWED_SCHEMA_URI_PREFIXES.split("[\\s,]+"))
+                .filter(StringUtils::isNotBlank)
+                .collect(Collectors.toList());
+        return new ChainedSchemaProvider(List.of(
+                new BundledSchemaProvider(),
+                new DirectorySchemaProvider(new File(dataDir, "schemas")),
+                new SchemaUriProvider(new File(dataDir, "schema-cache"), SchemaFetcher.HTTP, allowedPrefixes)));
+    }
+
+    /**
+     * Compiles the bundled event schemas in the background when Jenkins starts,
+     * so that the first builds don't have to wait for them.
+     */
+    @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void precompileSchemas() {
+        var config = getInstance();
+        if (config == null) {
+            return;
+        }
+        var executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Eiffel schema precompiler"));
+        try {
+            config.getEventValidator().precompileBundledSchemas(executor);
+        } finally {
+            // The submitted schemas are still compiled, but the threads exit when they're done.
+            executor.shutdown();
+        }
+    }
+
     public ExtensionList<RoutingKeyProvider.RoutingKeyProviderDescriptor> getRoutingKeyProviderDescriptors() {
         return RoutingKeyProvider.RoutingKeyProviderDescriptor.all();
     }
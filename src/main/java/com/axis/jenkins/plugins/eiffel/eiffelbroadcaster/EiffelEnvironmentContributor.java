@@ -27,6 +27,7 @@ package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.model.AbstractBuild;
 import hudson.model.EnvironmentContributor;
 import hudson.model.Run;
 import hudson.model.TaskListener;
@@ -38,6 +39,9 @@ import java.io.IOException;
  * and {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityStartedEvent}. Theoretically
  * also the {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityFinishedEvent} if this
  * class for some reason is used for a completed Run.
+ *
+ * If {@link EiffelEventFiles#isEnabled() enabled} the events are instead written to files in the workspace and
+ * only the paths of the files are injected. The ids of the events are injected either way.
  */
 @Extension
 public class EiffelEnvironmentContributor extends EnvironmentContributor {
@@ -59,20 +63,75 @@ public class EiffelEnvironmentContributor extends EnvironmentContributor {
      */
     public static final String ACTIVITY_TRIGGERED = "EIFFEL_ACTIVITY_TRIGGERED";
 
+    /**
+     * The name of the environment variable containing the id of the
+     * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityFinishedEvent}.
+     */
+    public static final String ACTIVITY_FINISHED_ID = "EIFFEL_ACTIVITY_FINISHED_ID";
+
+    /**
+     * The name of the environment variable containing the id of the
+     * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityStartedEvent}.
+     */
+    public static final String ACTIVITY_STARTED_ID = "EIFFEL_ACTIVITY_STARTED_ID";
+
+    /**
+     * The name of the environment variable containing the id of the
+     * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent}.
+     */
+    public static final String ACTIVITY_TRIGGERED_ID = "EIFFEL_ACTIVITY_TRIGGERED_ID";
+
+    /**
+     * The name of the environment variable containing the path of a file with the
+     * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityStartedEvent}
+     * when {@link EiffelEventFiles#isEnabled() events are passed in files}.
+     */
+    public static final String ACTIVITY_STARTED_FILE = "EIFFEL_ACTIVITY_STARTED_FILE";
+
+    /**
+     * The name of the environment variable containing the path of a file with the
+     * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent}
+     * when {@link EiffelEventFiles#isEnabled() events are passed in files}.
+     */
+    public static final String ACTIVITY_TRIGGERED_FILE = "EIFFEL_ACTIVITY_TRIGGERED_FILE";
+
     @Override
     public void buildEnvironmentFor(@NonNull Run r, @NonNull EnvVars envs, @NonNull TaskListener listener)
             throws IOException, InterruptedException {
         var action = r.getAction(EiffelActivityAction.class);
-        if (action != null) {
-            envs.put(EiffelEnvironmentContributor.ACTIVITY_TRIGGERED, action.getTriggerEventJSON());
-            var startedEvent = action.getStartedEventJSON();
-            if (startedEvent != null) {
-                envs.put(EiffelEnvironmentContributor.ACTIVITY_STARTED, startedEvent);
-            }
-            var finishedEvent = action.getFinishedEventJSON();
-            if (finishedEvent != null) {
-                envs.put(EiffelEnvironmentContributor.ACTIVITY_FINISHED, finishedEvent);
+        if (action == null) {
+            return;
+        }
+        envs.put(ACTIVITY_TRIGGERED_ID, action.getTriggerEventHeader().getId().toString());
+        var startedHeader = action.getStartedEventHeader();
+        if (startedHeader != null) {
+            envs.put(ACTIVITY_STARTED_ID, startedHeader.getId().toString());
+        }
+        var finishedHeader = action.getFinishedEventHeader();
+        if (finishedHeader != null) {
+            envs.put(ACTIVITY_FINISHED_ID, finishedHeader.getId().toString());
+        }
+
+        if (EiffelEventFiles.isEnabled()) {
+            // Pipelines get the files from EiffelStepEnvironmentContributor, which knows the workspace of each step.
+            // The environment of a build may be computed many times, so the files aren't checked for here.
+            if (r instanceof AbstractBuild) {
+                var workspace = ((AbstractBuild<?, ?>) r).getWorkspace();
+                if (workspace != null) {
+                    EiffelEventFiles.addFiles(r, action, workspace, envs, false);
+                }
             }
+            return;
+        }
+
+        envs.put(EiffelEnvironmentContributor.ACTIVITY_TRIGGERED, action.getTriggerEventJSON());
+        var startedEvent = action.getStartedEventJSON();
+        if (startedEvent != null) {
+            envs.put(EiffelEnvironmentContributor.ACTIVITY_STARTED, startedEvent);
+        }
+        var finishedEvent = action.getFinishedEventJSON();
+        if (finishedEvent != null) {
+            envs.put(EiffelEnvironmentContributor.ACTIVITY_FINISHED, finishedEvent);
         }
     }
 }
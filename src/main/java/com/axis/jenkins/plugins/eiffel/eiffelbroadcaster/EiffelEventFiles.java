@@ -0,0 +1,133 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.slaves.WorkspaceList;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Writes the activity events of a {@link Run} to files in the temporary directory of a workspace so
+ * that the build can read them from there instead of from environment variables, which are copied
+ * into every process the build starts and sent to agents with every step. The file names contain the
+ * event ids, so builds that share a workspace one after the other never overwrite each other's files.
+ * Each event is written once per build and workspace, and only while the build is running since the
+ * workspace of a completed build may be in use by another build. Callers that run once per step can
+ * ask for the files to be written again if they have been deleted, e.g. by a step that cleans the
+ * workspace.
+ */
+public final class EiffelEventFiles {
+    /** The name of the directory in the workspace's temporary directory where the events are written. */
+    public static final String DIRECTORY = "eiffel-events";
+
+    /** The files already written for each Run, as channel and path. */
+    private static final Map<Run<?, ?>, Set<String>> writtenFiles =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private EiffelEventFiles() {
+    }
+
+    /** Returns true if builds should get their events in files rather than in environment variables. */
+    public static boolean isEnabled() {
+        var config = EiffelBroadcasterConfig.getInstance();
+        return config != null && config.getPassEventsInFiles();
+    }
+
+    /**
+     * Writes the events of a Run to a workspace unless they've already been written there, and adds
+     * the paths of the files to an environment. Nothing is written or added if the Run has completed.
+     *
+     * @param run the Run whose events to write
+     * @param action the Run's {@link EiffelActivityAction}
+     * @param workspace the workspace, which must be on the machine where the paths will be used
+     * @param envs the environment to add the paths to
+     * @param verify if true, files that already have been written are checked, and written again if
+     *               they no longer exist. This costs a round trip to the agent, so it should only be
+     *               done once per step rather than every time the environment is computed.
+     */
+    public static void addFiles(@NonNull Run<?, ?> run, @NonNull EiffelActivityAction action,
+                                @NonNull FilePath workspace, @NonNull EnvVars envs, boolean verify)
+            throws IOException, InterruptedException {
+        if (!run.isBuilding()) {
+            return;
+        }
+        var tempDir = WorkspaceList.tempDir(workspace);
+        if (tempDir == null) {
+            return;
+        }
+        var directory = tempDir.child(DIRECTORY);
+        var triggerHeader = action.getTriggerEventHeader();
+        var triggerFile = writeFile(run, directory, "activity-triggered-" + triggerHeader.getId() + ".json",
+                verify, action::getTriggerEventJSON);
+        if (triggerFile != null) {
+            envs.put(EiffelEnvironmentContributor.ACTIVITY_TRIGGERED_FILE, triggerFile.getRemote());
+        }
+        var startedHeader = action.getStartedEventHeader();
+        if (startedHeader != null) {
+            var startedFile = writeFile(run, directory, "activity-started-" + startedHeader.getId() + ".json",
+                    verify, action::getStartedEventJSON);
+            if (startedFile != null) {
+                envs.put(EiffelEnvironmentContributor.ACTIVITY_STARTED_FILE, startedFile.getRemote());
+            }
+        }
+    }
+
+    /**
+     * Writes an event to a file unless it's already been written there for this Run and, if asked to
+     * verify, the file still exists.
+     *
+     * @param eventJSON supplies the JSON of the event, which is only read if the file has to be written
+     * @return the file, or null if there's no event to write
+     */
+    @CheckForNull
+    private static FilePath writeFile(@NonNull Run<?, ?> run, @NonNull FilePath directory, @NonNull String name,
+                                      boolean verify, @NonNull Supplier<String> eventJSON)
+            throws IOException, InterruptedException {
+        var file = directory.child(name);
+        var key = directory.getChannel() + ":" + file.getRemote();
+        var written = writtenFiles.computeIfAbsent(run, r -> ConcurrentHashMap.newKeySet());
+        if (!written.contains(key) || (verify && !file.exists())) {
+            var json = eventJSON.get();
+            if (json == null) {
+                return null;
+            }
+            directory.mkdirs();
+            file.write(json, StandardCharsets.UTF_8.name());
+            written.add(key);
+        }
+        return file;
+    }
+}
@@ -24,9 +24,30 @@
 
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Maintains a table that maps a Jenkins queue ids to the id of the
@@ -34,49 +55,549 @@ import java.util.concurrent.ConcurrentHashMap;
  * that was sent when the build was enqueued. This is needed to link the resulting
  * {@link hudson.model.Run} to the right trigger event.
  *
+ * <p>The table is an open-addressing hash table of primitive longs, so an entry costs a handful of
+ * longs rather than a map entry, a boxed key and a {@link UUID}. Entries expire after a while, since
+ * queue items can leave the queue without the plugin being told, and the number of entries is
+ * bounded. A ring of keys in insertion order lets both expiry and eviction start from the oldest
+ * entry instead of scanning the table.</p>
+ *
+ * <p>The table is updated from queue listeners, i.e. while the Jenkins queue is locked, so only the
+ * table in memory is updated by the caller. Changes are handed to a background thread that appends
+ * them to a journal file in <code>$JENKINS_HOME/eiffel-broadcaster</code>, and that compacts the
+ * journal when it has grown to several times the size of the table. The journal is replayed when the
+ * table is loaded, so builds that were queued before a restart can still be mapped.</p>
+ *
  * @author Isac Holm &lt;isac.holm@axis.com&gt;
  * @version 1.0
  * @since 2018-09-24
  */
 public final class EiffelJobTable {
+    private static final Logger logger = LoggerFactory.getLogger(EiffelJobTable.class);
+
+    /** The maximum number of entries. The oldest entry is evicted to make room for a new one. */
+    private static final int MAX_ENTRIES = Math.max(1, SystemProperties.getInteger(
+            EiffelJobTable.class.getName() + ".maxEntries", 100000));
+
+    /** How long an entry is kept, i.e. for how long a build may wait in the queue and still be mapped. */
+    private static final long TTL = TimeUnit.HOURS.toMillis(Math.max(1L, SystemProperties.getLong(
+            EiffelJobTable.class.getName() + ".ttlHours", 168L)));
+
+    /** The name of the journal file in the plugin's directory in JENKINS_HOME. */
+    static final String JOURNAL_FILE = "job-table.journal";
+
+    /* Each journal record is [operation][queue id][UUID msb][UUID lsb][creation time]. */
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_SIZE = 1 + 4 * Long.BYTES;
+
+    /** The journal is compacted when it holds this many records and more than four per entry. */
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    /** Marks an empty slot. Queue ids are never negative. */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 64;
+
     private static EiffelJobTable instance = null;
-    private final ConcurrentHashMap<Long, UUID> table;
 
-    /** Private constructor. Use {@link #getInstance()} to obtain an object instance of this class. */
-    private EiffelJobTable() {
-        this.table = new ConcurrentHashMap<Long, UUID>();
+    private final int maxEntries;
+    private final long ttl;
+    private final LongSupplier clock;
+    @CheckForNull
+    private final File journalFile;
+
+    /*
+     * The slots of the table. An entry's key, UUID halves, creation time and sequence number share
+     * a slot index. The sequence number tells the entry apart from earlier entries with the same key.
+     */
+    private long[] keys;
+    private long[] msbs;
+    private long[] lsbs;
+    private long[] created;
+    private long[] seqs;
+    private int size;
+    private long nextSeq;
+
+    /*
+     * The keys and sequence numbers of the entries in insertion order. Entries that have been removed
+     * or replaced are left in the ring and skipped when they reach its head.
+     */
+    private long[] ringKeys;
+    private long[] ringSeqs;
+    private int ringHead;
+    private int ringSize;
+
+    /* The writer thread and the journal records that haven't been written by it yet. */
+    @CheckForNull
+    private final ExecutorService writer;
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * INITIAL_CAPACITY);
+    private boolean writeScheduled;
+    private boolean journaling;
+    private boolean compactionRequested;
+
+    /* Only written by the writer thread. */
+    @CheckForNull
+    private FileChannel journal;
+    private long journalRecords;
+
+    /**
+     * Creates a table, loading its entries from a journal if there is one.
+     *
+     * @param journalFile the journal, or null to keep the table in memory only
+     * @param maxEntries the maximum number of entries
+     * @param ttl how long (in milliseconds) an entry is kept
+     * @param clock the current time in milliseconds
+     */
+    EiffelJobTable(@CheckForNull File journalFile, int maxEntries, long ttl, @NonNull LongSupplier clock) {
+        this.journalFile = journalFile;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        allocate(INITIAL_CAPACITY);
+        ringKeys = new long[INITIAL_CAPACITY];
+        ringSeqs = new long[INITIAL_CAPACITY];
+        if (journalFile != null) {
+            writer = Executors.newSingleThreadExecutor(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Eiffel job table writer"));
+            load();
+        } else {
+            writer = null;
+        }
     }
 
-    /** Gets the singleton instance. */
+    /** Gets the singleton instance, loading it from the journal in JENKINS_HOME the first time. */
     public static synchronized EiffelJobTable getInstance() {
         if (instance == null) {
-            instance = new EiffelJobTable();
+            var jenkins = Jenkins.getInstanceOrNull();
+            var journalFile = jenkins != null
+                    ? new File(jenkins.getRootDir(), "eiffel-broadcaster/" + JOURNAL_FILE)
+                    : null;
+            instance = new EiffelJobTable(journalFile, MAX_ENTRIES, TTL, System::currentTimeMillis);
         }
         return instance;
     }
 
+    /** Writes the pending changes to the journal when Jenkins shuts down. */
+    @Terminator
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+        }
+    }
+
     /**
      * Gets the id of the {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent}
      * for a given queue id, or null of no such mapping is known.
      */
-    public UUID getEventTrigger(@NonNull Long queueId) {
-        return table.get(queueId);
+    public synchronized UUID getEventTrigger(@NonNull Long queueId) {
+        var slot = find(queueId);
+        if (slot < 0 || isExpired(slot, clock.getAsLong())) {
+            return null;
+        }
+        return new UUID(msbs[slot], lsbs[slot]);
     }
 
     /**
      * Gets the id of the {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent}
      * for a given queue id, or null if no such mapping is known, and immediately clears that entry from the table.
      */
-     public UUID getAndClearEventTrigger(@NonNull Long queueId) {
-         return table.remove(queueId);
-     }
+    public synchronized UUID getAndClearEventTrigger(@NonNull Long queueId) {
+        var slot = find(queueId);
+        if (slot < 0) {
+            return null;
+        }
+        var result = isExpired(slot, clock.getAsLong()) ? null : new UUID(msbs[slot], lsbs[slot]);
+        removeAt(slot);
+        addRecord(REMOVE, queueId, 0, 0, 0);
+        return result;
+    }
 
     /**
      * Update the table with a new mapping from a queue id to the id of a
      * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent}.
      * */
-    public void setEventTrigger(@NonNull Long queueId, @NonNull UUID eiffelEventId) {
-        table.put(queueId, eiffelEventId);
+    public synchronized void setEventTrigger(@NonNull Long queueId, @NonNull UUID eiffelEventId) {
+        if (queueId < 0) {
+            throw new IllegalArgumentException("Queue ids can't be negative: " + queueId);
+        }
+        var now = clock.getAsLong();
+        put(queueId, eiffelEventId.getMostSignificantBits(), eiffelEventId.getLeastSignificantBits(), now);
+        addRecord(PUT, queueId, eiffelEventId.getMostSignificantBits(),
+                eiffelEventId.getLeastSignificantBits(), now);
+    }
+
+    /** Returns the number of entries in the table, including any expired ones that haven't been evicted. */
+    synchronized int size() {
+        return size;
+    }
+
+    /** Waits until the changes made so far have been written to the journal. */
+    void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            logger.debug("Unable to wait for the writer of {}", journalFile, e);
+        }
+    }
+
+    /**
+     * Writes the pending changes and closes the journal. The table is kept in memory only
+     * from then on.
+     */
+    void close() {
+        if (writer == null) {
+            return;
+        }
+        flush();
+        synchronized (this) {
+            journaling = false;
+            pending.clear();
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Timed out waiting for the writer of {}", journalFile);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        closeJournal();
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        created = new long[capacity];
+        seqs = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private int home(long key) {
+        var hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    /** Returns the slot of a key, or -1 if it isn't in the table. */
+    private int find(long key) {
+        var mask = keys.length - 1;
+        for (var slot = home(key); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isExpired(int slot, long now) {
+        return now - created[slot] >= ttl;
+    }
+
+    /** Adds or replaces an entry, making room for it if the table is full. */
+    private void put(long key, long msb, long lsb, long createdAt) {
+        removeExpired(createdAt);
+        var slot = find(key);
+        if (slot < 0) {
+            if (size >= maxEntries) {
+                removeOldest();
+            }
+            if (2 * (size + 1) > keys.length) {
+                resize(keys.length * 2);
+            }
+            var mask = keys.length - 1;
+            slot = home(key);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            size++;
+        }
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        created[slot] = createdAt;
+        seqs[slot] = nextSeq++;
+        addToRing(key, seqs[slot]);
+    }
+
+    private void resize(int capacity) {
+        var oldKeys = keys;
+        var oldMsbs = msbs;
+        var oldLsbs = lsbs;
+        var oldCreated = created;
+        var oldSeqs = seqs;
+        allocate(capacity);
+        var mask = capacity - 1;
+        for (var i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                var slot = home(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                msbs[slot] = oldMsbs[i];
+                lsbs[slot] = oldLsbs[i];
+                created[slot] = oldCreated[i];
+                seqs[slot] = oldSeqs[i];
+            }
+        }
+    }
+
+    /**
+     * Removes the entry in a slot, moving later entries of the same probe sequence back so that
+     * lookups don't need tombstones.
+     */
+    private void removeAt(int slot) {
+        var mask = keys.length - 1;
+        var hole = slot;
+        for (var i = (slot + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (((i - home(keys[i])) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                msbs[hole] = msbs[i];
+                lsbs[hole] = lsbs[i];
+                created[hole] = created[i];
+                seqs[hole] = seqs[i];
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    private void addToRing(long key, long seq) {
+        if (ringSize > 2 * size + INITIAL_CAPACITY) {
+            compactRing();
+        }
+        if (ringSize == ringKeys.length) {
+            resizeRing(ringKeys.length * 2);
+        }
+        var index = (ringHead + ringSize) & (ringKeys.length - 1);
+        ringKeys[index] = key;
+        ringSeqs[index] = seq;
+        ringSize++;
+    }
+
+    /** Returns the slot of the entry at a ring position, or -1 if it has been removed or replaced. */
+    private int ringSlot(int position) {
+        var index = (ringHead + position) & (ringKeys.length - 1);
+        var slot = find(ringKeys[index]);
+        return slot >= 0 && seqs[slot] == ringSeqs[index] ? slot : -1;
+    }
+
+    private void removeRingHead() {
+        ringHead = (ringHead + 1) & (ringKeys.length - 1);
+        ringSize--;
+    }
+
+    /** Drops the entries that have been removed or replaced from the ring. */
+    private void compactRing() {
+        var mask = ringKeys.length - 1;
+        var live = 0;
+        for (var position = 0; position < ringSize; position++) {
+            if (ringSlot(position) >= 0) {
+                var from = (ringHead + position) & mask;
+                var to = (ringHead + live) & mask;
+                ringKeys[to] = ringKeys[from];
+                ringSeqs[to] = ringSeqs[from];
+                live++;
+            }
+        }
+        ringSize = live;
+    }
+
+    private void resizeRing(int capacity) {
+        var newKeys = new long[capacity];
+        var newSeqs = new long[capacity];
+        var mask = ringKeys.length - 1;
+        for (var position = 0; position < ringSize; position++) {
+            newKeys[position] = ringKeys[(ringHead + position) & mask];
+            newSeqs[position] = ringSeqs[(ringHead + position) & mask];
+        }
+        ringKeys = newKeys;
+        ringSeqs = newSeqs;
+        ringHead = 0;
+    }
+
+    /** Removes the expired entries, which are the oldest ones. */
+    private void removeExpired(long now) {
+        while (ringSize > 0) {
+            var slot = ringSlot(0);
+            if (slot >= 0) {
+                if (!isExpired(slot, now)) {
+                    break;
+                }
+                removeAt(slot);
+            }
+            removeRingHead();
+        }
+    }
+
+    private void removeOldest() {
+        while (ringSize > 0) {
+            var slot = ringSlot(0);
+            removeRingHead();
+            if (slot >= 0) {
+                logger.debug("The table of queued builds is full, evicting the entry for queue id {}", keys[slot]);
+                removeAt(slot);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replays the journal and has it compacted in the background. A torn record at the end of
+     * the journal is ignored.
+     */
+    private void load() {
+        try {
+            if (journalFile.isFile()) {
+                var buffer = ByteBuffer.wrap(Files.readAllBytes(journalFile.toPath()));
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    var operation = buffer.get();
+                    var key = buffer.getLong();
+                    var msb = buffer.getLong();
+                    var lsb = buffer.getLong();
+                    var createdAt = buffer.getLong();
+                    if (operation == PUT && key >= 0) {
+                        put(key, msb, lsb, createdAt);
+                    } else if (operation == REMOVE) {
+                        var slot = find(key);
+                        if (slot >= 0) {
+                            removeAt(slot);
+                        }
+                    } else {
+                        logger.warn("Ignoring the rest of {}, which has an invalid record", journalFile);
+                        break;
+                    }
+                }
+                removeExpired(clock.getAsLong());
+                logger.info("Loaded {} queued builds from {}", size, journalFile);
+            }
+            journaling = true;
+            compactionRequested = true;
+            scheduleWrite();
+        } catch (IOException e) {
+            logger.warn("Unable to load {}, builds queued before the restart can't be mapped to their ActT: {}",
+                    journalFile, e.toString());
+        }
+    }
+
+    /** Queues a record for the journal. Called with the table locked. */
+    private void addRecord(byte operation, long key, long msb, long lsb, long createdAt) {
+        if (!journaling) {
+            return;
+        }
+        if (pending.remaining() < RECORD_SIZE) {
+            var grown = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.put(operation).putLong(key).putLong(msb).putLong(lsb).putLong(createdAt);
+        scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+        if (!writeScheduled) {
+            writeScheduled = true;
+            writer.execute(this::writePending);
+        }
     }
 
+    /**
+     * Appends the queued records to the journal, or replaces the journal with the entries of the
+     * table if it has grown too large. Runs on the writer thread. If the journal can't be written
+     * the table is kept in memory only from then on.
+     */
+    private void writePending() {
+        while (true) {
+            ByteBuffer batch;
+            ByteBuffer entries = null;
+            synchronized (this) {
+                if (!journaling || (pending.position() == 0 && !compactionRequested)) {
+                    writeScheduled = false;
+                    return;
+                }
+                batch = pending;
+                pending = ByteBuffer.allocate(RECORD_SIZE * INITIAL_CAPACITY);
+                var records = journalRecords + batch.position() / RECORD_SIZE;
+                if (compactionRequested || (records >= MIN_COMPACTION_RECORDS && records > 4L * size)) {
+                    // The entries include the changes in the batch, which is thus dropped.
+                    entries = snapshot();
+                    compactionRequested = false;
+                }
+            }
+            try {
+                if (entries != null) {
+                    compact(entries);
+                } else {
+                    writeFully(journal, batch);
+                    journalRecords += batch.limit() / RECORD_SIZE;
+                }
+            } catch (IOException e) {
+                logger.warn("Unable to write {}, builds queued before a restart won't be mapped to their ActT: {}",
+                        journalFile, e.toString());
+                closeJournal();
+                synchronized (this) {
+                    journaling = false;
+                    pending.clear();
+                    writeScheduled = false;
+                }
+                return;
+            }
+        }
+    }
+
+    /** Returns journal records for the entries of the table, oldest first. Called with the table locked. */
+    private ByteBuffer snapshot() {
+        var buffer = ByteBuffer.allocate(RECORD_SIZE * size);
+        for (var position = 0; position < ringSize; position++) {
+            var slot = ringSlot(position);
+            if (slot >= 0) {
+                buffer.put(PUT).putLong(keys[slot]).putLong(msbs[slot]).putLong(lsbs[slot])
+                        .putLong(created[slot]);
+            }
+        }
+        return buffer;
+    }
+
+    /** Writes journal records to a new journal, which replaces the old one. Runs on the writer thread. */
+    private void compact(ByteBuffer entries) throws IOException {
+        closeJournal();
+        Files.createDirectories(journalFile.getParentFile().toPath());
+        var tempFile = new File(journalFile.getPath() + ".tmp").toPath();
+        try (var channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, entries);
+            channel.force(true);
+        }
+        Files.move(tempFile, journalFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journalRecords = entries.limit() / RECORD_SIZE;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.debug("Unable to close {}", journalFile, e);
+            }
+            journal = null;
+        }
+    }
 }
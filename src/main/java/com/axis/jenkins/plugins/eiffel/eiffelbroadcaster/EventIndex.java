@@ -0,0 +1,593 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import jenkins.model.Jenkins;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent index of the Eiffel events sent by builds, mapping the <code>meta.id</code> of each
+ * event to the job, build number and type of the event, and recording the links between events in
+ * both directions so that the upstream and downstream lineage of an event can be looked up without
+ * loading any builds.
+ *
+ * <p>The index is kept in <code>$JENKINS_HOME/eiffel-broadcaster/event-index</code>:</p>
+ * <ul>
+ *     <li><code>events</code> is a memory-mapped open-addressing hash table with a fixed-size slot
+ *     per event id. Events that are only known as the targets of links, e.g. the SCM events that
+ *     caused a build, have slots too so that their downstream events can be found. The table is
+ *     rewritten with twice the capacity when it's three quarters full.</li>
+ *     <li><code>links</code> holds the links as two singly linked lists per event, one with the
+ *     event's own links and one with the links to the event from other events, so that a lookup
+ *     only reads the records of the event's links.</li>
+ *     <li><code>names</code> holds the job names and event and link types referred to by the other
+ *     files, one per line.</li>
+ * </ul>
+ *
+ * <p>An event's id is written last, so an event that was torn by a crash can't be found. The index
+ * refers to jobs by their full names when the events were sent, so the events of a job that has
+ * since been renamed are found but can't be resolved to builds.</p>
+ */
+public final class EventIndex implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EventIndex.class);
+
+    private static final String EVENTS_FILE = "events";
+    private static final String LINKS_FILE = "links";
+    private static final String NAMES_FILE = "names";
+
+    private static final int MAGIC = 0x45494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_SIZE_FIELD = 12;
+
+    /* Each slot is [id msb][id lsb][upstream head][downstream head][job][build number][event type][unused]. */
+    private static final int SLOT_SIZE = 48;
+    private static final int SLOT_UPSTREAM = 16;
+    private static final int SLOT_DOWNSTREAM = 24;
+    private static final int SLOT_JOB = 32;
+    private static final int SLOT_BUILD = 36;
+    private static final int SLOT_TYPE = 40;
+
+    /* Each link record is [other id msb][other id lsb][next record][link type][unused]. */
+    private static final int LINK_SIZE = 32;
+
+    /** Marks a slot of an event that's only known as a link target. */
+    private static final int NO_JOB = -1;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MAX_CAPACITY = Integer.highestOneBit((Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE);
+
+    private static EventIndex instance;
+    private static boolean instanceUnavailable;
+
+    private final File directory;
+    private final FileChannel linksChannel;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private MappedByteBuffer events;
+    private int capacity;
+    private int size;
+    private long linkCount;
+    private boolean full;
+
+    /**
+     * An event sent by a build.
+     */
+    public static final class Entry {
+        private final UUID id;
+        private final String eventType;
+        private final String jobName;
+        private final int buildNumber;
+
+        private Entry(@NonNull UUID id, @NonNull String eventType, @NonNull String jobName, int buildNumber) {
+            this.id = id;
+            this.eventType = eventType;
+            this.jobName = jobName;
+            this.buildNumber = buildNumber;
+        }
+
+        @NonNull
+        public UUID getId() {
+            return id;
+        }
+
+        /** The <code>meta.type</code> of the event. */
+        @NonNull
+        public String getEventType() {
+            return eventType;
+        }
+
+        /** The full name of the job that sent the event. */
+        @NonNull
+        public String getJobName() {
+            return jobName;
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        /**
+         * Returns the build that sent the event, or null if it no longer exists or the current
+         * user isn't allowed to see it.
+         */
+        @CheckForNull
+        public Run<?, ?> getRun() {
+            var job = Jenkins.get().getItemByFullName(jobName, Job.class);
+            return job != null ? job.getBuildByNumber(buildNumber) : null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s (%s #%d)", eventType, id, jobName, buildNumber);
+        }
+    }
+
+    /**
+     * A link between two events, seen from one of them.
+     */
+    public static final class Link {
+        private final String type;
+        private final UUID id;
+
+        private Link(@NonNull String type, @NonNull UUID id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        /** The type of the link, e.g. CAUSE. */
+        @NonNull
+        public String getType() {
+            return type;
+        }
+
+        /** The id of the event at the other end of the link. */
+        @NonNull
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + id;
+        }
+    }
+
+    /**
+     * Opens an index, creating it if needed.
+     *
+     * @param directory the directory of the index
+     */
+    EventIndex(@NonNull File directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory.toPath());
+        var namesFile = new File(directory, NAMES_FILE);
+        if (namesFile.isFile()) {
+            for (var name : Files.readAllLines(namesFile.toPath(), StandardCharsets.UTF_8)) {
+                nameIds.put(name, names.size());
+                names.add(name);
+            }
+        }
+        linksChannel = FileChannel.open(new File(directory, LINKS_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A record that was torn by a crash is overwritten by the next one.
+        linkCount = linksChannel.size() / LINK_SIZE;
+        var eventsFile = new File(directory, EVENTS_FILE);
+        if (eventsFile.isFile() && eventsFile.length() >= HEADER_SIZE) {
+            events = map(eventsFile, eventsFile.length());
+            if (events.getInt(0) != MAGIC || events.getInt(4) != VERSION) {
+                linksChannel.close();
+                throw new IOException(eventsFile + " isn't an event index of a known version");
+            }
+            capacity = events.getInt(HEADER_CAPACITY);
+            size = events.getInt(HEADER_SIZE_FIELD);
+        } else {
+            capacity = INITIAL_CAPACITY;
+            events = createTable(eventsFile, capacity);
+        }
+    }
+
+    /**
+     * Gets the index in JENKINS_HOME, opening it the first time.
+     *
+     * @return the index, or null if indexing is disabled or the index couldn't be opened
+     */
+    @CheckForNull
+    public static synchronized EventIndex getInstance() {
+        if (!isEnabled()) {
+            return null;
+        }
+        if (instance == null && !instanceUnavailable) {
+            var directory = new File(Jenkins.get().getRootDir(), "eiffel-broadcaster/event-index");
+            try {
+                instance = new EventIndex(directory);
+            } catch (IOException e) {
+                logger.error("Unable to open the event index in {}, events won't be indexed", directory, e);
+                instanceUnavailable = true;
+            }
+        }
+        return instance;
+    }
+
+    /** Returns true if the events sent by builds should be indexed, which is enabled in the plugin configuration. */
+    public static boolean isEnabled() {
+        var config = EiffelBroadcasterConfig.getInstance();
+        return config != null && config.getIndexEvents();
+    }
+
+    /** Flushes and closes the index in JENKINS_HOME when Jenkins shuts down. */
+    @Terminator
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            try {
+                instance.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close the event index: {}", e.toString());
+            }
+            instance = null;
+        }
+        instanceUnavailable = true;
+    }
+
+    /**
+     * Adds an event sent by a build to the index in JENKINS_HOME, if indexing is enabled. {@link Util}
+     * calls this once the event has been queued for publishing.
+     */
+    public static void record(@NonNull EiffelEvent event, @NonNull Run<?, ?> run) {
+        var index = getInstance();
+        if (index != null) {
+            index.add(event, run);
+        }
+    }
+
+    /**
+     * Adds an event sent by a build and its links to the index. Events that are already in the
+     * index are ignored.
+     */
+    public void add(@NonNull EiffelEvent event, @NonNull Run<?, ?> run) {
+        add(event.getMeta().getId(), event.getMeta().getType(), run.getParent().getFullName(),
+                run.getNumber(), event.getLinks());
+    }
+
+    synchronized void add(@NonNull UUID id, @NonNull String eventType, @NonNull String jobName, int buildNumber,
+                          @NonNull List<EiffelEvent.Link> links) {
+        try {
+            var slot = findOrInsert(id);
+            if (slot < 0 || events.getInt(slot + SLOT_JOB) != NO_JOB) {
+                return;
+            }
+            events.putInt(slot + SLOT_BUILD, buildNumber);
+            events.putInt(slot + SLOT_TYPE, nameId(eventType));
+            events.putInt(slot + SLOT_JOB, nameId(jobName));
+            for (var link : links) {
+                var targetSlot = findOrInsert(link.getTarget());
+                if (targetSlot < 0) {
+                    break;
+                }
+                // The source's slot may have moved if the table grew.
+                slot = find(id);
+                var linkType = nameId(link.getType().name());
+                events.putLong(slot + SLOT_UPSTREAM,
+                        appendLink(link.getTarget(), linkType, events.getLong(slot + SLOT_UPSTREAM)));
+                events.putLong(targetSlot + SLOT_DOWNSTREAM,
+                        appendLink(id, linkType, events.getLong(targetSlot + SLOT_DOWNSTREAM)));
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to add event {} to the event index in {}: {}", id, directory, e.toString());
+        }
+    }
+
+    /**
+     * Looks up an event sent by a build.
+     *
+     * @return the event, or null if no build is known to have sent it
+     */
+    @CheckForNull
+    public synchronized Entry get(@NonNull UUID id) {
+        var slot = find(id);
+        if (slot < 0 || events.getInt(slot + SLOT_JOB) == NO_JOB) {
+            return null;
+        }
+        var jobName = name(events.getInt(slot + SLOT_JOB));
+        var eventType = name(events.getInt(slot + SLOT_TYPE));
+        if (jobName == null || eventType == null) {
+            return null;
+        }
+        return new Entry(id, eventType, jobName, events.getInt(slot + SLOT_BUILD));
+    }
+
+    /** Returns true if the index knows of an event, either sent by a build or as the target of a link. */
+    public synchronized boolean contains(@NonNull UUID id) {
+        return find(id) >= 0;
+    }
+
+    /** Returns the links of an event sent by a build, i.e. the events that it's based on. */
+    @NonNull
+    public List<Link> getUpstream(@NonNull UUID id) {
+        return getUpstream(id, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the links of an event sent by a build, i.e. the events that it's based on.
+     *
+     * @param maxLinks the maximum number of links to return; the most recently added are returned
+     */
+    @NonNull
+    public synchronized List<Link> getUpstream(@NonNull UUID id, int maxLinks) {
+        return readLinks(id, SLOT_UPSTREAM, maxLinks);
+    }
+
+    /** Returns the links to an event from events sent by builds, i.e. the events that are based on it. */
+    @NonNull
+    public List<Link> getDownstream(@NonNull UUID id) {
+        return getDownstream(id, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the links to an event from events sent by builds, i.e. the events that are based on it.
+     *
+     * @param maxLinks the maximum number of links to return; the most recently added are returned
+     */
+    @NonNull
+    public synchronized List<Link> getDownstream(@NonNull UUID id, int maxLinks) {
+        return readLinks(id, SLOT_DOWNSTREAM, maxLinks);
+    }
+
+    /** Returns the number of events in the index, including the events only known as link targets. */
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        events.force();
+        linksChannel.close();
+    }
+
+    private static MappedByteBuffer map(File file, long length) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    private static MappedByteBuffer createTable(File file, int capacity) throws IOException {
+        var table = map(file, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        table.putInt(0, MAGIC);
+        table.putInt(4, VERSION);
+        table.putInt(HEADER_CAPACITY, capacity);
+        table.putInt(HEADER_SIZE_FIELD, 0);
+        return table;
+    }
+
+    private static int home(long msb, long lsb, int capacity) {
+        var hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    private static long slotOffset(int index) {
+        return HEADER_SIZE + (long) index * SLOT_SIZE;
+    }
+
+    private static boolean isEmpty(MappedByteBuffer table, int slot) {
+        return table.getLong(slot) == 0 && table.getLong(slot + Long.BYTES) == 0;
+    }
+
+    /** Returns the offset of an event's slot, or -1 if it isn't in the index. */
+    private int find(@NonNull UUID id) {
+        var msb = id.getMostSignificantBits();
+        var lsb = id.getLeastSignificantBits();
+        for (var index = home(msb, lsb, capacity); ; index = (index + 1) & (capacity - 1)) {
+            var slot = (int) slotOffset(index);
+            if (isEmpty(events, slot)) {
+                return -1;
+            }
+            if (events.getLong(slot) == msb && events.getLong(slot + Long.BYTES) == lsb) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Returns the offset of an event's slot, adding an empty slot for the event if it isn't in the
+     * index.
+     *
+     * @return the offset, or -1 if the index is full
+     */
+    private int findOrInsert(@NonNull UUID id) throws IOException {
+        var slot = find(id);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (4L * (size + 1) > 3L * capacity && !grow()) {
+            return -1;
+        }
+        var msb = id.getMostSignificantBits();
+        var lsb = id.getLeastSignificantBits();
+        var index = home(msb, lsb, capacity);
+        while (!isEmpty(events, (int) slotOffset(index))) {
+            index = (index + 1) & (capacity - 1);
+        }
+        slot = (int) slotOffset(index);
+        events.putLong(slot + SLOT_UPSTREAM, 0);
+        events.putLong(slot + SLOT_DOWNSTREAM, 0);
+        events.putInt(slot + SLOT_JOB, NO_JOB);
+        events.putLong(slot + Long.BYTES, lsb);
+        events.putLong(slot, msb);
+        size++;
+        events.putInt(HEADER_SIZE_FIELD, size);
+        return slot;
+    }
+
+    /**
+     * Rewrites the table with twice the capacity and replaces the old table with it.
+     *
+     * @return false if the table can't grow any larger
+     */
+    private boolean grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            if (!full) {
+                logger.error("The event index in {} is full, new events won't be indexed", directory);
+                full = true;
+            }
+            return false;
+        }
+        var newCapacity = capacity * 2;
+        var eventsFile = new File(directory, EVENTS_FILE);
+        var newFile = new File(directory, EVENTS_FILE + ".new");
+        Files.deleteIfExists(newFile.toPath());
+        var newEvents = createTable(newFile, newCapacity);
+        for (var index = 0; index < capacity; index++) {
+            var offset = (int) slotOffset(index);
+            if (!isEmpty(events, offset)) {
+                var newIndex = home(events.getLong(offset), events.getLong(offset + Long.BYTES), newCapacity);
+                while (!isEmpty(newEvents, (int) slotOffset(newIndex))) {
+                    newIndex = (newIndex + 1) & (newCapacity - 1);
+                }
+                var newOffset = (int) slotOffset(newIndex);
+                for (var i = 0; i < SLOT_SIZE; i += Long.BYTES) {
+                    newEvents.putLong(newOffset + i, events.getLong(offset + i));
+                }
+            }
+        }
+        newEvents.putInt(HEADER_SIZE_FIELD, size);
+        newEvents.force();
+        Files.move(newFile.toPath(), eventsFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        events = newEvents;
+        capacity = newCapacity;
+        logger.info("Grew the event index in {} to {} slots", directory, newCapacity);
+        return true;
+    }
+
+    /**
+     * Appends a link record to a list of links.
+     *
+     * @param next the record number of the head of the list, or 0 if the list is empty
+     * @return the record number of the new head of the list
+     */
+    private long appendLink(@NonNull UUID other, int linkType, long next) throws IOException {
+        var record = ByteBuffer.allocate(LINK_SIZE);
+        record.putLong(other.getMostSignificantBits())
+                .putLong(other.getLeastSignificantBits())
+                .putLong(next)
+                .putInt(linkType)
+                .putInt(0)
+                .flip();
+        var position = linkCount * LINK_SIZE;
+        while (record.hasRemaining()) {
+            position += linksChannel.write(record, position);
+        }
+        return ++linkCount;
+    }
+
+    @NonNull
+    private List<Link> readLinks(@NonNull UUID id, int headOffset, int maxLinks) {
+        var slot = find(id);
+        if (slot < 0) {
+            return Collections.emptyList();
+        }
+        var result = new ArrayList<Link>();
+        var record = ByteBuffer.allocate(LINK_SIZE);
+        try {
+            var next = events.getLong(slot + headOffset);
+            while (next > 0 && next <= linkCount && result.size() < maxLinks) {
+                record.clear();
+                readFully(record, (next - 1) * LINK_SIZE);
+                record.flip();
+                var other = new UUID(record.getLong(), record.getLong());
+                var previous = next;
+                next = record.getLong();
+                var linkType = name(record.getInt());
+                if (linkType != null) {
+                    result.add(new Link(linkType, other));
+                }
+                // A record always points to an older one, so anything else is a record that was overwritten.
+                if (next >= previous) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read the links of event {} from the event index in {}: {}",
+                    id, directory, e.toString());
+        }
+        // The lists are built by prepending, so reverse them to get the order the links were added in.
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void readFully(@NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (linksChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + new File(directory, LINKS_FILE));
+            }
+        }
+    }
+
+    private int nameId(@NonNull String name) throws IOException {
+        var id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+            throw new IOException("Names in the event index can't contain line breaks: " + name);
+        }
+        Files.write(new File(directory, NAMES_FILE).toPath(), (name + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        id = names.size();
+        names.add(name);
+        nameIds.put(name, id);
+        return id;
+    }
+
+    @CheckForNull
+    private String name(int id) {
+        return id >= 0 && id < names.size() ? names.get(id) : null;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Api;
+import hudson.model.RootAction;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
+import jenkins.security.stapler.StaplerAccessibleType;
+import jenkins.util.SystemProperties;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Exposes the {@link EventIndex} over the REST API. The event with a given id, the build that sent it,
+ * and the events that it links to and that link to it are available at
+ * <pre>
+ * GET $JENKINS_URL/eiffel-events/&lt;event id&gt;/api/json
+ * </pre>
+ * Events sent by builds that the user isn't allowed to see are reported as unknown.
+ */
+@Extension
+public class EventIndexAction implements RootAction {
+    /** The maximum number of upstream and downstream links that are returned for an event. */
+    private static final int MAX_LINKS = SystemProperties.getInteger(
+            EventIndexAction.class.getName() + ".maxLinks", 1000);
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Eiffel events";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "eiffel-events";
+    }
+
+    /**
+     * Looks up an event by its id.
+     *
+     * @return the event, or null (resulting in a 404) if the index doesn't know of it
+     */
+    @CheckForNull
+    public IndexedEvent getDynamic(String id, StaplerRequest req, StaplerResponse rsp) {
+        Jenkins.get().checkPermission(Jenkins.READ);
+        var index = EventIndex.getInstance();
+        if (index == null) {
+            return null;
+        }
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        var entry = visibleEntry(index, uuid);
+        var downstream = visibleLinks(index, index.getDownstream(uuid, MAX_LINKS));
+        if (entry == null && downstream.isEmpty()) {
+            return null;
+        }
+        var upstream = entry != null ? linksOf(index, index.getUpstream(uuid, MAX_LINKS)) : List.<IndexedLink>of();
+        return new IndexedEvent(uuid, entry, upstream, downstream);
+    }
+
+    /** Returns an event sent by a build if the current user may see the build's job. */
+    @CheckForNull
+    private static EventIndex.Entry visibleEntry(@NonNull EventIndex index, @NonNull UUID id) {
+        var entry = index.get(id);
+        if (entry == null || Jenkins.get().getItemByFullName(entry.getJobName()) == null) {
+            return null;
+        }
+        return entry;
+    }
+
+    /** Describes links, resolving the events that they point to where possible. */
+    @NonNull
+    private static List<IndexedLink> linksOf(@NonNull EventIndex index, @NonNull List<EventIndex.Link> links) {
+        return links.stream()
+                .map(link -> new IndexedLink(link, visibleEntry(index, link.getId())))
+                .collect(Collectors.toList());
+    }
+
+    /** Describes links from events sent by builds, leaving out the builds the current user may not see. */
+    @NonNull
+    private static List<IndexedLink> visibleLinks(@NonNull EventIndex index, @NonNull List<EventIndex.Link> links) {
+        return linksOf(index, links).stream()
+                .filter(link -> link.entry != null)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * An event in the index.
+     */
+    @ExportedBean
+    @StaplerAccessibleType
+    public static class IndexedEvent {
+        private final UUID id;
+        private final EventIndex.Entry entry;
+        private final List<IndexedLink> upstream;
+        private final List<IndexedLink> downstream;
+
+        IndexedEvent(@NonNull UUID id, @CheckForNull EventIndex.Entry entry,
+                     @NonNull List<IndexedLink> upstream, @NonNull List<IndexedLink> downstream) {
+            this.id = id;
+            this.entry = entry;
+            this.upstream = upstream;
+            this.downstream = downstream;
+        }
+
+        public Api getApi() {
+            return new Api(this);
+        }
+
+        @Exported
+        public String getId() {
+            return id.toString();
+        }
+
+        /** The type of the event, or null if it wasn't sent by a build. */
+        @Exported
+        @CheckForNull
+        public String getType() {
+            return entry != null ? entry.getEventType() : null;
+        }
+
+        /** The full name of the job that sent the event, or null if it wasn't sent by a build. */
+        @Exported
+        @CheckForNull
+        public String getJob() {
+            return entry != null ? entry.getJobName() : null;
+        }
+
+        /** The number of the build that sent the event, or null if it wasn't sent by a build. */
+        @Exported
+        @CheckForNull
+        public Integer getBuildNumber() {
+            return entry != null ? entry.getBuildNumber() : null;
+        }
+
+        /** The links of the event. */
+        @Exported(inline = true)
+        public List<IndexedLink> getUpstream() {
+            return upstream;
+        }
+
+        /** The links to the event from events sent by builds. */
+        @Exported(inline = true)
+        public List<IndexedLink> getDownstream() {
+            return downstream;
+        }
+    }
+
+    /**
+     * A link between two events, seen from one of them.
+     */
+    @ExportedBean
+    public static class IndexedLink {
+        private final EventIndex.Link link;
+        private final EventIndex.Entry entry;
+
+        IndexedLink(@NonNull EventIndex.Link link, @CheckForNull EventIndex.Entry entry) {
+            this.link = link;
+            this.entry = entry;
+        }
+
+        @Exported
+        public String getLinkType() {
+            return link.getType();
+        }
+
+        @Exported
+        public String getId() {
+            return link.getId().toString();
+        }
+
+        /** The type of the linked event, or null if it wasn't sent by a build. */
+        @Exported
+        @CheckForNull
+        public String getType() {
+            return entry != null ? entry.getEventType() : null;
+        }
+
+        /** The full name of the job that sent the linked event, or null if it wasn't sent by a build. */
+        @Exported
+        @CheckForNull
+        public String getJob() {
+            return entry != null ? entry.getJobName() : null;
+        }
+
+        /** The number of the build that sent the linked event, or null if it wasn't sent by a build. */
+        @Exported
+        @CheckForNull
+        public Integer getBuildNumber() {
+            return entry != null ? entry.getBuildNumber() : null;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * An append-only journal of the Eiffel events that are stored with a {@link Run}, kept in a file
+ * next to the Run's <code>build.xml</code> with one JSON event per line (NDJSON). Storing the events
+ * there instead of as strings in the Run's actions keeps <code>build.xml</code> small and keeps the
+ * events out of the heap of every loaded Run until someone asks for them.
+ *
+ * <p>The journal holds the activity events of the Run and the {@link
+ * com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactCreatedEvent}s saved by
+ * <code>sendEiffelEvent</code> for a later <code>publishEiffelArtifacts</code> step, so events are
+ * told apart by their <code>meta.type</code>.</p>
+ */
+public final class EventJournal {
+    /** The name of the journal file in the Run's directory. */
+    public static final String FILE_NAME = "eiffel-events.ndjson";
+
+    /** Serializes appends to all journals. Events are appended a handful of times per build. */
+    private static final Object APPEND_LOCK = new Object();
+
+    private final File file;
+
+    EventJournal(@NonNull final File file) {
+        this.file = file;
+    }
+
+    /** Returns the journal of a Run. */
+    @NonNull
+    public static EventJournal of(@NonNull final Run<?, ?> run) {
+        return new EventJournal(new File(run.getRootDir(), FILE_NAME));
+    }
+
+    /** Returns true if events should be added to journals rather than stored in the Runs' actions. */
+    public static boolean isEnabled() {
+        var config = EiffelBroadcasterConfig.getInstance();
+        return config != null && config.getJournalEvents();
+    }
+
+    /** Returns true if the journal file exists. */
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    /**
+     * Appends an event to the journal.
+     *
+     * @param eventJSON the event, which must be a single line of JSON
+     */
+    public void append(@NonNull final String eventJSON) throws IOException {
+        if (eventJSON.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("The JSON representation of an event must be a single line");
+        }
+        var line = (eventJSON + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (APPEND_LOCK) {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Streams the events of a type in the order they were appended. The stream reads the journal
+     * lazily and must be closed.
+     *
+     * @param eventType the <code>meta.type</code> of the events
+     * @return the JSON representations of the events, or an empty stream if there's no journal
+     */
+    @NonNull
+    public Stream<String> events(@NonNull final String eventType) throws IOException {
+        if (!exists()) {
+            return Stream.empty();
+        }
+        return Files.lines(file.toPath(), StandardCharsets.UTF_8)
+                .filter(line -> isOfType(line, eventType));
+    }
+
+    /**
+     * Returns the first event of each of the given types, reading the journal once.
+     *
+     * @param eventTypes the <code>meta.type</code>s of the events
+     * @return the JSON representations of the events, by type, for the types found in the journal
+     */
+    @NonNull
+    public Map<String, String> firstEvents(@NonNull final Set<String> eventTypes) throws IOException {
+        var result = new HashMap<String, String>();
+        if (!exists()) {
+            return result;
+        }
+        try (var lines = Files.lines(file.toPath(), StandardCharsets.UTF_8)) {
+            var iterator = lines.iterator();
+            while (iterator.hasNext() && result.size() < eventTypes.size()) {
+                var line = iterator.next();
+                for (var eventType : eventTypes) {
+                    if (!result.containsKey(eventType) && isOfType(line, eventType)) {
+                        result.put(eventType, line);
+                        break;
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if a line holds an event of the given type. Lines that don't mention the type
+     * at all are skipped without being parsed.
+     */
+    private static boolean isOfType(@NonNull final String line, @NonNull final String eventType) {
+        if (!line.contains(eventType)) {
+            return false;
+        }
+        try {
+            return eventType.equals(EventCodec.readTree(line.getBytes(StandardCharsets.UTF_8))
+                    .path("meta").path("type").asText(null));
+        } catch (JsonProcessingException e) {
+            // A line that was torn by a crash, which can only be the last one.
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
@@ -0,0 +1,594 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.rabbitmq.client.AMQP;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only spool of outbound messages, stored in memory-mapped segment files on disk.
+ * It lets {@link MQConnection} hold on to messages during long broker outages without using
+ * heap, and replay the messages that hadn't been confirmed by the broker after a restart.
+ *
+ * <p>Each record is laid out as <code>[payload length][CRC-32 of payload][payload]</code>. The
+ * length is written last, so a record that was torn by a crash reads as the end of the spool.
+ * Records are handed out in order by {@link #read(int, long, TimeUnit)} and remain in the spool
+ * until they're {@link #acknowledge(long) acknowledged}. The position of the oldest
+ * unacknowledged record is the checkpoint, which is persisted in a file of its own and is where
+ * reading resumes when the spool is reopened. Segments that lie entirely before the checkpoint
+ * are deleted, and when a drained spool is closed the checkpoint is moved past all segments so that
+ * they're deleted too. A mapped file can't be deleted on some platforms (Windows) until its buffer
+ * has been garbage collected, so failed deletions are retried later and when the spool is reopened.</p>
+ *
+ * <p>Only the message properties set by the plugin (app id, content type, delivery mode,
+ * message id and timestamp) are preserved.</p>
+ */
+final class EventSpool implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EventSpool.class);
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final TreeSet<Long> unacknowledged = new TreeSet<>();
+    private final List<File> undeletedFiles = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final MappedByteBuffer checkpointBuffer;
+    private long writePosition;
+    private long readPosition;
+    private long checkpoint;
+    private boolean closed;
+    private boolean wakeUpRequested;
+
+    /**
+     * A message read from the spool.
+     */
+    static final class Entry {
+        private final long position;
+        private final String orderingKey;
+        private final String exchange;
+        private final String routingKey;
+        private final AMQP.BasicProperties props;
+        private final byte[] body;
+
+        private Entry(long position, String orderingKey, String exchange, String routingKey,
+                      AMQP.BasicProperties props, byte[] body) {
+            this.position = position;
+            this.orderingKey = orderingKey;
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.props = props;
+            this.body = body;
+        }
+
+        /** The position of the record in the spool, to be passed to {@link #acknowledge(long)}. */
+        long getPosition() {
+            return position;
+        }
+
+        @CheckForNull
+        String getOrderingKey() {
+            return orderingKey;
+        }
+
+        String getExchange() {
+            return exchange;
+        }
+
+        String getRoutingKey() {
+            return routingKey;
+        }
+
+        AMQP.BasicProperties getProps() {
+            return props;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file. The base is the spool position of the first byte in the segment.
+     */
+    private static final class Segment {
+        private final long base;
+        private final File file;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long base, File file, long size) throws IOException {
+            this.base = base;
+            this.file = file;
+            try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private long end() {
+            return base + buffer.capacity();
+        }
+    }
+
+    private EventSpool(File directory, int segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        try (var channel = FileChannel.open(new File(directory, CHECKPOINT_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            checkpointBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        checkpoint = checkpointBuffer.getLong(0);
+        var files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (var file : files) {
+                var base = parseBase(file);
+                if (base < 0) {
+                    logger.warn("Ignoring unexpected file in event spool: {}", file);
+                } else if (base + file.length() <= checkpoint) {
+                    // Already consumed, but the file couldn't be deleted while the spool was open.
+                    undeletedFiles.add(file);
+                } else {
+                    segments.put(base, new Segment(base, file, file.length()));
+                }
+            }
+        }
+        deleteSegmentFiles();
+        if (segments.isEmpty()) {
+            createSegment(checkpoint);
+        }
+        readPosition = Math.max(checkpoint, segments.firstKey());
+        checkpoint = readPosition;
+        recoverWritePosition();
+        if (readPosition > writePosition) {
+            // The checkpoint points past the recovered data, e.g. because the tail of
+            // the last segment was torn. Nothing to replay.
+            readPosition = writePosition;
+            checkpoint = writePosition;
+        }
+        checkpointBuffer.putLong(0, checkpoint);
+        if (writePosition > readPosition) {
+            logger.info("Event spool in {} contains {} bytes of unconfirmed messages that will be replayed",
+                    directory, writePosition - readPosition);
+        }
+    }
+
+    /**
+     * Opens the spool in the given directory, creating it if needed.
+     *
+     * @param directory the directory where the segment files and the checkpoint are kept
+     * @param segmentSize the size of new segment files, in bytes
+     * @param maxSegments the maximum number of segment files, which bounds the disk usage of the spool
+     * @return the opened spool
+     * @throws IOException if the spool couldn't be opened
+     */
+    static EventSpool open(File directory, int segmentSize, int maxSegments) throws IOException {
+        Files.createDirectories(directory.toPath());
+        return new EventSpool(directory, segmentSize, maxSegments);
+    }
+
+    /**
+     * Returns whether there's a spool in the given directory that may contain messages to replay.
+     * Segment files that lie entirely before the checkpoint, e.g. because they couldn't be deleted
+     * when the spool was closed, don't count.
+     *
+     * @param directory the spool directory
+     * @return true if the directory contains segment files that haven't been consumed
+     */
+    static boolean exists(File directory) {
+        var files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null || files.length == 0) {
+            return false;
+        }
+        long checkpoint;
+        try {
+            var bytes = Files.readAllBytes(new File(directory, CHECKPOINT_FILE).toPath());
+            checkpoint = bytes.length >= Long.BYTES ? ByteBuffer.wrap(bytes).getLong() : 0;
+        } catch (IOException e) {
+            checkpoint = 0;
+        }
+        for (var file : files) {
+            var base = parseBase(file);
+            if (base >= 0 && base + file.length() > checkpoint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the spool position of the first byte in a segment file, or -1 if the name of the
+     * file isn't that of a segment.
+     */
+    private static long parseBase(File file) {
+        var name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Scans the last segment for the end of the valid records, and zeroes whatever follows
+     * so that a torn record isn't mistaken for a valid one once new records have been appended.
+     */
+    private void recoverWritePosition() {
+        var segment = segments.lastEntry().getValue();
+        var offset = 0;
+        int length;
+        while ((length = validRecordLength(segment, offset)) > 0) {
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = segment.base + offset;
+        if (offset + Integer.BYTES <= segment.buffer.capacity() && segment.buffer.getInt(offset) != 0) {
+            logger.warn("Discarding a torn record at the end of the event spool in {}", directory);
+            for (var i = offset; i < segment.buffer.capacity(); i++) {
+                segment.buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the payload length of the record at the given offset in a segment, or zero
+     * if there's no complete and intact record there.
+     */
+    private static int validRecordLength(Segment segment, int offset) {
+        var capacity = segment.buffer.capacity();
+        if (offset + RECORD_HEADER_SIZE > capacity) {
+            return 0;
+        }
+        var length = segment.buffer.getInt(offset);
+        if (length <= 0 || length > capacity - offset - RECORD_HEADER_SIZE) {
+            return 0;
+        }
+        var crc = new CRC32();
+        crc.update(segment.buffer.duplicate().position(offset + RECORD_HEADER_SIZE)
+                .limit(offset + RECORD_HEADER_SIZE + length));
+        return (int) crc.getValue() == segment.buffer.getInt(offset + Integer.BYTES) ? length : 0;
+    }
+
+    private Segment createSegment(long base) throws IOException {
+        var segment = new Segment(base, new File(directory, String.format("%020d%s", base, SEGMENT_SUFFIX)),
+                segmentSize);
+        segments.put(base, segment);
+        return segment;
+    }
+
+    /**
+     * Appends a message to the spool.
+     *
+     * @param orderingKey the ordering key that the message was queued with, or null
+     * @param exchange the exchange to publish the message to
+     * @param routingKey the routing key
+     * @param props the message properties
+     * @param body the message body
+     * @return true if the message was appended, false if the spool is full
+     * @throws IOException if a new segment file couldn't be created
+     * @throws IllegalArgumentException if the message is too large to fit in a segment
+     * @throws IllegalStateException if the spool has been closed
+     */
+    boolean append(@CheckForNull String orderingKey, String exchange, String routingKey,
+                   AMQP.BasicProperties props, byte[] body) throws IOException {
+        var strings = new byte[][] {
+                encode(orderingKey),
+                encode(exchange),
+                encode(routingKey),
+                encode(props.getAppId()),
+                encode(props.getContentType()),
+                encode(props.getMessageId()),
+        };
+        var payloadSize = Integer.BYTES + Long.BYTES + Integer.BYTES + body.length;
+        for (var string : strings) {
+            payloadSize += Integer.BYTES + (string != null ? string.length : 0);
+        }
+        if (RECORD_HEADER_SIZE + payloadSize > segmentSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Message of %d bytes doesn't fit in a spool segment of %d bytes", payloadSize, segmentSize));
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The event spool has been closed");
+            }
+            var segment = segments.lastEntry().getValue();
+            var offset = (int) (writePosition - segment.base);
+            if (offset + RECORD_HEADER_SIZE + payloadSize > segment.buffer.capacity()) {
+                if (segments.size() >= maxSegments) {
+                    return false;
+                }
+                segment = createSegment(segment.end());
+                writePosition = segment.base;
+                offset = 0;
+            }
+            var buffer = segment.buffer.duplicate().position(offset + RECORD_HEADER_SIZE);
+            for (var string : strings) {
+                putBytes(buffer, string);
+            }
+            buffer.putInt(props.getDeliveryMode() != null ? props.getDeliveryMode() : NULL_LENGTH);
+            buffer.putLong(props.getTimestamp() != null ? props.getTimestamp().getTime() : NULL_TIMESTAMP);
+            putBytes(buffer, body);
+
+            var crc = new CRC32();
+            crc.update(segment.buffer.duplicate().position(offset + RECORD_HEADER_SIZE)
+                    .limit(offset + RECORD_HEADER_SIZE + payloadSize));
+            segment.buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+            segment.buffer.putInt(offset, payloadSize);
+            writePosition += RECORD_HEADER_SIZE + payloadSize;
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the next messages from the spool. The messages stay in the spool, and will be read
+     * again if the spool is reopened, until they have been acknowledged.
+     *
+     * @param maxEntries the maximum number of messages to return
+     * @param timeout how long to wait for a message if the spool is empty
+     * @param unit the unit of the timeout
+     * @return the messages read, which is an empty list if the timeout expired
+     *         or the reader was woken up by {@link #wakeUp()}
+     * @throws InterruptedException if the thread was interrupted while waiting for a message
+     */
+    List<Entry> read(int maxEntries, long timeout, TimeUnit unit) throws InterruptedException {
+        var entries = new ArrayList<Entry>();
+        lock.lock();
+        try {
+            var nanos = unit.toNanos(timeout);
+            while (!closed && !wakeUpRequested && readPosition == writePosition) {
+                if (nanos <= 0) {
+                    return entries;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            wakeUpRequested = false;
+            while (!closed && entries.size() < maxEntries && readPosition < writePosition) {
+                var segment = segments.floorEntry(readPosition).getValue();
+                var offset = (int) (readPosition - segment.base);
+                var length = validRecordLength(segment, offset);
+                if (length == 0) {
+                    // The rest of the segment is unused (or unreadable), continue with the next one.
+                    var next = segments.higherKey(segment.base);
+                    if (next == null) {
+                        break;
+                    }
+                    if (offset + Integer.BYTES <= segment.buffer.capacity() && segment.buffer.getInt(offset) != 0) {
+                        logger.warn("Skipping the unreadable remainder of event spool segment {}", segment.file);
+                    }
+                    readPosition = next;
+                    continue;
+                }
+                entries.add(decode(readPosition, segment.buffer.duplicate().position(offset + RECORD_HEADER_SIZE)));
+                unacknowledged.add(readPosition);
+                readPosition += RECORD_HEADER_SIZE + length;
+            }
+            updateCheckpoint();
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks a message that has been read as done with, i.e. confirmed by the broker or deliberately
+     * dropped, which allows the checkpoint to move past it.
+     *
+     * @param position the position of the message, as returned by {@link Entry#getPosition()}
+     */
+    void acknowledge(long position) {
+        lock.lock();
+        try {
+            if (unacknowledged.remove(position)) {
+                updateCheckpoint();
+                if (unacknowledged.isEmpty() && readPosition == writePosition) {
+                    wakeUpLocked();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes a thread waiting in {@link #read(int, long, TimeUnit)} return early (or the next call
+     * return immediately), e.g. so that the reader can check whether the spool should be closed.
+     * This happens automatically when the spool becomes drained.
+     */
+    void wakeUp() {
+        lock.lock();
+        try {
+            wakeUpLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void wakeUpLocked() {
+        wakeUpRequested = true;
+        notEmpty.signalAll();
+    }
+
+    /**
+     * Returns whether all messages in the spool have been read and acknowledged.
+     *
+     * @return true if the spool is drained
+     */
+    boolean isDrained() {
+        lock.lock();
+        try {
+            return readPosition == writePosition && unacknowledged.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Persists the current checkpoint and deletes segments that lie entirely before it. */
+    private void updateCheckpoint() {
+        var newCheckpoint = unacknowledged.isEmpty() ? readPosition : unacknowledged.first();
+        if (closed || newCheckpoint == checkpoint) {
+            return;
+        }
+        checkpoint = newCheckpoint;
+        checkpointBuffer.putLong(0, checkpoint);
+        // Otherwise a crash could replay messages that already have been acknowledged.
+        checkpointBuffer.force();
+        var segmentCount = segments.size();
+        while (segments.size() > 1 && segments.higherKey(segments.firstKey()) <= checkpoint) {
+            // Dropping the segment lets its buffer be garbage collected, which unmaps the file.
+            undeletedFiles.add(segments.pollFirstEntry().getValue().file);
+        }
+        if (segments.size() < segmentCount) {
+            deleteSegmentFiles();
+        }
+    }
+
+    /**
+     * Deletes the segment files that have been consumed, including those that couldn't be deleted
+     * earlier. A file that still can't be deleted is kept for the next attempt.
+     */
+    private void deleteSegmentFiles() {
+        for (var it = undeletedFiles.iterator(); it.hasNext(); ) {
+            var file = it.next();
+            if (file.delete() || !file.exists()) {
+                it.remove();
+            } else {
+                logger.warn("Unable to delete event spool segment {}, will try again later", file);
+            }
+        }
+    }
+
+    /**
+     * Closes the spool. Any thread waiting in {@link #read(int, long, TimeUnit)} returns,
+     * and further appends are refused. If the spool is drained, all segment files are deleted
+     * so that the spool isn't reopened just to find that there's nothing to replay.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (readPosition == writePosition && unacknowledged.isEmpty()) {
+                checkpoint = segments.lastEntry().getValue().end();
+                checkpointBuffer.putLong(0, checkpoint);
+                for (var segment : segments.values()) {
+                    undeletedFiles.add(segment.file);
+                }
+                segments.clear();
+            }
+            checkpointBuffer.force();
+            for (var segment : segments.values()) {
+                segment.buffer.force();
+            }
+            deleteSegmentFiles();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Entry decode(long position, ByteBuffer buffer) {
+        var orderingKey = getString(buffer);
+        var exchange = getString(buffer);
+        var routingKey = getString(buffer);
+        var appId = getString(buffer);
+        var contentType = getString(buffer);
+        var messageId = getString(buffer);
+        var deliveryMode = buffer.getInt();
+        var timestamp = buffer.getLong();
+        var body = getBytes(buffer);
+        var props = new AMQP.BasicProperties.Builder()
+                .appId(appId)
+                .contentType(contentType)
+                .messageId(messageId)
+                .deliveryMode(deliveryMode != NULL_LENGTH ? deliveryMode : null)
+                .timestamp(timestamp != NULL_TIMESTAMP ? new Date(timestamp) : null)
+                .build();
+        return new Entry(position, orderingKey, exchange, routingKey, props, body);
+    }
+
+    @CheckForNull
+    private static byte[] encode(@CheckForNull String s) {
+        return s != null ? s.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static void putBytes(ByteBuffer buffer, @CheckForNull byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(NULL_LENGTH);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    @CheckForNull
+    private static byte[] getBytes(ByteBuffer buffer) {
+        var length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @CheckForNull
+    private static String getString(ByteBuffer buffer) {
+        var bytes = getBytes(buffer);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+}
@@ -54,7 +54,8 @@ public class ItemListenerImpl extends ItemListener {
         if (config != null && config.getEnableBroadcaster()) {
             MQConnection.getInstance().initialize(config.getUserName(), config.getUserPassword(),
                     config.getServerUri(), config.getVirtualHost());
-            // initialize EiffelJobTable singleton.
+            MQConnection.getInstance().setSpoolEvents(config.getSpoolEvents());
+            // Load the EiffelJobTable so that builds queued before a restart can be mapped to their ActT.
             EiffelJobTable.getInstance();
         }
         super.onLoaded();
@@ -32,20 +32,28 @@ import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.ShutdownListener;
 import com.rabbitmq.client.ShutdownSignalException;
+import hudson.init.Terminator;
 import hudson.util.Secret;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-
 /**
  * Creates an MQ connection.
  *
@@ -55,19 +63,114 @@ public final class MQConnection implements ShutdownListener {
     private static final Logger logger = LoggerFactory.getLogger(MQConnection.class);
     private static final int HEARTBEAT_INTERVAL = 30;
     private static final int MESSAGE_QUEUE_SIZE = 100000;
-    private static final int SENDMESSAGE_TIMEOUT = 100;
-    private static final int CONNECTION_WAIT = 10000;
+    private static final long STOP_TIMEOUT = 10000L;
+
+    /** The maximum number of messages that are drained from the queue and published back to back. */
+    private static final int PUBLISH_BATCH_SIZE = SystemProperties.getInteger(
+            MQConnection.class.getName() + ".publishBatchSize", 100);
+
+    /**
+     * The maximum time (in milliseconds) to wait for more messages to arrive before publishing
+     * a batch that isn't full. Zero means that whatever is in the queue is published immediately.
+     */
+    private static final long PUBLISH_LINGER = SystemProperties.getLong(
+            MQConnection.class.getName() + ".publishLingerMillis", 5L);
+
+    /**
+     * The maximum number of published messages on a channel that may be waiting for a publisher
+     * confirm from the broker. When the window is full the publishing pauses until confirms arrive.
+     */
+    private static final int MAX_IN_FLIGHT = SystemProperties.getInteger(
+            MQConnection.class.getName() + ".maxInFlight", 10000);
+
+    /**
+     * The number of channels that messages are published on, each with its own queue and thread.
+     * Messages with the same ordering key always end up on the same channel.
+     */
+    private static final int PUBLISHER_CHANNELS = Math.max(1, SystemProperties.getInteger(
+            MQConnection.class.getName() + ".publisherChannels", 1));
+
+    /** The size (in bytes) of each segment file in the event spool. */
+    private static final int SPOOL_SEGMENT_SIZE = SystemProperties.getInteger(
+            MQConnection.class.getName() + ".spoolSegmentSize", 16 * 1024 * 1024);
+
+    /** The maximum number of segment files in the event spool, which bounds its disk usage. */
+    private static final int SPOOL_MAX_SEGMENTS = SystemProperties.getInteger(
+            MQConnection.class.getName() + ".spoolMaxSegments", 64);
+
+    /**
+     * The maximum time (in milliseconds) to wait for room in a full queue
+     * when the {@link OverflowPolicy#BLOCK} policy is in effect.
+     */
+    private static final long BLOCK_TIMEOUT = SystemProperties.getLong(
+            MQConnection.class.getName() + ".blockTimeoutMillis", 10000L);
+
+    /**
+     * The time (in milliseconds) to wait before the first attempt to reconnect after a failure.
+     * The delay is doubled for each consecutive failure, up to {@link #RECONNECT_MAX_DELAY}.
+     */
+    private static final long RECONNECT_INITIAL_DELAY = Math.max(1L, SystemProperties.getLong(
+            MQConnection.class.getName() + ".reconnectInitialDelayMillis", 100L));
+
+    /** The maximum time (in milliseconds) to wait between two attempts to reconnect. */
+    private static final long RECONNECT_MAX_DELAY = Math.max(RECONNECT_INITIAL_DELAY, SystemProperties.getLong(
+            MQConnection.class.getName() + ".reconnectMaxDelayMillis", 10000L));
+
+    /**
+     * The maximum time (in milliseconds) to wait for the broker to confirm a published message.
+     * If it takes longer, the channel is abandoned and the unconfirmed messages are published again.
+     */
+    private static final long CONFIRM_TIMEOUT = SystemProperties.getLong(
+            MQConnection.class.getName() + ".confirmTimeoutMillis", 30000L);
+
+    /**
+     * The maximum number of times a message is published without being confirmed before it's dropped,
+     * which bounds the number of duplicates that consumers may receive.
+     */
+    private static final int MAX_PUBLISH_ATTEMPTS = Math.max(1, SystemProperties.getInteger(
+            MQConnection.class.getName() + ".maxPublishAttempts", 10));
 
     private volatile boolean initialized = false;
     private String userName;
     private Secret userPassword;
     private String serverUri;
     private String virtualHost;
-    private Connection connection = null;
+    private volatile Connection connection = null;
+
+    private final Publisher[] publishers;
 
-    private volatile LinkedBlockingQueue messageQueue = new LinkedBlockingQueue(MESSAGE_QUEUE_SIZE);
-    private volatile ConcurrentNavigableMap<Long, MessageData> outstandingConfirms = new ConcurrentSkipListMap<>();
-    private Thread messageQueueThread;
+    /** Used to spread messages without an ordering key evenly over the publishers. */
+    private final AtomicInteger nextPublisher = new AtomicInteger();
+
+    /** Whether new messages should be appended to the {@link #spool} instead of queued in memory. */
+    private volatile boolean spoolEvents = false;
+
+    /**
+     * The disk-backed spool, if opened. It's kept open after spooling has been disabled until
+     * the messages already in it have been published.
+     */
+    private volatile EventSpool spool;
+
+    /**
+     * The number of messages per ordering key that have been appended to the {@link #spool} and not yet
+     * moved to a publisher's queue by the spool reader. Later messages with such a key are appended to the
+     * spool too, e.g. after a message has been spilled (see {@link OverflowPolicy#SPILL_TO_DISK}), so that
+     * they aren't published before the spooled ones.
+     */
+    private final ConcurrentHashMap<String, Integer> spooledMessages = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the most recent attempt to create a channel or publish a message succeeded.
+     * Used by {@link #isCircuitOpen(String, OverflowPolicy)}.
+     */
+    private volatile boolean brokerReachable = true;
+
+    /**
+     * Incremented when the exchanges that have been validated on the publishers' current channels
+     * (see {@link #validateExchange(Channel, String, Set)}) must be validated again,
+     * e.g. because the configured exchange has changed.
+     */
+    private final AtomicInteger exchangeGeneration = new AtomicInteger();
 
     /**
      * Throw on exceptions when creating a channel
@@ -91,10 +194,38 @@ public final class MQConnection implements ShutdownListener {
         }
     }
 
+    /**
+     * Thrown when the broker refuses the passive declaration of an exchange, i.e. when the exchange
+     * is missing or can't be used. The broker closes the channel when this happens.
+     */
+    private static class ExchangeValidationException extends IOException {
+        private final String exchange;
+        private final int replyCode;
+
+        public ExchangeValidationException(String exchange, int replyCode, Throwable cause) {
+            super(String.format("The broker refused exchange \"%s\" with reply code %d", exchange, replyCode),
+                    cause);
+            this.exchange = exchange;
+            this.replyCode = replyCode;
+        }
+
+        /** Returns true if the exchange doesn't exist, in which case retrying is pointless. */
+        public boolean isPermanent() {
+            return replyCode == AMQP.NOT_FOUND;
+        }
+    }
+
     /**
      * Lazy-loaded singleton using the initialization-on-demand holder pattern.
      */
-    private MQConnection() { }
+    private MQConnection() {
+        // The total number of queued messages stays the same regardless of the number of channels.
+        var queueSize = Math.max(1, MESSAGE_QUEUE_SIZE / PUBLISHER_CHANNELS);
+        publishers = new Publisher[PUBLISHER_CHANNELS];
+        for (int i = 0; i < publishers.length; i++) {
+            publishers[i] = new Publisher(i, queueSize);
+        }
+    }
 
     /**
      * Is only executed on {@link #getInstance()} invocation.
@@ -117,10 +248,14 @@ public final class MQConnection implements ShutdownListener {
      * Stores data for a RabbitMQ message.
      */
     private static final class MessageData {
-        private String exchange;
-        private String routingKey;
-        private AMQP.BasicProperties props;
-        private byte[] body;
+        private final String exchange;
+        private final String routingKey;
+        private final AMQP.BasicProperties props;
+        private final byte[] body;
+        private final long spoolPosition;
+
+        /** The number of times the message has been published. Only accessed by the publisher thread. */
+        private int publishAttempts;
 
         /**
          * Constructor.
@@ -131,10 +266,25 @@ public final class MQConnection implements ShutdownListener {
          * @param body the message body
          */
         private MessageData(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) {
+            this(exchange, routingKey, props, body, -1);
+        }
+
+        /**
+         * Constructor for a message read from the event spool.
+         *
+         * @param entry the spooled message
+         */
+        private MessageData(EventSpool.Entry entry) {
+            this(entry.getExchange(), entry.getRoutingKey(), entry.getProps(), entry.getBody(), entry.getPosition());
+        }
+
+        private MessageData(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body,
+                            long spoolPosition) {
             this.exchange = exchange;
             this.routingKey = routingKey;
             this.props = props;
             this.body = body;
+            this.spoolPosition = spoolPosition;
         }
 
         /**
@@ -172,6 +322,477 @@ public final class MQConnection implements ShutdownListener {
         private byte[] getBody() {
             return body;
         }
+
+        /**
+         * Returns whether the message was read from the event spool, and has to be
+         * acknowledged there once it has been confirmed by the broker.
+         *
+         * @return true if the message was read from the event spool
+         */
+        private boolean isSpooled() {
+            return spoolPosition >= 0;
+        }
+
+        /**
+         * Acknowledges the message in the event spool, if it was read from there.
+         *
+         * @param currentSpool the event spool, or null if there's none
+         */
+        private void acknowledgeSpooled(EventSpool currentSpool) {
+            if (isSpooled() && currentSpool != null) {
+                currentSpool.acknowledge(spoolPosition);
+            }
+        }
+    }
+
+    /**
+     * Publishes the messages of one shard of the message stream on a channel of its own.
+     * Each publisher has its own lock-free queue, thread and channel, with a {@link ConfirmTracker}
+     * per channel (sequence numbers from {@link Channel#getNextPublishSeqNo()} are only unique within
+     * a channel), so messages within a shard are published in order while the shards are published
+     * in parallel.
+     */
+    private final class Publisher {
+        private final int index;
+        private final MpscRingBuffer<MessageData> messageQueue;
+
+        /** Keeps track of the unconfirmed messages on the current channel, if there is one. */
+        private volatile ConfirmTracker<MessageData> confirmTracker;
+
+        /**
+         * Messages taken from the queue that remain to be published. Only accessed by the publisher thread,
+         * but kept across restarts of the thread so that no messages are lost when it's stopped.
+         */
+        private final List<MessageData> batch = new ArrayList<>(PUBLISH_BATCH_SIZE);
+
+        /** The delay before the next reconnection attempt. Only accessed by the publisher thread. */
+        private long retryDelay = RECONNECT_INITIAL_DELAY;
+
+        /**
+         * The number of times in a row the broker has refused an exchange of the batch.
+         * Only accessed by the publisher thread.
+         */
+        private int failedValidations;
+
+        private volatile boolean running;
+        private Thread messageQueueThread;
+
+        /**
+         * Constructor.
+         *
+         * @param index the index of the publisher, used to tell the publisher threads apart
+         * @param queueSize the maximum number of messages waiting to be published,
+         *                  which the queue rounds up to a power of two
+         */
+        private Publisher(int index, int queueSize) {
+            this.index = index;
+            this.messageQueue = new MpscRingBuffer<>(queueSize);
+        }
+
+        /**
+         * Puts a message in the message queue, applying the given overflow policy if the queue is full.
+         * {@link OverflowPolicy#SPILL_TO_DISK} is handled by the caller and is equivalent to
+         * {@link OverflowPolicy#DROP_NEWEST} here.
+         *
+         * @param messageData the message to publish
+         * @param overflowPolicy what to do if the queue is full
+         * @return true if the message was queued, false if the queue is full
+         * @throws InterruptedException if the thread was interrupted while waiting for room in the queue
+         */
+        private boolean offer(MessageData messageData, OverflowPolicy overflowPolicy) throws InterruptedException {
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    while (!messageQueue.offer(messageData)) {
+                        var dropped = messageQueue.poll();
+                        if (dropped != null) {
+                            logger.error("Internal RabbitMQ queue is full, dropping the oldest message!");
+                            dropped.acknowledgeSpooled(spool);
+                        }
+                    }
+                    return true;
+                case BLOCK:
+                    return messageQueue.offer(messageData, BLOCK_TIMEOUT, TimeUnit.MILLISECONDS);
+                default:
+                    return messageQueue.offer(messageData);
+            }
+        }
+
+        /**
+         * Sends messages from the message queue until the publisher is stopped. Messages are drained
+         * from the queue in batches (see {@link #fillBatch()}) and published back to back, while making
+         * sure the number of messages waiting for publisher confirms stays within {@link #MAX_IN_FLIGHT}.
+         * The thread is parked while there's nothing to do, and a channel is only created once
+         * there are messages to publish on it.
+         */
+        private void sendMessages() {
+            Channel channel = null;
+            ConfirmTracker<MessageData> tracker = null;
+            Semaphore inFlight = null;
+            var validatedExchanges = new HashSet<String>();
+            var validatedGeneration = exchangeGeneration.get();
+
+            try {
+                while (running) {
+                    try {
+                        if (channel != null && (!channel.isOpen() || tracker.hasFailed(System.nanoTime()))) {
+                            closeChannel(channel);
+                            channel = null;
+                            requeueUnconfirmedMessages(tracker);
+                        }
+                        // A batch that couldn't be published in its entirety is retried before
+                        // anything else is picked from the queue to preserve the message order.
+                        if (batch.isEmpty()) {
+                            fillBatch(channel != null ? tracker.getOldestDeadline() : Long.MAX_VALUE);
+                            if (batch.isEmpty()) {
+                                continue;
+                            }
+                        }
+                        if (channel == null) {
+                            var newChannel = createChannel();
+                            brokerReachable = true;
+                            try {
+                                newChannel.confirmSelect();
+                            } catch (IOException e) {
+                                closeChannel(newChannel);
+                                throw e;
+                            }
+                            tracker = new ConfirmTracker<>(MAX_IN_FLIGHT);
+                            confirmTracker = tracker;
+                            inFlight = new Semaphore(MAX_IN_FLIGHT);
+                            addMessageConfirmListener(newChannel, tracker, inFlight);
+                            addChannelShutdownListener(newChannel, inFlight, this);
+                            validatedExchanges.clear();
+                            channel = newChannel;
+                        }
+                        if (validatedGeneration != exchangeGeneration.get()) {
+                            validatedGeneration = exchangeGeneration.get();
+                            validatedExchanges.clear();
+                        }
+                        for (var messageData : batch) {
+                            validateExchange(channel, messageData.getExchange(), validatedExchanges);
+                        }
+                        publishBatch(channel, tracker, inFlight);
+                        retryDelay = RECONNECT_INITIAL_DELAY;
+                        failedValidations = 0;
+                    } catch (ChannelCreationException | MessageDeliveryException transientException) {
+                        brokerReachable = false;
+                        logger.error(transientException.getMessage(), transientException.getCause());
+                        waitBeforeRetry();
+                    } catch (ExchangeValidationException eve) {
+                        // The broker has closed the channel, which is replaced before the next attempt.
+                        // Retrying a missing exchange would hold up the rest of the shard forever.
+                        if (eve.isPermanent() || ++failedValidations >= MAX_PUBLISH_ATTEMPTS) {
+                            dropMessagesTo(eve.exchange, eve);
+                            failedValidations = 0;
+                        } else {
+                            logger.error("error validating exchange, retrying: {}", eve.getMessage());
+                            waitBeforeRetry();
+                        }
+                    } catch (IOException ioe) {
+                        logger.error("error validating channel: ", ioe);
+                        waitBeforeRetry();
+                    } catch (IllegalArgumentException iae) {
+                        // There's no point in retrying messages that can't be delivered with the current configuration.
+                        logger.error("error validating channel, dropping {} message(s): ", batch.size(), iae);
+                        var currentSpool = spool;
+                        batch.forEach(messageData -> messageData.acknowledgeSpooled(currentSpool));
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException ie) {
+                if (running) {
+                    logger.warn("Eiffel message publisher #{} was interrupted", index);
+                }
+            } finally {
+                if (channel != null) {
+                    awaitConfirms(channel);
+                    closeChannel(channel);
+                    requeueUnconfirmedMessages(tracker);
+                }
+                logger.info("Eiffel message publisher #{} stopped", index);
+            }
+        }
+
+        /**
+         * Drops the messages of the batch that are to be published to an exchange, acknowledging
+         * the ones that were read from the event spool.
+         *
+         * @param exchange the exchange that the messages can't be published to
+         * @param cause the reason, which is logged
+         */
+        private void dropMessagesTo(String exchange, ExchangeValidationException cause) {
+            var currentSpool = spool;
+            var dropped = 0;
+            for (var it = batch.iterator(); it.hasNext(); ) {
+                var messageData = it.next();
+                if (exchange.equals(messageData.getExchange())) {
+                    messageData.acknowledgeSpooled(currentSpool);
+                    it.remove();
+                    dropped++;
+                }
+            }
+            logger.error("{}, dropping {} message(s)", cause.getMessage(), dropped, cause.getCause());
+        }
+
+        /**
+         * Gives the broker a moment to confirm the messages published on a channel that is about
+         * to be closed, so that fewer of them have to be published again when the publisher restarts.
+         *
+         * @param channel the channel to wait for
+         */
+        private void awaitConfirms(Channel channel) {
+            // The thread has probably been interrupted to make it stop.
+            var interrupted = Thread.interrupted();
+            try {
+                channel.waitForConfirms(STOP_TIMEOUT / 2);
+            } catch (InterruptedException | TimeoutException | RuntimeException e) {
+                logger.debug("Gave up waiting for publisher confirms: ", e);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Sleeps for a while after a failure before the next attempt. The delay grows exponentially
+         * with the number of consecutive failures, and is randomized so that the publishers (and
+         * other Jenkins instances) don't all reconnect to a recovering broker at the same time.
+         *
+         * @throws InterruptedException if the publisher is stopped while waiting
+         */
+        private void waitBeforeRetry() throws InterruptedException {
+            var delay = retryDelay / 2 + ThreadLocalRandom.current().nextLong(retryDelay / 2 + 1);
+            retryDelay = Math.min(retryDelay * 2, RECONNECT_MAX_DELAY);
+            Thread.sleep(delay);
+        }
+
+        /**
+         * Wakes up the publisher thread if it's waiting for messages, when something other than
+         * a new message requires its attention, e.g. that its channel has been closed.
+         */
+        private void wakeUp() {
+            messageQueue.wakeUp();
+        }
+
+        /**
+         * Moves the messages that were published on an abandoned channel and never confirmed to the front
+         * of the batch, in their original order, so that they're published again on a new channel.
+         * The broker may have received some of them, so consumers can get duplicates; they carry the
+         * event's id as message id so that they can be told apart. Messages that have been published
+         * {@link #MAX_PUBLISH_ATTEMPTS} times are dropped.
+         *
+         * @param tracker the abandoned channel's confirm tracker
+         */
+        private void requeueUnconfirmedMessages(ConfirmTracker<MessageData> tracker) {
+            var unconfirmed = tracker.drain();
+            if (unconfirmed.isEmpty()) {
+                return;
+            }
+            var currentSpool = spool;
+            var requeued = new ArrayList<MessageData>(unconfirmed.size());
+            for (var messageData : unconfirmed) {
+                if (messageData.publishAttempts < MAX_PUBLISH_ATTEMPTS) {
+                    requeued.add(messageData);
+                } else {
+                    logger.error("Dropping message {} since it has been published {} times without being confirmed",
+                            messageData.getProps().getMessageId(), messageData.publishAttempts);
+                    messageData.acknowledgeSpooled(currentSpool);
+                }
+            }
+            logger.warn("Republishing {} unconfirmed message(s)", requeued.size());
+            batch.addAll(0, requeued);
+        }
+
+        /**
+         * Moves messages from the message queue to the batch. Waits until the given deadline for the first
+         * message to arrive, and then at most {@link #PUBLISH_LINGER} for the batch to fill up to
+         * {@link #PUBLISH_BATCH_SIZE} messages. Returns with an empty batch if woken up by {@link #wakeUp()}.
+         *
+         * @param deadline the {@link System#nanoTime()} when to stop waiting for the first message, e.g.
+         *                 to check for a confirm timeout, or {@link Long#MAX_VALUE} to wait for as long as it takes
+         * @throws InterruptedException if the thread was interrupted while waiting for messages
+         */
+        private void fillBatch(long deadline) throws InterruptedException {
+            var first = messageQueue.poll(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            var lingerDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PUBLISH_LINGER);
+            while (batch.size() < PUBLISH_BATCH_SIZE) {
+                if (messageQueue.drainTo(batch, PUBLISH_BATCH_SIZE - batch.size()) > 0) {
+                    continue;
+                }
+                var remaining = lingerDeadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                var next = messageQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        }
+
+        /**
+         * Publishes the batch of messages on a channel. Published messages are removed from the batch as
+         * they're handed to the tracker, so if an exception is thrown the batch contains the messages that
+         * remain to be sent, and a message whose publishing failed is republished from the tracker.
+         *
+         * @param channel a channel to publish the messages on
+         * @param tracker the channel's confirm tracker
+         * @param inFlight the semaphore that limits the number of unconfirmed messages on the channel
+         * @throws InterruptedException if the thread was interrupted while waiting for room in the window
+         * @throws MessageDeliveryException if a message couldn't be published, or the window stayed full
+         *                                  until the oldest unconfirmed message timed out
+         */
+        private void publishBatch(Channel channel, ConfirmTracker<MessageData> tracker, Semaphore inFlight)
+                throws InterruptedException, MessageDeliveryException {
+            var published = 0;
+            try {
+                for (var messageData : batch) {
+                    // The channel's shutdown listener releases the waiting thread if the channel is closed,
+                    // and so does the confirm listener if the broker nacks a message.
+                    if (!inFlight.tryAcquire(remainingNanos(tracker.getOldestDeadline()), TimeUnit.NANOSECONDS)) {
+                        throw new MessageDeliveryException("Timed out waiting for publisher confirms", null);
+                    }
+                    if (!channel.isOpen()) {
+                        throw new MessageDeliveryException("Channel closed while waiting for publisher confirms",
+                                channel.getCloseReason());
+                    }
+                    if (tracker.hasFailed(System.nanoTime())) {
+                        inFlight.release();
+                        throw new MessageDeliveryException("The broker failed to confirm a published message",
+                                null);
+                    }
+                    // The tracker holds on to the message from here on, even if publishing it fails.
+                    published++;
+                    sendOnChannel(messageData, channel, tracker);
+                }
+            } finally {
+                batch.subList(0, published).clear();
+            }
+        }
+
+        /**
+         * Add an async listener for ack/nack events. Acked messages are removed from the tracker, while
+         * a nack makes the publisher abandon the channel and publish the unconfirmed messages again.
+         *
+         * @param channel the channel to configure a confirm listener for
+         * @param tracker the channel's confirm tracker
+         * @param inFlight the semaphore that limits the number of unconfirmed messages on the channel,
+         *                 and that should get its permits back as messages are confirmed
+         */
+        private void addMessageConfirmListener(Channel channel, ConfirmTracker<MessageData> tracker,
+                                               Semaphore inFlight) {
+            // Signature is addConfirmListener(successCallback, errorCallback)
+            channel.addConfirmListener((sequenceNumber, multiple) -> {
+                var confirmed = tracker.confirm(sequenceNumber, multiple);
+                var currentSpool = spool;
+                confirmed.forEach(messageData -> messageData.acknowledgeSpooled(currentSpool));
+                inFlight.release(confirmed.size());
+            }, (sequenceNumber, multiple) -> {
+                logger.warn("The broker nacked message {}, the unconfirmed messages will be published again",
+                        sequenceNumber);
+                tracker.fail();
+                inFlight.release(MAX_IN_FLIGHT);
+                wakeUp();
+            });
+        }
+
+        /**
+         * Sends a message. The caller must have acquired a permit from the channel's in-flight semaphore.
+         * The message is tracked before it's published. If publishing fails the channel's sequence number
+         * has still advanced, so the tracker is failed rather than rolled back, which makes the publisher
+         * abandon the channel and publish the message again, in order, on a new one.
+         *
+         * @param messageData an object containing message data
+         * @param channel a channel to publish the message on
+         * @param tracker the channel's confirm tracker
+         */
+        private void sendOnChannel(MessageData messageData, Channel channel, ConfirmTracker<MessageData> tracker)
+                throws MessageDeliveryException {
+            long sequenceNumber = channel.getNextPublishSeqNo();
+            tracker.track(sequenceNumber, messageData, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONFIRM_TIMEOUT));
+            messageData.publishAttempts++;
+            try {
+                channel.basicPublish(
+                        messageData.getExchange(),
+                        messageData.getRoutingKey(),
+                        messageData.getProps(),
+                        messageData.getBody()
+                );
+            } catch (IOException e) {
+                tracker.fail();
+                throw new MessageDeliveryException("Cannot publish message", e);
+            } catch (AlreadyClosedException e) {
+                tracker.fail();
+                throw new MessageDeliveryException("Connection is already closed", e);
+            }
+        }
+
+        /**
+         * Start or restart the message queue thread as necessary, unless the MQConnection isn't
+         * initialized (e.g. because Jenkins is shutting down). A thread that has been asked to stop
+         * is interrupted and about to exit, so it's waited for and replaced by a new thread.
+         *
+         * @return true if the message queue thread was started, otherwise false
+         */
+        private synchronized boolean start() {
+            // Checked while holding the lock so that a concurrent stop() either stops
+            // the thread started here or makes this method refuse to start one.
+            if (!initialized) {
+                return false;
+            }
+            var thread = messageQueueThread;
+            if (thread != null && thread.isAlive()) {
+                if (running) {
+                    return false;
+                }
+                try {
+                    thread.join(STOP_TIMEOUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                if (thread.isAlive()) {
+                    logger.warn("Eiffel message publisher #{} is still stopping, not restarting it yet", index);
+                    return false;
+                }
+            }
+            running = true;
+            messageQueueThread = new Thread(this::sendMessages, "Eiffel message publisher #" + index);
+            messageQueueThread.setDaemon(true);
+            messageQueueThread.start();
+            logger.info("messageQueueThread #{} recreated since it was null or not alive.", index);
+            return true;
+        }
+
+        /**
+         * Stops the message queue thread and waits for it to finish. Queued messages, and messages
+         * taken from the queue but not yet published, are kept until the thread is started again.
+         */
+        private void stop() {
+            Thread thread;
+            synchronized (this) {
+                running = false;
+                thread = messageQueueThread;
+            }
+            if (thread == null) {
+                return;
+            }
+            thread.interrupt();
+            try {
+                thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                logger.warn("Eiffel message publisher #{} didn't stop within {} ms", index, STOP_TIMEOUT);
+            }
+        }
     }
 
     /**
@@ -180,18 +801,31 @@ public final class MQConnection implements ShutdownListener {
      * @return the number of currently outstanding confirms
      */
     public int getSizeOutstandingConfirms() {
-        return outstandingConfirms.size();
+        var size = 0;
+        for (var publisher : publishers) {
+            var tracker = publisher.confirmTracker;
+            if (tracker != null) {
+                size += tracker.size();
+            }
+        }
+        return size;
     }
 
     /**
      * Clear the outstanding confirms list, useful when testing.
      */
     public void clearOutstandingConfirms() {
-        outstandingConfirms.clear();
+        for (var publisher : publishers) {
+            var tracker = publisher.confirmTracker;
+            if (tracker != null) {
+                tracker.drain();
+            }
+        }
     }
 
     /**
-     * Puts a message in the message queue.
+     * Puts a message in the message queue. Messages without an ordering key are spread
+     * over the publisher channels, so their relative order isn't preserved.
      *
      * @param exchange the exchange to publish the message to
      * @param routingKey the routing key
@@ -199,60 +833,310 @@ public final class MQConnection implements ShutdownListener {
      * @param body the message body
      */
     public void addMessageToQueue(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) {
+        addMessageToQueue(exchange, routingKey, props, body, null, OverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Puts a message in the message queue, or appends it to the event spool if spooling
+     * has been enabled. Messages with the same ordering key are published on the same
+     * channel in the order they were added, so a message is appended to the event spool
+     * as long as there are messages with the same ordering key in it.
+     *
+     * @param exchange the exchange to publish the message to
+     * @param routingKey the routing key
+     * @param props other properties for the message - routing headers etc
+     * @param body the message body
+     * @param orderingKey the key that decides which channel the message is published on, or null
+     *                    if the message doesn't need to be ordered relative to any other message
+     * @param overflowPolicy what to do if the queue is full
+     * @return true if the message was queued, false if it was dropped because the queue
+     *         (or the event spool) was full
+     */
+    public boolean addMessageToQueue(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body,
+                                     String orderingKey, OverflowPolicy overflowPolicy) {
         startMessageQueueThread();
+        var currentSpool = spool;
+        if (spoolEvents && currentSpool != null && appendToSpool(currentSpool, exchange, routingKey, props, body,
+                orderingKey)) {
+            return true;
+        }
+        if (orderingKey != null && spooledMessages.containsKey(orderingKey)) {
+            // Queueing the message in memory would let it overtake the spooled messages with the same key.
+            var spillSpool = openSpool();
+            if (spillSpool != null && appendToSpool(spillSpool, exchange, routingKey, props, body, orderingKey)) {
+                return true;
+            }
+            logger.error("addMessageToQueue() failed, the message can't be spooled after earlier messages!");
+            return false;
+        }
         var messageData = new MessageData(exchange, routingKey, props, body);
-        if (!messageQueue.offer(messageData)) {
-            logger.error("addMessageToQueue() failed, internal RabbitMQ queue is full!");
+        try {
+            if (getPublisher(orderingKey).offer(messageData, overflowPolicy)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+            var spillSpool = openSpool();
+            if (spillSpool != null && appendToSpool(spillSpool, exchange, routingKey, props, body, orderingKey)) {
+                return true;
+            }
+        }
+        logger.error("addMessageToQueue() failed, internal RabbitMQ queue is full!");
+        return false;
+    }
+
+    /**
+     * Appends a message to the event spool.
+     *
+     * @return true if the message was appended, false if it should be queued in memory instead
+     */
+    private boolean appendToSpool(EventSpool targetSpool, String exchange, String routingKey,
+                                  AMQP.BasicProperties props, byte[] body, String orderingKey) {
+        // Counted before the append so that the spool reader can't uncount the message before it's counted.
+        if (orderingKey != null) {
+            spooledMessages.merge(orderingKey, 1, Integer::sum);
+        }
+        try {
+            if (targetSpool.append(orderingKey, exchange, routingKey, props, body)) {
+                return true;
+            }
+            logger.error("Unable to append message to the event spool since it's full");
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            logger.warn("Unable to append message to the event spool: {}", e.getMessage());
+        }
+        if (orderingKey != null) {
+            unspool(orderingKey);
+        }
+        return false;
+    }
+
+    /**
+     * Records that a message appended to the event spool has been moved to a publisher's queue,
+     * or couldn't be appended after all.
+     *
+     * @param orderingKey the message's ordering key
+     */
+    private void unspool(String orderingKey) {
+        spooledMessages.computeIfPresent(orderingKey, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Returns whether a message with the given ordering key would be discarded if it was added to the queue
+     * right now, because the broker is unreachable, the queue is full, and the overflow policy discards new
+     * messages. While that's the case, callers can skip the work of preparing the message.
+     *
+     * @param orderingKey the message's ordering key, or null if it hasn't got one
+     * @param overflowPolicy the overflow policy that the message would be added with
+     * @return true if the message would be discarded
+     */
+    public boolean isCircuitOpen(String orderingKey, OverflowPolicy overflowPolicy) {
+        if (brokerReachable || !overflowPolicy.discardsNewEvents() || (spoolEvents && spool != null)) {
+            return false;
+        }
+        return getPublisher(orderingKey).messageQueue.remainingCapacity() == 0;
+    }
+
+    /**
+     * Picks the publisher that a message with the given ordering key should be published by.
+     *
+     * @param orderingKey the message's ordering key, or null if it hasn't got one
+     * @return a publisher
+     */
+    private Publisher getPublisher(String orderingKey) {
+        if (publishers.length == 1) {
+            return publishers[0];
+        }
+        var hash = orderingKey != null ? orderingKey.hashCode() : nextPublisher.getAndIncrement();
+        return publishers[Math.floorMod(hash, publishers.length)];
+    }
+
+    /**
+     * Enables or disables the disk-backed event spool. When enabled, messages are appended to
+     * segment files under <code>JENKINS_HOME</code> instead of being queued in memory, and messages
+     * that haven't been confirmed by the broker are replayed after a restart. A spool that contains
+     * messages is opened and drained even if spooling is disabled.
+     *
+     * @param spoolEvents true if messages should be spooled to disk
+     */
+    public synchronized void setSpoolEvents(boolean spoolEvents) {
+        this.spoolEvents = spoolEvents;
+        if (spoolEvents || EventSpool.exists(getSpoolDirectory())) {
+            openSpool();
+        }
+        if (!spoolEvents && spool != null) {
+            // Let the reader find out whether the spool can be closed.
+            spool.wakeUp();
         }
     }
 
     /**
-     * Sends messages from the message queue.
+     * Opens the event spool and starts the thread that reads from it, unless that already has been done.
+     *
+     * @return the spool, or null if it couldn't be opened
      */
-    private void sendMessages() {
-        Channel channel = null;
+    private synchronized EventSpool openSpool() {
+        if (spool != null) {
+            return spool;
+        }
+        var directory = getSpoolDirectory();
+        EventSpool openedSpool;
+        try {
+            openedSpool = EventSpool.open(directory, SPOOL_SEGMENT_SIZE, SPOOL_MAX_SEGMENTS);
+        } catch (IOException e) {
+            logger.error("Unable to open the event spool in {}, events will be queued in memory", directory, e);
+            return null;
+        }
+        spool = openedSpool;
+        var reader = new Thread(() -> readSpool(openedSpool), "Eiffel event spool reader");
+        reader.setDaemon(true);
+        reader.start();
+        return openedSpool;
+    }
 
+    /**
+     * Gets the directory where the event spool is kept.
+     *
+     * @return the spool directory
+     */
+    private static File getSpoolDirectory() {
+        return new File(Jenkins.get().getRootDir(), "eiffel-broadcaster/spool");
+    }
+
+    /**
+     * Moves messages from the event spool to the publishers' queues, blocking while a queue is full
+     * so that only a bounded number of spooled messages are held in memory at any time. Returns
+     * when spooling has been disabled and all messages in the spool have been confirmed. The spool
+     * wakes up the reader when that might have happened (see {@link EventSpool#wakeUp()}).
+     *
+     * @param readSpool the spool to read from
+     */
+    private void readSpool(EventSpool readSpool) {
         while (true) {
             try {
-                if (channel == null || !channel.isOpen()) {
-                    channel = createChannel();
-                    channel.confirmSelect();
-                    addMessageConfirmListener(channel);
+                if (!spoolEvents && readSpool.isDrained() && closeSpool(readSpool)) {
+                    return;
                 }
-                var messageData = (MessageData)messageQueue.poll(SENDMESSAGE_TIMEOUT, TimeUnit.MILLISECONDS);
-                if (messageData != null) {
-                    validateExchange(channel, messageData.getExchange());
-                    getInstance().sendOnChannel(messageData, channel);
+                for (var entry : readSpool.read(PUBLISH_BATCH_SIZE, Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    getPublisher(entry.getOrderingKey()).messageQueue.put(new MessageData(entry));
+                    if (entry.getOrderingKey() != null) {
+                        unspool(entry.getOrderingKey());
+                    }
                 }
             } catch (InterruptedException ie) {
-                logger.info("sendMessages() poll() was interrupted: ", ie);
-            } catch (ChannelCreationException | MessageDeliveryException transientException) {
-                logger.error(transientException.getMessage(), transientException.getCause());
-                try {
-                    Thread.sleep(CONNECTION_WAIT);
-                } catch (InterruptedException ie) {
-                    logger.error("Thread.sleep() was interrupted", ie);
-                }
-            } catch (IOException | IllegalArgumentException ioe) {
-                logger.error("error validating channel: ", ioe);
+                logger.info("readSpool() was interrupted: ", ie);
             }
         }
     }
 
     /**
-     * Validate the exchange.
+     * Closes the spool unless spooling has been enabled again.
+     *
+     * @param drainedSpool the spool to close
+     * @return true if the spool was closed
+     */
+    private synchronized boolean closeSpool(EventSpool drainedSpool) {
+        if (spoolEvents || spool != drainedSpool) {
+            return false;
+        }
+        spool = null;
+        drainedSpool.close();
+        logger.info("The event spool has been drained and closed");
+        return true;
+    }
+
+    /**
+     * Gets the time left until a deadline.
+     *
+     * @param deadline a {@link System#nanoTime()}, or {@link Long#MAX_VALUE} for no deadline
+     * @return the number of nanoseconds until the deadline, or {@link Long#MAX_VALUE} if there's no deadline
+     */
+    private static long remainingNanos(long deadline) {
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Validate the exchange, unless it already has been validated on the channel.
+     * A failed passive declaration closes the channel, so the set of validated exchanges
+     * must be discarded together with the channel. Messages to an exchange that doesn't exist
+     * are dropped by the publisher rather than retried, since a new channel would only fail the
+     * same way and hold up the messages behind them.
      *
      * @param channel a channel that must contain the given exchange
      * @param exchange the exchange to validate
+     * @param validatedExchanges the exchanges that already have been validated on the channel,
+     *                           to which the exchange will be added if the validation succeeds
      *
      * @throws IllegalArgumentException if the exchange is null
-     * @throws IOException if the exchange exists, but is invalid for the channel
+     * @throws ExchangeValidationException if the broker refused the exchange, e.g. because it doesn't exist
+     * @throws IOException if the exchange couldn't be validated for any other reason, e.g. a lost connection
      */
-    private void validateExchange(Channel channel, String exchange) throws IOException, IllegalArgumentException {
+    private void validateExchange(Channel channel, String exchange, Set<String> validatedExchanges)
+            throws IOException, IllegalArgumentException {
         if (exchange == null) {
             throw new IllegalArgumentException("Invalid configuration, exchange must not be null.");
         }
-        channel.exchangeDeclarePassive(exchange);
+        if (validatedExchanges.contains(exchange)) {
+            return;
+        }
+        try {
+            channel.exchangeDeclarePassive(exchange);
+        } catch (IOException e) {
+            var cause = e.getCause();
+            if (cause instanceof ShutdownSignalException && !((ShutdownSignalException) cause).isHardError()
+                    && ((ShutdownSignalException) cause).getReason() instanceof AMQP.Channel.Close) {
+                var close = (AMQP.Channel.Close) ((ShutdownSignalException) cause).getReason();
+                throw new ExchangeValidationException(exchange, close.getReplyCode(), cause);
+            }
+            throw e;
+        }
+        validatedExchanges.add(exchange);
+    }
+
+    /**
+     * Forces all exchanges to be validated again before the next message is published to them.
+     * Should be called when the configured exchange changes.
+     */
+    public void invalidateExchangeCache() {
+        exchangeGeneration.incrementAndGet();
+    }
+
+    /**
+     * Add a listener that reports when the broker closes a channel. Since exchanges are only validated
+     * once per channel, this is where e.g. a publish to an exchange that has been deleted since
+     * the validation is noticed (the broker closes the channel with a 404 NOT_FOUND error).
+     * The publisher is woken up so that it notices the closed channel, and creates a new one
+     * once there are messages to publish.
+     *
+     * @param channel the channel to configure a shutdown listener for
+     * @param inFlight the channel's in-flight semaphore, which is flooded with permits so that
+     *                 a publisher waiting for confirms that never will arrive is released
+     */
+    private void addChannelShutdownListener(Channel channel, Semaphore inFlight, Publisher publisher) {
+        channel.addShutdownListener(cause -> {
+            if (!cause.isHardError() && !cause.isInitiatedByApplication()) {
+                logger.error("MQ channel was closed by the broker: {}", cause.getMessage());
+            }
+            inFlight.release(MAX_IN_FLIGHT);
+            publisher.wakeUp();
+        });
+    }
+
+    /**
+     * Closes a channel, unless it's null or already closed.
+     *
+     * @param channel the channel to close
+     */
+    private static void closeChannel(Channel channel) {
+        if (channel == null || !channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException | TimeoutException | AlreadyClosedException e) {
+            logger.debug("Unable to close channel: ", e);
+        }
     }
 
     /**
@@ -262,10 +1146,10 @@ public final class MQConnection implements ShutdownListener {
      */
     private Channel createChannel() throws ChannelCreationException {
         try {
-            connection = getConnection();
-            if (connection != null) {
+            var conn = getConnection();
+            if (conn != null) {
                 logger.debug("Channel successfully created");
-                return connection.createChannel();
+                return conn.createChannel();
             }
             throw new ChannelCreationException("Cannot create channel, no connection found");
         } catch (IOException | ShutdownSignalException e) {
@@ -274,49 +1158,20 @@ public final class MQConnection implements ShutdownListener {
     }
 
     /**
-     * Add an async listener for ack/nack events and remove accordingly.
-     *
-     * @param channel the channel to configure a confirm listener for
-     */
-    private void addMessageConfirmListener(Channel channel) {
-        ConfirmCallback cleanOutstandingConfirms = (sequenceNumber, multiple) -> {
-            if (multiple) {
-                ConcurrentNavigableMap<Long, MessageData> confirmed = this.outstandingConfirms.headMap(
-                        sequenceNumber, true
-                );
-                confirmed.clear();
-            } else {
-                this.outstandingConfirms.remove(sequenceNumber);
-            }
-        };
-
-        // Signature is addConfirmListener(successCallback, errorCallback)
-        channel.addConfirmListener(cleanOutstandingConfirms, (sequenceNumber, multiple) -> {
-            var message = outstandingConfirms.get(sequenceNumber);
-            messageQueue.offer(message);
-            cleanOutstandingConfirms.handle(sequenceNumber, multiple);
-        });
-    }
-
-    /**
-     * Start or restart the message queue thread as necessary. Requires that
+     * Start or restart the message queue threads as necessary. Requires that
      * the MQConnection has been initialized with the needed configuration.
      *
-     * @return true if the message queue thread was started, otherwise false
+     * @return true if any message queue thread was started, otherwise false
      */
-    private synchronized boolean startMessageQueueThread() {
-        if (!initialized || (messageQueueThread != null && messageQueueThread.isAlive())) {
+    private boolean startMessageQueueThread() {
+        if (!initialized) {
             return false;
         }
-        messageQueueThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                sendMessages();
-            }
-        });
-        messageQueueThread.start();
-        logger.info("messageQueueThread recreated since it was null or not alive.");
-        return true;
+        var started = false;
+        for (var publisher : publishers) {
+            started |= publisher.start();
+        }
+        return started;
     }
 
     /**
@@ -353,11 +1208,11 @@ public final class MQConnection implements ShutdownListener {
     }
 
     /**
-     * Gets the connection.
+     * Gets the connection, which is shared by all publisher channels.
      *
      * @return the connection.
      */
-    public Connection getConnection() {
+    public synchronized Connection getConnection() {
         if (connection == null) {
             try {
                 connection = getConnectionFactory().newConnection();
@@ -380,40 +1235,54 @@ public final class MQConnection implements ShutdownListener {
      * @param vh the virtual host
      */
     public void initialize(String name, Secret password, String uri, String vh) {
+        // Publishers that are running have channels on a connection made with the old settings.
+        stop();
         userName = name;
         userPassword = password;
         serverUri = uri;
         virtualHost = vh;
-        connection = null;
         initialized = true;
         startMessageQueueThread();
     }
 
     /**
-     * Sends a message.
-     * Keeps trying to get a connection indefinitely.
-     *
-     * @param messageData an object containing message data
-     * @param channel a channel to publish the message on
+     * Stops the message queue threads and closes the connection. Messages that haven't been
+     * published yet stay in the queues until the threads are started again, which happens
+     * when the next message is added or when {@link #initialize} is called.
      */
-    private void sendOnChannel(MessageData messageData, Channel channel) throws MessageDeliveryException {
+    public void stop() {
+        for (var publisher : publishers) {
+            publisher.stop();
+        }
+        closeConnection();
+    }
+
+    /** Closes the connection, if there is one. */
+    private synchronized void closeConnection() {
         try {
-            outstandingConfirms.put(channel.getNextPublishSeqNo(), messageData);
-            channel.basicPublish(
-                    messageData.getExchange(),
-                    messageData.getRoutingKey(),
-                    messageData.getProps(),
-                    messageData.getBody()
-            );
-        } catch (IOException e) {
-            messageQueue.offer(messageData);
-            throw new MessageDeliveryException("Cannot publish message", e);
-        } catch (AlreadyClosedException e) {
-            messageQueue.offer(messageData);
-            throw new MessageDeliveryException("Connection is already closed", e);
+            if (connection != null && connection.isOpen()) {
+                connection.close();
+            }
+        } catch (IOException | AlreadyClosedException e) {
+            logger.warn("Unable to close the MQ connection: ", e);
+        } finally {
+            connection = null;
         }
     }
 
+    /**
+     * Stops the message queue threads when Jenkins shuts down, so that the connection
+     * to the broker is closed cleanly. Messages added after this, e.g. by builds that are
+     * still being aborted, don't start the threads again until {@link #initialize} is called.
+     */
+    @Terminator(requires = ActivityEventExecutor.EVENTS_SUBMITTED)
+    public static void shutdown() {
+        var instance = getInstance();
+        instance.initialized = false;
+        instance.stop();
+    }
+
+
     @Override
     public void shutdownCompleted(ShutdownSignalException cause) {
         if (cause.isHardError()) {
@@ -0,0 +1,308 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue for handing off messages from many producer threads to
+ * a single consumer thread, based on Dmitry Vyukov's bounded queue. The slots are allocated
+ * up front, and each slot has a sequence number that tells whether it's free to write or
+ * ready to read for a given lap around the ring, so producers only contend on a single
+ * compare-and-set of the tail position and never on a lock.
+ *
+ * <p>The blocking operations {@link #take()} and {@link #poll(long, TimeUnit)} may only be called
+ * by the consumer thread, which parks while the queue is empty and is unparked by the next producer,
+ * or by {@link #wakeUp()} if something other than a new element requires the consumer's attention.
+ * The non-blocking {@link #poll()} is safe to call from any thread, which lets a producer evict the
+ * oldest element from a full queue. Producers waiting for room in a full queue park for increasingly
+ * long periods since the consumer doesn't keep track of them; the queue is only expected to fill up
+ * when the broker can't keep up.</p>
+ *
+ * @param <E> the type of the elements
+ */
+final class MpscRingBuffer<E> {
+    private static final long MAX_PRODUCER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int capacity;
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private volatile Thread waitingConsumer;
+    private volatile boolean wakeUpRequested;
+
+    /**
+     * Constructor.
+     *
+     * @param requestedCapacity the minimum number of elements that the queue can hold, which is
+     *                          rounded up to the nearest power of two (and at least two)
+     */
+    MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1 || requestedCapacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + requestedCapacity);
+        }
+        capacity = Math.max(2, Integer.highestOneBit(requestedCapacity - 1) << 1);
+        mask = capacity - 1;
+        elements = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (var i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element to the queue unless it's full.
+     *
+     * @param element the element to add
+     * @return true if the element was added, false if the queue is full
+     */
+    boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        var position = tail.get();
+        while (true) {
+            var index = (int) position & mask;
+            var difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    // The volatile write publishes the element to the consumer.
+                    sequences.set(index, position + 1);
+                    var consumer = waitingConsumer;
+                    if (consumer != null) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds the element from the previous lap.
+                return false;
+            } else {
+                // Another producer claimed the slot first.
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Adds an element to the queue, waiting for room if it's full.
+     *
+     * @param element the element to add
+     * @param timeout how long to wait for room
+     * @param unit the unit of the timeout
+     * @return true if the element was added, false if the timeout expired
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+        var deadline = System.nanoTime() + unit.toNanos(timeout);
+        var parkNanos = 1000L;
+        while (!offer(element)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            var remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, parkNanos));
+            parkNanos = Math.min(parkNanos * 2, MAX_PRODUCER_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Adds an element to the queue, waiting for as long as it takes for room if it's full.
+     *
+     * @param element the element to add
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    void put(E element) throws InterruptedException {
+        offer(element, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Removes the oldest element from the queue.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        var position = head.get();
+        while (true) {
+            var index = (int) position & mask;
+            var difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    var element = (E) elements[index];
+                    elements[index] = null;
+                    // Hands the slot over to the producers of the next lap.
+                    sequences.set(index, position + capacity);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                // The slot hasn't been written yet.
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Makes the consumer return from {@link #poll(long, TimeUnit)} without an element, or the next call
+     * return without waiting if the consumer isn't waiting right now. Unlike adding a sentinel element,
+     * this works even when the queue is full.
+     */
+    void wakeUp() {
+        wakeUpRequested = true;
+        var consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Removes the oldest element from the queue, waiting for one to arrive if the queue is empty.
+     * May only be called by the consumer thread.
+     *
+     * @param timeout how long to wait for an element
+     * @param unit the unit of the timeout
+     * @return the element, or null if the timeout expired or the consumer was woken up by {@link #wakeUp()}
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        var element = poll();
+        if (element != null) {
+            return element;
+        }
+        var deadline = System.nanoTime() + unit.toNanos(timeout);
+        var current = Thread.currentThread();
+        try {
+            while (true) {
+                waitingConsumer = current;
+                // Checked again after the consumer has been registered, since
+                // a producer that added an element before that won't unpark it.
+                element = poll();
+                if (element != null) {
+                    return element;
+                }
+                if (wakeUpRequested) {
+                    wakeUpRequested = false;
+                    return null;
+                }
+                var remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Removes the oldest element from the queue, waiting for as long as it takes for one to arrive
+     * if the queue is empty. May only be called by the consumer thread.
+     *
+     * @return the element
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    E take() throws InterruptedException {
+        while (true) {
+            // Null means that the consumer was woken up without an element.
+            var element = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            if (element != null) {
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Moves elements from the queue to a collection, without waiting.
+     *
+     * @param collection the collection to add the elements to
+     * @param maxElements the maximum number of elements to move
+     * @return the number of elements moved
+     */
+    int drainTo(Collection<? super E> collection, int maxElements) {
+        var drained = 0;
+        while (drained < maxElements) {
+            var element = poll();
+            if (element == null) {
+                break;
+            }
+            collection.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Gets the number of elements in the queue. Since producers and consumers may be active at
+     * the same time this is only an estimate.
+     *
+     * @return the number of elements
+     */
+    int size() {
+        while (true) {
+            var currentHead = head.get();
+            var currentTail = tail.get();
+            if (head.get() == currentHead) {
+                return (int) Math.max(0, Math.min(capacity, currentTail - currentHead));
+            }
+        }
+    }
+
+    /**
+     * Gets the number of elements that can be added to the queue before it's full.
+     *
+     * @return the remaining capacity
+     */
+    int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Gets the maximum number of elements that the queue can hold.
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return capacity;
+    }
+}
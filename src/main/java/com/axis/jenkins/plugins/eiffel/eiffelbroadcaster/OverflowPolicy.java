@@ -0,0 +1,66 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+/**
+ * Describes what should happen to an outbound event when the internal queue
+ * that holds events waiting to be published is full.
+ */
+public enum OverflowPolicy {
+    /** Drop the new event */
+    DROP_NEWEST("Drop the new event"),
+
+    /** Drop the oldest queued event to make room for the new one */
+    DROP_OLDEST("Drop the oldest queued event to make room for the new one"),
+
+    /** Wait for room in the queue, but only when the event is sent from a pipeline step */
+    BLOCK("Wait for room in the queue when sending from a pipeline step, otherwise drop the new event"),
+
+    /** Reject the new event, which fails the pipeline step that sent it */
+    REJECT("Reject the new event, failing the pipeline step that sent it"),
+
+    /** Spill the new event to the event spool on disk */
+    SPILL_TO_DISK("Spill the new event to the event spool on disk");
+
+    private final String description;
+
+    OverflowPolicy(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns whether a new event is certain to be thrown away if the queue is full, which means
+     * that there's no point in preparing (signing, validating, and serializing) the event.
+     *
+     * @return true if the policy discards new events when the queue is full
+     */
+    public boolean discardsNewEvents() {
+        return this == DROP_NEWEST || this == REJECT;
+    }
+}
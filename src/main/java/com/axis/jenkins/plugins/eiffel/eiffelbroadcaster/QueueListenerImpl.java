@@ -31,6 +31,7 @@ import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEventFacto
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.EventSigner;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.SystemEventSigner;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.BuildableItem;
 import hudson.model.Cause;
@@ -40,7 +41,11 @@ import hudson.model.queue.QueueListener;
 import hudson.triggers.SCMTrigger;
 import hudson.triggers.TimerTrigger;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
+import jenkins.util.SystemProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,10 +58,39 @@ import org.slf4j.LoggerFactory;
 public class QueueListenerImpl extends QueueListener {
     private static final Logger logger = LoggerFactory.getLogger(QueueListenerImpl.class);
 
+    /**
+     * Listener calls that hold the Queue lock for longer than this (in milliseconds)
+     * are logged as warnings. Zero or less disables the warnings.
+     */
+    private static final long LOCK_HOLD_WARNING_THRESHOLD = SystemProperties.getLong(
+            QueueListenerImpl.class.getName() + ".lockHoldWarningMillis", 100L);
+
+    private static final LockHoldStatistics lockHoldStatistics = new LockHoldStatistics();
+
     private final EventSigner signer = new SystemEventSigner();
 
+    /** Returns statistics on how long the listener has held the Queue lock. */
+    @NonNull
+    static LockHoldStatistics getLockHoldStatistics() {
+        return lockHoldStatistics;
+    }
+
     @Override
     public void onEnterWaiting(Queue.WaitingItem wi) {
+        var startTime = System.nanoTime();
+        try {
+            emitActivityTriggered(wi);
+        } finally {
+            recordLockHoldTime("onEnterWaiting", wi, startTime);
+        }
+    }
+
+    /**
+     * Builds the ActT for a new queue item and attaches it to the item, and leaves the signing,
+     * validation and publishing of the event to {@link ActivityEventExecutor}. The event
+     * has to be complete before the item is released since the build copies its actions.
+     */
+    private void emitActivityTriggered(Queue.WaitingItem wi) {
         var taskName = Util.getFullName(wi.task);
 
         // Filter out queue items we're not interested in, e.g. pipeline steps (modeled as
@@ -129,12 +163,16 @@ public class QueueListenerImpl extends QueueListener {
             // If there's a problem serializing the event it'll get logged when we try
             // to publish the event. No need to log the same error message twice.
         }
-        Util.publishEvent(event, signer);
+        ActivityEventExecutor.getInstance().submit(event, signer);
     }
 
     @Override
     public void onLeft(Queue.LeftItem li) {
-        if (li.isCancelled()) {
+        if (!li.isCancelled()) {
+            return;
+        }
+        var startTime = System.nanoTime();
+        try {
             var targetEvent = EiffelJobTable.getInstance().getAndClearEventTrigger(li.getId());
             if (targetEvent == null) {
                 logger.debug("A cancelled queue item could not be mapped to an emitted ActT event: {}", li);
@@ -142,7 +180,57 @@ public class QueueListenerImpl extends QueueListener {
             }
             var event = EiffelEventFactory.getInstance().create(EiffelActivityCanceledEvent.class);
             event.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.ACTIVITY_EXECUTION, targetEvent));
-            Util.publishEvent(event, signer);
+            ActivityEventExecutor.getInstance().submit(event, signer);
+        } finally {
+            recordLockHoldTime("onLeft", li, startTime);
+        }
+    }
+
+    private static void recordLockHoldTime(String callback, Queue.Item item, long startTime) {
+        var elapsed = System.nanoTime() - startTime;
+        lockHoldStatistics.record(elapsed);
+        var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        if (LOCK_HOLD_WARNING_THRESHOLD > 0 && elapsedMillis >= LOCK_HOLD_WARNING_THRESHOLD) {
+            logger.warn("{} held the Queue lock for {} ms for {}", callback, elapsedMillis, item);
+        } else {
+            logger.debug("{} held the Queue lock for {} us for {}", callback,
+                    TimeUnit.NANOSECONDS.toMicros(elapsed), item);
+        }
+    }
+
+    /** Keeps track of how long the listener has held the Queue lock. */
+    static final class LockHoldStatistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        /** Returns the number of listener calls that have been recorded. */
+        long getCount() {
+            return count.sum();
+        }
+
+        /** Returns the total time (in nanoseconds) that the recorded calls held the lock. */
+        long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /** Returns the longest time (in nanoseconds) that a recorded call held the lock. */
+        long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            var n = getCount();
+            return String.format("count=%d, mean=%d us, max=%d us", n,
+                    n > 0 ? TimeUnit.NANOSECONDS.toMicros(getTotalNanos() / n) : 0L,
+                    TimeUnit.NANOSECONDS.toMicros(getMaxNanos()));
         }
     }
 
@@ -197,7 +285,7 @@ public class QueueListenerImpl extends QueueListener {
             if (upstreamAction != null) {
                 try {
                     event.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE,
-                            upstreamAction.getTriggerEvent().getMeta().getId()));
+                            upstreamAction.getTriggerEventId()));
                     trigger.setType(EiffelActivityTriggeredEvent.Data.Trigger.Type.EIFFEL_EVENT);
                 } catch (JsonProcessingException e) {
                     logger.warn("JSON payload stored in {} in {} couldn't be deserialized ({}): {}",
@@ -68,6 +68,15 @@ public class RunListenerImpl extends RunListener<Run> {
     @Override
     public void onStarted(Run r, TaskListener listener) {
         var targetEvent = EiffelJobTable.getInstance().getAndClearEventTrigger(r.getQueueId());
+        var activityAction = r.getAction(EiffelActivityAction.class);
+        if (targetEvent == null && activityAction != null) {
+            // The entry may have expired or been evicted, but the Run has a copy of the queue item's ActT.
+            try {
+                targetEvent = activityAction.getTriggerEventId();
+            } catch (JsonProcessingException e) {
+                logger.warn("Unable to read the ActT of {}: {}", r, e.toString());
+            }
+        }
         if (targetEvent == null) {
             logger.warn("The newly started {} could not be mapped to an emitted ActT event", r);
             return;
@@ -86,12 +95,21 @@ public class RunListenerImpl extends RunListener<Run> {
         }
 
         try {
-            r.getAction(EiffelActivityAction.class).setStartedEvent(event);
+            activityAction.setStartedEvent(event);
         } catch (JsonProcessingException e) {
             // If there's a problem serializing the event it'll get logged when we try
             // to publish the event. No need to log the same error message twice.
         }
-        Util.publishEvent(event, signer);
+        ActivityEventExecutor.getInstance().publish(event, signer, r);
+        // The ActT was sent before the build had a number, so it's indexed once the ActS has been.
+        var index = EventIndex.getInstance();
+        if (index != null && index.get(event.getMeta().getId()) != null) {
+            try {
+                index.add(activityAction.getSharedTriggerEvent(), r);
+            } catch (JsonProcessingException e) {
+                logger.warn("Unable to add the ActT of {} to the event index: {}", r, e.toString());
+            }
+        }
     }
 
     @Override
@@ -113,7 +131,7 @@ public class RunListenerImpl extends RunListener<Run> {
             event = EiffelEventFactory.getInstance().create(EiffelActivityFinishedEvent.class);
             event.getData().setOutcome(new EiffelActivityFinishedEvent.Data.Outcome(conclusion));
             event.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.ACTIVITY_EXECUTION,
-                    activityAction.getTriggerEvent().getMeta().getId()));
+                    activityAction.getTriggerEventId()));
         } catch (JsonProcessingException e) {
             logger.warn("JSON deserialization of ActT event for {} unexpectedly failed, " +
                             "skipping sending of ActF event: {}",
@@ -133,6 +151,6 @@ public class RunListenerImpl extends RunListener<Run> {
             // If there's a problem serializing the event it'll get logged when we try
             // to publish the event. No need to log the same error message twice.
         }
-        Util.publishEvent(event, signer);
+        ActivityEventExecutor.getInstance().publish(event, signer, r);
     }
 }
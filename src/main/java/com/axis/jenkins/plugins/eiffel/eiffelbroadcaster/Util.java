@@ -26,6 +26,7 @@ package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityFinishedEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventCodec;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventValidationFailedException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.SchemaUnavailableException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.UnsupportedAlgorithmException;
@@ -34,7 +35,6 @@ import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.InvalidCertific
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.JsonCanonicalizationException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rabbitmq.client.AMQP;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -55,6 +55,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 import jenkins.model.Jenkins;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -124,12 +125,17 @@ public final class Util {
     }
 
     /**
-     * Publishes an {@link EiffelEvent} and raises an exception if an error occurs.
+     * Publishes an {@link EiffelEvent} and raises an exception if an error occurs. If the queue of outbound
+     * events is full, the configured {@link OverflowPolicy} decides what happens, and the calling thread
+     * may be blocked while waiting for room in the queue.
      *
      * @param event the Eiffel event to publish
      * @param signer the {@link EventSigner} that should be called to get the event signed
      *               (if signing has been enabled), or <code>null</code> if signing should be disabled
-     * @return the published event or null if event publishing is disabled
+     * @return the published event or null if event publishing is disabled or the event was dropped
+     *         without being prepared since the broker is unreachable and the queue is full
+     * @throws EventQueueFullException if the queue of outbound events is full and the overflow policy
+     *         says that the event should be rejected, or the wait for room in the queue timed out
      * @throws EventValidationFailedException if the validation of the event against the JSON schema fails
      * @throws InvalidCertificateConfigurationException if the keystore in the certificate credential was entirely
      *         empty or its first item didn't contain a certificate with a private key
@@ -146,35 +152,173 @@ public final class Util {
     @CheckForNull
     public static JsonNode mustPublishEvent(@NonNull final EiffelEvent event,
                                             @CheckForNull final EventSigner signer)
-            throws EventValidationFailedException, InvalidCertificateConfigurationException, InvalidKeyException,
-            JsonCanonicalizationException, JsonProcessingException, KeyStoreException, NoSuchAlgorithmException,
-            SchemaUnavailableException, SignatureException, UnsupportedAlgorithmException, UnrecoverableKeyException {
+            throws EventQueueFullException, EventValidationFailedException, InvalidCertificateConfigurationException,
+            InvalidKeyException, JsonCanonicalizationException, JsonProcessingException, KeyStoreException,
+            NoSuchAlgorithmException, SchemaUnavailableException, SignatureException, UnsupportedAlgorithmException,
+            UnrecoverableKeyException {
+        return mustPublishEvent(event, signer, null);
+    }
+
+    /**
+     * Publishes an {@link EiffelEvent} sent by a build like {@link #mustPublishEvent(EiffelEvent, EventSigner)},
+     * and records the event in the {@link EventIndex} once it has been queued.
+     *
+     * @param event the Eiffel event to publish
+     * @param signer the {@link EventSigner} that should be called to get the event signed
+     *               (if signing has been enabled), or <code>null</code> if signing should be disabled
+     * @param run the build that sends the event, or null if it isn't sent by a build
+     * @return the published event or null if event publishing is disabled or the event was dropped
+     *         without being prepared since the broker is unreachable and the queue is full
+     * @see #mustPublishEvent(EiffelEvent, EventSigner)
+     */
+    @CheckForNull
+    public static JsonNode mustPublishEvent(@NonNull final EiffelEvent event,
+                                            @CheckForNull final EventSigner signer,
+                                            @CheckForNull final Run<?, ?> run)
+            throws EventQueueFullException, EventValidationFailedException, InvalidCertificateConfigurationException,
+            InvalidKeyException, JsonCanonicalizationException, JsonProcessingException, KeyStoreException,
+            NoSuchAlgorithmException, SchemaUnavailableException, SignatureException, UnsupportedAlgorithmException,
+            UnrecoverableKeyException {
+        var body = mustPublishEvent(event, signer, true, run);
+        return body != null ? EventCodec.readTree(body) : null;
+    }
+
+    /**
+     * Publishes an {@link EiffelEvent} and raises an exception if an error occurs.
+     *
+     * @param event the Eiffel event to publish
+     * @param signer the {@link EventSigner} that should be called to get the event signed
+     *               (if signing has been enabled), or <code>null</code> if signing should be disabled
+     * @param fromPipelineStep whether the event is sent from a pipeline step, which means that its contents
+     *                         are under user control and that the calling thread may be blocked while waiting
+     *                         for room in the queue, if the overflow policy says so
+     * @param run the build that sends the event, which the event is recorded under in the
+     *            {@link EventIndex} once it has been queued, or null if it isn't sent by a build
+     * @return the published bytes or null if event publishing is disabled or the event was dropped
+     *         without being prepared
+     */
+    @CheckForNull
+    private static byte[] mustPublishEvent(@NonNull final EiffelEvent event,
+                                           @CheckForNull final EventSigner signer,
+                                           final boolean fromPipelineStep,
+                                           @CheckForNull final Run<?, ?> run)
+            throws EventQueueFullException, EventValidationFailedException, InvalidCertificateConfigurationException,
+            InvalidKeyException, JsonCanonicalizationException, JsonProcessingException, KeyStoreException,
+            NoSuchAlgorithmException, SchemaUnavailableException, SignatureException, UnsupportedAlgorithmException,
+            UnrecoverableKeyException {
         var config = EiffelBroadcasterConfig.getInstance();
         if (config == null || !config.getEnableBroadcaster()) {
             return null;
         }
 
+        var overflowPolicy = getOverflowPolicy(config, fromPipelineStep);
+        var connection = MQConnection.getInstance();
+        var orderingKey = getOrderingKey(event);
+        // Don't waste any time signing, validating and serializing an event that will be thrown away.
+        if (connection.isCircuitOpen(orderingKey, overflowPolicy)) {
+            if (overflowPolicy == OverflowPolicy.REJECT) {
+                throw new EventQueueFullException(String.format(
+                        "The broker is unreachable and the event queue is full, rejecting %s with id %s",
+                        event.getMeta().getType(), event.getMeta().getId()));
+            }
+            logger.error("The broker is unreachable and the event queue is full, dropping {} with id {}",
+                    event.getMeta().getType(), event.getMeta().getId());
+            return null;
+        }
+
         if (signer != null) {
             signer.sign(event);
         }
 
-        var mapper = new ObjectMapper();
-        var eventJson = mapper.valueToTree(event);
+        // Serialize the event once and publish exactly the bytes that were validated (and signed,
+        // since signing leaves the event's canonical form behind). A tree is only parsed from them
+        // if the validator needs one, and for callers of the public methods that return one.
+        var body = event.signedJSON();
+        if (body == null) {
+            body = EventCodec.writeValueAsBytes(event);
+        }
         var props = new AMQP.BasicProperties.Builder()
                 .appId(config.getAppId())
+                // Lets consumers detect the duplicates that may follow a broker or network failure.
+                .messageId(event.getMeta().getId().toString())
                 .deliveryMode(config.getPersistentDelivery() ? PERSISTENT_DELIVERY : NON_PERSISTENT_DELIVERY)
                 .contentType("application/json")
                 .timestamp(Calendar.getInstance().getTime())
                 .build();
-        config.getEventValidator().validate(event.getMeta().getType(), event.getMeta().getVersion(), eventJson);
-        MQConnection.getInstance().addMessageToQueue(config.getExchangeName(),
+        config.getEventValidator().validate(event, body, config.getValidationPolicy(),
+                config.getValidationSampleInterval(), fromPipelineStep);
+        var queued = connection.addMessageToQueue(config.getExchangeName(),
                 config.getRoutingKeyProvider().getRoutingKey(event),
-                props, mapper.writeValueAsBytes(eventJson));
-        return eventJson;
+                props, body, orderingKey, overflowPolicy);
+        if (!queued && (overflowPolicy == OverflowPolicy.REJECT || overflowPolicy == OverflowPolicy.BLOCK)) {
+            throw new EventQueueFullException(String.format("The event queue is full, rejecting %s with id %s",
+                    event.getMeta().getType(), event.getMeta().getId()));
+        }
+        if (queued && run != null) {
+            EventIndex.record(event, run);
+        }
+        return body;
+    }
+
+    /**
+     * Gets the overflow policy that applies to an event. Only pipeline steps may wait for room in the queue.
+     *
+     * @param config the plugin configuration
+     * @param fromPipelineStep whether the event is sent from a pipeline step
+     * @return the overflow policy
+     */
+    @NonNull
+    private static OverflowPolicy getOverflowPolicy(@NonNull final EiffelBroadcasterConfig config,
+                                                    final boolean fromPipelineStep) {
+        var overflowPolicy = config.getOverflowPolicy();
+        if (overflowPolicy == OverflowPolicy.BLOCK && !fromPipelineStep) {
+            return OverflowPolicy.DROP_NEWEST;
+        }
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns whether an event sent by the plugin itself would be thrown away without being signed
+     * or serialized if it was published right now, because event publishing is disabled or because
+     * the broker is unreachable and the queue is full (see {@link MQConnection#isCircuitOpen}).
+     *
+     * @param event the event
+     * @return true if the event wouldn't be prepared for publishing
+     */
+    static boolean isDiscardedUnprepared(@NonNull final EiffelEvent event) {
+        var config = EiffelBroadcasterConfig.getInstance();
+        if (config == null || !config.getEnableBroadcaster()) {
+            return true;
+        }
+        return MQConnection.getInstance().isCircuitOpen(getOrderingKey(event), getOverflowPolicy(config, false));
     }
 
     /**
-     * Publishes an {@link EiffelEvent} and logs a message if there's an error.
+     * Returns the key that decides which publisher channel an event is published on. The events
+     * that belong to an activity are keyed on the id of the activity's
+     * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent}
+     * so that the activity's lifecycle events are published in order.
+     *
+     * @param event the event to return the ordering key for
+     * @return the target of the event's ACTIVITY_EXECUTION or CONTEXT link if it has one,
+     *         otherwise the event's own id
+     */
+    static String getOrderingKey(@NonNull final EiffelEvent event) {
+        UUID contextTarget = null;
+        for (var link : event.getLinks()) {
+            if (link.getType() == EiffelEvent.Link.Type.ACTIVITY_EXECUTION) {
+                return link.getTarget().toString();
+            }
+            if (link.getType() == EiffelEvent.Link.Type.CONTEXT && contextTarget == null) {
+                contextTarget = link.getTarget();
+            }
+        }
+        return contextTarget != null ? contextTarget.toString() : event.getMeta().getId().toString();
+    }
+
+    /**
+     * Publishes an {@link EiffelEvent} and logs a message if there's an error. The calling thread
+     * is never blocked waiting for room in the queue of outbound events.
      *
      * @param event the Eiffel event to publish
      * @param signer the {@link EventSigner} that should be called to get the event signed
@@ -183,8 +327,33 @@ public final class Util {
      */
     @CheckForNull
     public static JsonNode publishEvent(@NonNull final EiffelEvent event, @CheckForNull final EventSigner signer) {
+        var body = tryPublishEvent(event, signer, null);
         try {
-            return mustPublishEvent(event, signer);
+            return body != null ? EventCodec.readTree(body) : null;
+        } catch (JsonProcessingException e) {
+            logger.error("Unable to parse the published event: {}: {}", e.getMessage(), event);
+            return null;
+        }
+    }
+
+    /**
+     * Publishes an {@link EiffelEvent} like {@link #publishEvent(EiffelEvent, EventSigner)}, but without
+     * parsing the published event into a tree for the caller.
+     *
+     * @param event the Eiffel event to publish
+     * @param signer the {@link EventSigner} that should be called to get the event signed
+     *               (if signing has been enabled), or <code>null</code> if signing should be disabled
+     * @param run the build that sends the event, which the event is recorded under in the
+     *            {@link EventIndex} once it has been queued, or null if it isn't sent by a build
+     * @return the published bytes or null if there was an error or event publishing is disabled
+     */
+    @CheckForNull
+    static byte[] tryPublishEvent(@NonNull final EiffelEvent event, @CheckForNull final EventSigner signer,
+                                  @CheckForNull final Run<?, ?> run) {
+        try {
+            return mustPublishEvent(event, signer, false, run);
+        } catch (EventQueueFullException e) {
+            logger.error("Unable to publish event: {}", e.getMessage());
         } catch (JsonCanonicalizationException | JsonProcessingException e) {
             logger.error("Unable to serialize object to JSON: {}: {}", e.getMessage(), event);
         } catch (SchemaUnavailableException | EventValidationFailedException e) {
@@ -195,6 +364,26 @@ public final class Util {
         return null;
     }
 
+    /**
+     * Signs an {@link EiffelEvent} ahead of publishing it and logs a message if there's an error,
+     * in the same way as {@link #publishEvent(EiffelEvent, EventSigner)}.
+     *
+     * @param event the Eiffel event to sign
+     * @param signer the {@link EventSigner} that should be called to get the event signed
+     * @return true if the event should be published, i.e. unless signing failed
+     */
+    static boolean signEvent(@NonNull final EiffelEvent event, @NonNull final EventSigner signer) {
+        try {
+            signer.sign(event);
+            return true;
+        } catch (JsonCanonicalizationException e) {
+            logger.error("Unable to serialize object to JSON: {}: {}", e.getMessage(), event);
+        } catch (GeneralSecurityException | InvalidCertificateConfigurationException | UnsupportedAlgorithmException e) {
+            logger.error("Error signing event: {}", e.getMessage());
+        }
+        return false;
+    }
+
     /**
      * Splits the input string into lines, removes leading and trailing whitespace, and returns non-empty
      * lines in a list.
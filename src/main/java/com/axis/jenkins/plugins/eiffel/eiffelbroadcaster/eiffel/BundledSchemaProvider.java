@@ -25,17 +25,83 @@
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * Locates the JSON schema for an Eiffel event from the set of schemas bundled with the plugin. Those schemas
  * currently include all schema versions defined up to and including the Paris edition of the protocol.
  */
 public class BundledSchemaProvider implements SchemaProvider {
+    private static final String SCHEMA_SUFFIX = ".json";
+
     @CheckForNull
     @Override
     public InputStream getSchema(String eventName, String eventVersion) {
         return getClass().getResourceAsStream(
-                String.format("%s/%s/%s.json", getClass().getSimpleName(), eventName, eventVersion));
+                String.format("%s/%s/%s%s", getClass().getSimpleName(), eventName, eventVersion, SCHEMA_SUFFIX));
+    }
+
+    /**
+     * Lists the event types and versions that there are bundled schemas for. The schemas are
+     * either found in a directory (when running from an exploded class directory, e.g. in tests)
+     * or in the plugin's jar file.
+     *
+     * @return the bundled schemas
+     * @throws IOException if the schemas couldn't be listed
+     */
+    @NonNull
+    List<EventVersionKey> listSchemas() throws IOException {
+        var root = getClass().getResource(getClass().getSimpleName());
+        if (root == null) {
+            return List.of();
+        }
+        var result = new ArrayList<EventVersionKey>();
+        if ("jar".equals(root.getProtocol())) {
+            var connection = (JarURLConnection) root.openConnection();
+            connection.setUseCaches(false);
+            var prefix = StringUtils.appendIfMissing(connection.getEntryName(), "/");
+            try (var jar = connection.getJarFile()) {
+                jar.stream()
+                        .map(entry -> entry.getName())
+                        .filter(name -> name.startsWith(prefix) && name.endsWith(SCHEMA_SUFFIX))
+                        .map(name -> name.substring(prefix.length()).split("/"))
+                        .filter(parts -> parts.length == 2)
+                        .forEach(parts -> result.add(toKey(parts[0], parts[1])));
+            }
+        } else if ("file".equals(root.getProtocol())) {
+            Path dir;
+            try {
+                dir = Path.of(root.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+            try (Stream<Path> files = Files.walk(dir, 2)) {
+                for (var file : files.collect(Collectors.toList())) {
+                    var relative = dir.relativize(file);
+                    if (relative.getNameCount() == 2 && relative.toString().endsWith(SCHEMA_SUFFIX)) {
+                        result.add(toKey(relative.getName(0).toString(), relative.getName(1).toString()));
+                    }
+                }
+            }
+        } else {
+            throw new IOException(String.format("Don't know how to list the schemas in %s", root));
+        }
+        return result;
+    }
+
+    @NonNull
+    private static EventVersionKey toKey(@NonNull String eventName, @NonNull String fileName) {
+        return new EventVersionKey(eventName, fileName.substring(0, fileName.length() - SCHEMA_SUFFIX.length()));
     }
 }
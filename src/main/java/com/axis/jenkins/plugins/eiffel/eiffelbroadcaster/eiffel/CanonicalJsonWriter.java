@@ -0,0 +1,198 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import org.erdtman.jcs.NumberToJSON;
+
+/**
+ * Writes the canonical form of an object as defined by RFC 8785, the JSON Canonicalization Scheme, straight
+ * from its JSON tree into UTF-8 bytes. The output is identical to what {@link org.erdtman.jcs.JsonCanonicalizer}
+ * produces from the serialized object, but the object isn't serialized to a string that then has to be parsed
+ * and canonicalized. Like the canonicalizer, all numbers are formatted as IEEE 754 doubles.
+ */
+final class CanonicalJsonWriter {
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+    private CanonicalJsonWriter() { }
+
+    /**
+     * Returns the canonical form of an object.
+     *
+     * @param value the object, which is converted to a JSON tree with {@link EventCodec}
+     * @return the UTF-8 encoded canonical JSON
+     * @throws IOException if the object contains a number that can't be represented in JSON,
+     *         i.e. NaN or an infinity
+     */
+    @NonNull
+    static byte[] writeValueAsBytes(@NonNull final Object value) throws IOException {
+        return writeTreeAsBytes(EventCodec.valueToTree(value));
+    }
+
+    /**
+     * Returns the canonical form of a JSON tree.
+     *
+     * @param tree the JSON tree
+     * @return the UTF-8 encoded canonical JSON
+     * @throws IOException if the tree contains a number that can't be represented in JSON,
+     *         i.e. NaN or an infinity
+     */
+    @NonNull
+    static byte[] writeTreeAsBytes(@NonNull final JsonNode tree) throws IOException {
+        var writer = new CanonicalJsonWriter();
+        writer.write(tree);
+        return writer.out.toByteArray();
+    }
+
+    private void write(@NonNull final JsonNode node) throws IOException {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                // Members are sorted by their names' UTF-16 code units, which is how String.compareTo() orders them.
+                var names = new ArrayList<String>(node.size());
+                node.fieldNames().forEachRemaining(names::add);
+                Collections.sort(names);
+                out.write('{');
+                for (int i = 0; i < names.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    writeString(names.get(i));
+                    out.write(':');
+                    write(node.get(names.get(i)));
+                }
+                out.write('}');
+                break;
+            case ARRAY:
+                out.write('[');
+                for (int i = 0; i < node.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    write(node.get(i));
+                }
+                out.write(']');
+                break;
+            case STRING:
+                writeString(node.textValue());
+                break;
+            case NUMBER:
+                writeNumber(node);
+                break;
+            case BOOLEAN:
+                writeAscii(node.booleanValue() ? "true" : "false");
+                break;
+            case NULL:
+            case MISSING:
+                writeAscii("null");
+                break;
+            default:
+                // Binary and POJO nodes are serialized as strings and whatever the POJO serializes to,
+                // which doesn't happen for events, so take the long way around for those.
+                write(EventCodec.readTree(EventCodec.writeValueAsBytes(node)));
+        }
+    }
+
+    private void writeNumber(@NonNull final JsonNode node) throws IOException {
+        // The canonicalizer parses the serialized number as a double. A float is serialized
+        // with Float.toString(), so parse that rather than widening the float.
+        double value = node.isFloat() ? Double.parseDouble(Float.toString(node.floatValue())) : node.doubleValue();
+        writeAscii(NumberToJSON.serializeNumber(value));
+    }
+
+    private void writeString(@NonNull final String s) {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\n':
+                    writeEscape('n');
+                    break;
+                case '\b':
+                    writeEscape('b');
+                    break;
+                case '\f':
+                    writeEscape('f');
+                    break;
+                case '\r':
+                    writeEscape('r');
+                    break;
+                case '\t':
+                    writeEscape('t');
+                    break;
+                case '"':
+                case '\\':
+                    writeEscape(c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write('\\');
+                        out.write('u');
+                        out.write('0');
+                        out.write('0');
+                        out.write(HEX_DIGITS[c >> 4]);
+                        out.write(HEX_DIGITS[c & 0xf]);
+                    } else if (c < 0x80) {
+                        out.write(c);
+                    } else if (c < 0x800) {
+                        out.write(0xc0 | (c >> 6));
+                        out.write(0x80 | (c & 0x3f));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                            && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                        out.write(0xf0 | (codePoint >> 18));
+                        out.write(0x80 | ((codePoint >> 12) & 0x3f));
+                        out.write(0x80 | ((codePoint >> 6) & 0x3f));
+                        out.write(0x80 | (codePoint & 0x3f));
+                    } else if (Character.isSurrogate(c)) {
+                        // An unpaired surrogate can't be encoded, and String.getBytes() replaces it with '?'.
+                        out.write('?');
+                    } else {
+                        out.write(0xe0 | (c >> 12));
+                        out.write(0x80 | ((c >> 6) & 0x3f));
+                        out.write(0x80 | (c & 0x3f));
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    private void writeEscape(final char c) {
+        out.write('\\');
+        out.write(c);
+    }
+
+    private void writeAscii(@NonNull final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            out.write(s.charAt(i));
+        }
+    }
+}
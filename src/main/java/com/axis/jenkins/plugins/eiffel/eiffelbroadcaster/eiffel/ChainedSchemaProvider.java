@@ -0,0 +1,64 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/** Asks a list of {@link SchemaProvider} instances for a schema, in order, and returns the first one found. */
+public class ChainedSchemaProvider implements SchemaProvider {
+    private final List<SchemaProvider> providers;
+
+    public ChainedSchemaProvider(@NonNull final List<SchemaProvider> providers) {
+        this.providers = List.copyOf(providers);
+    }
+
+    @NonNull
+    public List<SchemaProvider> getProviders() {
+        return providers;
+    }
+
+    @CheckForNull
+    @Override
+    public InputStream getSchema(String eventName, String eventVersion) throws IOException {
+        return getSchema(eventName, eventVersion, null);
+    }
+
+    @CheckForNull
+    @Override
+    public InputStream getSchema(String eventName, String eventVersion, @CheckForNull String schemaUri)
+            throws IOException {
+        for (var provider : providers) {
+            var schema = provider.getSchema(eventName, eventVersion, schemaUri);
+            if (schema != null) {
+                return schema;
+            }
+        }
+        return null;
+    }
+}
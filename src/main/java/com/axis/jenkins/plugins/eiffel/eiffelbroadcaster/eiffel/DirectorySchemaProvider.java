@@ -0,0 +1,68 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.regex.Pattern;
+
+/**
+ * Locates the JSON schema for an Eiffel event in a directory with the same layout as the bundled schemas,
+ * i.e. <code>&lt;event name&gt;/&lt;event version&gt;.json</code>. This lets administrators add schemas
+ * for custom event types and newer event versions without rebuilding the plugin.
+ */
+public class DirectorySchemaProvider implements SchemaProvider {
+    /** Event names and versions come from the events themselves, so only allow safe file names. */
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_][A-Za-z0-9._-]*");
+
+    private final File directory;
+
+    public DirectorySchemaProvider(@NonNull final File directory) {
+        this.directory = directory;
+    }
+
+    @NonNull
+    public File getDirectory() {
+        return directory;
+    }
+
+    @CheckForNull
+    @Override
+    public InputStream getSchema(String eventName, String eventVersion) throws IOException {
+        if (eventName == null || eventVersion == null
+                || !SAFE_NAME.matcher(eventName).matches() || !SAFE_NAME.matcher(eventVersion).matches()) {
+            return null;
+        }
+        var file = new File(new File(directory, eventName), eventVersion + ".json");
+        if (!file.isFile()) {
+            return null;
+        }
+        return Files.newInputStream(file.toPath());
+    }
+}
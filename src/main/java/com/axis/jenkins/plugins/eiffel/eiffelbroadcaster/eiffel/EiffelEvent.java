@@ -30,16 +30,16 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
-import java.security.Signature;
 import java.security.SignatureException;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -47,9 +47,10 @@ import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.erdtman.jcs.JsonCanonicalizer;
 
 /**
  * A base class for Eiffel events that defines the common event attributes (<code>meta</code> and <code>links</code>)
@@ -66,6 +67,9 @@ public class EiffelEvent {
     @JsonInclude(JsonInclude.Include.ALWAYS)
     private final Meta meta;
 
+    /** The canonical JSON form produced by {@link #sign}. Not part of the event itself. */
+    private transient byte[] signedJSON;
+
     public EiffelEvent(String type, String version) {
         this.meta = new Meta(type, version);
     }
@@ -89,24 +93,89 @@ public class EiffelEvent {
             throws InvalidKeyException, JsonCanonicalizationException, NoSuchAlgorithmException, SignatureException,
             UnsupportedAlgorithmException {
         // Prepare the event for signing by initializing the meta.security fields,
-        // including an empty signature string.
+        // with a random placeholder in place of the signature string. The canonical
+        // form of the event with an empty signature, which is what gets signed, and
+        // the canonical form that gets published only differ in the signature value,
+        // so the event only has to be serialized and canonicalized once.
         var alg = getAlgorithm(key.getAlgorithm(), hashAlg);
+        var placeholder = UUID.randomUUID().toString();
         var sec = new EiffelEvent.Meta.Security(identity);
-        sec.setIntegrityProtection(new EiffelEvent.Meta.Security.IntegrityProtection("", alg));
+        sec.setIntegrityProtection(new EiffelEvent.Meta.Security.IntegrityProtection(placeholder, alg));
         getMeta().setSecurity(sec);
+        signedJSON = null;
 
-        // Serialize the event to canonical JSON form, compute the signature,
-        // and update the signature field with the Base64-encoded signature.
-        var mapper = new ObjectMapper();
-        var sig = Signature.getInstance(alg.getSignatureAlgorithm());
-        sig.initSign(key);
+        byte[] canonical;
         try {
-            sig.update(new JsonCanonicalizer(
-                    mapper.writeValueAsString(mapper.valueToTree(this))).getEncodedUTF8());
+            canonical = CanonicalJsonWriter.writeValueAsBytes(this);
         } catch (IOException e) {
             throw new JsonCanonicalizationException(e.getMessage(), e);
         }
-        getMeta().getSecurity().getIntegrityProtection().setSignature(Base64.getEncoder().encodeToString(sig.sign()));
+        var token = ('"' + placeholder + '"').getBytes(StandardCharsets.UTF_8);
+        int offset = indexOf(canonical, token, 0);
+        if (offset < 0 || indexOf(canonical, token, offset + 1) >= 0) {
+            // The placeholder must occur exactly once. If it doesn't, something other than the
+            // signature field happens to contain it and we'll have to take the slow path.
+            offset = -1;
+            getMeta().getSecurity().getIntegrityProtection().setSignature("");
+            try {
+                canonical = CanonicalJsonWriter.writeValueAsBytes(this);
+            } catch (IOException e) {
+                throw new JsonCanonicalizationException(e.getMessage(), e);
+            }
+        }
+
+        // Compute the signature over the canonical form with an empty signature string,
+        // update the signature field with the Base64-encoded signature, and keep the
+        // signed canonical form around so that it can be published as is.
+        final var signedBytes = canonical;
+        final var signedOffset = offset;
+        var signature = Base64.getEncoder().encodeToString(
+                SignatureEngines.sign(alg.getSignatureAlgorithm(), key, sig -> {
+                    if (signedOffset < 0) {
+                        sig.update(signedBytes);
+                    } else {
+                        sig.update(signedBytes, 0, signedOffset + 1);
+                        sig.update(signedBytes, signedOffset + token.length - 1,
+                                signedBytes.length - signedOffset - token.length + 1);
+                    }
+                }));
+        getMeta().getSecurity().getIntegrityProtection().setSignature(signature);
+        if (offset >= 0) {
+            var encodedSignature = signature.getBytes(StandardCharsets.US_ASCII);
+            var json = new byte[canonical.length - token.length + 2 + encodedSignature.length];
+            System.arraycopy(canonical, 0, json, 0, offset + 1);
+            System.arraycopy(encodedSignature, 0, json, offset + 1, encodedSignature.length);
+            System.arraycopy(canonical, offset + token.length - 1, json, offset + 1 + encodedSignature.length,
+                    canonical.length - offset - token.length + 1);
+            signedJSON = json;
+        }
+    }
+
+    /**
+     * Returns the UTF-8 encoded canonical JSON form of the event that was produced the last time
+     * it was signed, i.e. the exact bytes whose signature is found in the event, so that they can
+     * be published without serializing the event again. The event must not have been modified
+     * since it was signed.
+     *
+     * @return the signed JSON form of the event, or <code>null</code> if it isn't available
+     */
+    @CheckForNull
+    public byte[] signedJSON() {
+        return signedJSON;
+    }
+
+    /** Returns the index of the first occurrence of <code>needle</code> in <code>haystack</code> at or after <code>from</code>, or -1. */
+    private static int indexOf(final byte[] haystack, final byte[] needle, final int from) {
+        outer:
+        for (int i = from; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
     }
 
     public List<Link> getLinks() {
@@ -118,7 +187,7 @@ public class EiffelEvent {
     }
 
     public String toJSON() throws JsonProcessingException {
-        return new ObjectMapper().writeValueAsString(this);
+        return EventCodec.writeValueAsString(this);
     }
 
     @Override
@@ -706,10 +775,34 @@ public class EiffelEvent {
      * the payload's <code>meta.type</code> member.
      */
     static class Deserializer extends StdDeserializer<Object> {
+        /**
+         * The classes in this package that events of a given type are deserialized into,
+         * or {@link GenericEiffelEvent} for types that don't have a class of their own.
+         * The event types come from the payload, so the cache is bounded.
+         */
+        private static final ConcurrentMap<String, Class<?>> EVENT_CLASSES = new ConcurrentHashMap<>();
+        private static final int MAX_CACHED_EVENT_TYPES = 1000;
+
         protected Deserializer() {
             super(EiffelEvent.class);
         }
 
+        private Class<?> getEventClass(String eventType) {
+            var eventClass = EVENT_CLASSES.get(eventType);
+            if (eventClass != null) {
+                return eventClass;
+            }
+            try {
+                eventClass = Class.forName(getClass().getPackage().getName() + "." + eventType);
+            } catch (ClassNotFoundException e) {
+                eventClass = GenericEiffelEvent.class;
+            }
+            if (EVENT_CLASSES.size() < MAX_CACHED_EVENT_TYPES) {
+                EVENT_CLASSES.putIfAbsent(eventType, eventClass);
+            }
+            return eventClass;
+        }
+
         @Override
         public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
             var node = p.readValueAsTree();
@@ -725,13 +818,7 @@ public class EiffelEvent {
             // Attempt to deserialize the TreeNode into a class in this package
             // with the same name as the event type. If that fails, deserialize
             // into GenericEiffelEvent where the data attribute is a JsonNode.
-            EiffelEvent event;
-            try {
-                event = (EiffelEvent) p.getCodec().treeToValue(node,
-                        Class.forName(getClass().getPackage().getName() + "." + eventType));
-            } catch (ClassNotFoundException e) {
-                event = p.getCodec().treeToValue(node, GenericEiffelEvent.class);
-            }
+            var event = (EiffelEvent) p.getCodec().treeToValue(node, getEventClass(eventType));
             // It's dubious if we really should populate meta.source here. It's
             // legitimate if this is an event we're going to send ourselves,
             // but downright incorrect if we're unmarshaling an event from
@@ -0,0 +1,205 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The JSON codec for Eiffel events and related objects. Creating an {@link ObjectMapper} is cheap,
+ * but each new mapper has to build its serializers and deserializers from scratch on first use,
+ * so all code should use the shared, thread-safe mapper and the readers and writers that
+ * are cached per class here instead of creating mappers of its own.
+ *
+ * <p>If the system property <code>com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventCodec.blackbird</code>
+ * is set to true and the Jackson Blackbird module is available on the classpath, the module is
+ * registered to replace reflection with generated accessors.</p>
+ */
+public final class EventCodec {
+    private static final Logger logger = LoggerFactory.getLogger(EventCodec.class);
+    private static final String BLACKBIRD_MODULE = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+
+    private static final ObjectMapper MAPPER = createMapper(SystemProperties.getBoolean(
+            EventCodec.class.getName() + ".blackbird", false));
+
+    private static final ClassValue<ObjectReader> READERS = new ClassValue<>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return MAPPER.readerFor(type);
+        }
+    };
+
+    private static final ClassValue<ObjectWriter> WRITERS = new ClassValue<>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> type) {
+            return MAPPER.writerFor(type);
+        }
+    };
+
+    private EventCodec() {
+    }
+
+    /**
+     * Creates a mapper, optionally with the Blackbird module registered.
+     *
+     * @param blackbird whether the Blackbird module should be registered, if it's available
+     * @return the mapper
+     */
+    static ObjectMapper createMapper(boolean blackbird) {
+        var mapper = new ObjectMapper();
+        if (blackbird) {
+            try {
+                var module = Class.forName(BLACKBIRD_MODULE, true, EventCodec.class.getClassLoader())
+                        .getDeclaredConstructor()
+                        .newInstance();
+                mapper.registerModule((Module) module);
+                logger.info("Using the Jackson Blackbird module for Eiffel events");
+            } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+                logger.warn("The Jackson Blackbird module was requested but couldn't be loaded: {}", e.toString());
+            }
+        }
+        return mapper;
+    }
+
+    /**
+     * Gets the shared mapper, e.g. for tree model operations. The mapper must not be reconfigured.
+     *
+     * @return the mapper
+     */
+    @NonNull
+    public static ObjectMapper getMapper() {
+        return MAPPER;
+    }
+
+    /**
+     * Gets the cached reader for a class.
+     *
+     * @param type the class to deserialize
+     * @return the reader
+     */
+    @NonNull
+    public static ObjectReader getReader(@NonNull final Class<?> type) {
+        return READERS.get(type);
+    }
+
+    /**
+     * Gets the cached writer for a class.
+     *
+     * @param type the class to serialize
+     * @return the writer
+     */
+    @NonNull
+    public static ObjectWriter getWriter(@NonNull final Class<?> type) {
+        return WRITERS.get(type);
+    }
+
+    /**
+     * Deserializes a JSON string.
+     *
+     * @param json the JSON string
+     * @param type the class to deserialize into
+     * @return the deserialized object
+     * @throws JsonProcessingException if the string couldn't be parsed or deserialized
+     */
+    public static <T> T readValue(@NonNull final String json, @NonNull final Class<T> type)
+            throws JsonProcessingException {
+        return getReader(type).readValue(json);
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON into a JSON tree.
+     *
+     * @param json the JSON bytes
+     * @return the JSON tree
+     * @throws JsonProcessingException if the bytes couldn't be parsed
+     */
+    @NonNull
+    public static JsonNode readTree(@NonNull final byte[] json) throws JsonProcessingException {
+        try {
+            return MAPPER.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // Can't happen when reading from memory.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Serializes an object to a JSON string.
+     *
+     * @param value the object to serialize
+     * @return the JSON string
+     * @throws JsonProcessingException if the object couldn't be serialized
+     */
+    @NonNull
+    public static String writeValueAsString(@NonNull final Object value) throws JsonProcessingException {
+        return getWriter(value.getClass()).writeValueAsString(value);
+    }
+
+    /**
+     * Serializes an object to UTF-8 encoded JSON.
+     *
+     * @param value the object to serialize
+     * @return the JSON bytes
+     * @throws JsonProcessingException if the object couldn't be serialized
+     */
+    @NonNull
+    public static byte[] writeValueAsBytes(@NonNull final Object value) throws JsonProcessingException {
+        return getWriter(value.getClass()).writeValueAsBytes(value);
+    }
+
+    /**
+     * Converts an object to a JSON tree.
+     *
+     * @param value the object to convert
+     * @return the JSON tree
+     */
+    @NonNull
+    public static JsonNode valueToTree(@NonNull final Object value) {
+        return MAPPER.valueToTree(value);
+    }
+
+    /**
+     * Converts an object, e.g. a map or a JSON tree, into another type.
+     *
+     * @param value the object to convert
+     * @param type the class to convert into
+     * @return the converted object
+     */
+    public static <T> T convertValue(final Object value, @NonNull final Class<T> type) {
+        return MAPPER.convertValue(value, type);
+    }
+}
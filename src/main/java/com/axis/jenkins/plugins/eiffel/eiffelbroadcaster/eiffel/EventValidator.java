@@ -24,30 +24,83 @@
 
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.networknt.schema.JsonSchema;
+import com.networknt.schema.JsonSchemaException;
 import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.SchemaValidatorsConfig;
 import com.networknt.schema.SpecVersion;
+import com.networknt.schema.ValidationMessage;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Validates an Eiffel event against the available schemas. */
 public class EventValidator {
+    private static final Logger logger = LoggerFactory.getLogger(EventValidator.class);
+
+    /** The default maximum number of compiled schemas that are kept in each cache. */
+    private static final int MAX_CACHED_SCHEMAS = SystemProperties.getInteger(
+            EventValidator.class.getName() + ".maxCachedSchemas", 1000);
+
     /** A cache of already loaded {@link JsonSchema} instances to allow reuse. */
-    private ConcurrentMap<EventVersionKey, JsonSchema> schemaCache = new ConcurrentHashMap<>();
+    private final SchemaCache schemaCache;
+
+    /** Like {@link #schemaCache}, but for schemas that stop at the first error. Loaded on first use. */
+    private final SchemaCache failFastSchemaCache;
 
-    private ObjectMapper jsonMapper = new ObjectMapper();
-    private JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V4);
-    private SchemaProvider schemaProvider = new BundledSchemaProvider();
+    private final LongAdder validationCount = new LongAdder();
+    private final LongAdder skippedValidationCount = new LongAdder();
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private final ObjectMapper jsonMapper = EventCodec.getMapper();
+    private final JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V4);
+    private final BundledSchemaProvider bundledSchemaProvider = new BundledSchemaProvider();
+    private final SchemaProvider schemaProvider;
+
+    /** Creates a validator that only uses the schemas bundled with the plugin. */
+    public EventValidator() {
+        this(new BundledSchemaProvider());
+    }
 
-    public EventValidator() { }
+    /**
+     * Creates a validator that locates schemas with the given provider.
+     *
+     * @param schemaProvider the provider of the schemas
+     */
+    public EventValidator(@NonNull final SchemaProvider schemaProvider) {
+        this(schemaProvider, MAX_CACHED_SCHEMAS);
+    }
+
+    /**
+     * Creates a validator that locates schemas with the given provider.
+     *
+     * @param schemaProvider the provider of the schemas
+     * @param maxCachedSchemas the maximum number of compiled schemas to keep
+     */
+    public EventValidator(@NonNull final SchemaProvider schemaProvider, final int maxCachedSchemas) {
+        this.schemaProvider = schemaProvider;
+        this.schemaCache = new SchemaCache(false, Math.max(1, maxCachedSchemas));
+        this.failFastSchemaCache = new SchemaCache(true, Math.max(1, maxCachedSchemas));
+    }
 
     /**
      * Validates an Eiffel event and raises am exception if unsuccessful.
-     * Will use {@link BundledSchemaProvider} to locate a schema that fits the event.
+     * Will use the validator's {@link SchemaProvider} to locate a schema that fits the event.
      *
      * @param eventName the name of the payload's event type
      * @param eventVersion the version of the event type
@@ -57,24 +110,281 @@ public class EventValidator {
      */
     public void validate(String eventName, String eventVersion, @NonNull final JsonNode eventJson)
             throws EventValidationFailedException, SchemaUnavailableException {
-        var key = new EventVersionKey(eventName, eventVersion);
-        var schema = schemaCache.get(key);
-        if (schema == null) {
-            try (var schemaStream = schemaProvider.getSchema(eventName, eventVersion)) {
-                if (schemaStream == null) {
-                    throw new SchemaUnavailableException(
-                            String.format("Unable to locate a schema for %s@%s", eventName, eventVersion));
-                }
-                schema = schemaFactory.getSchema(jsonMapper.readTree(schemaStream));
-            } catch (IOException e) {
-                throw new SchemaUnavailableException(
-                        String.format("Error reading schema for %s@%s", eventName, eventVersion), e);
+        validate(eventName, eventVersion, eventJson, false);
+    }
+
+    private void validate(String eventName, String eventVersion, @NonNull final JsonNode eventJson,
+                          boolean failFast)
+            throws EventValidationFailedException, SchemaUnavailableException {
+        validationCount.increment();
+        Set<ValidationMessage> result;
+        try {
+            var cache = failFast ? failFastSchemaCache : schemaCache;
+            result = cache.get(eventName, eventVersion, eventJson).validate(eventJson);
+        } catch (JsonSchemaException e) {
+            // A fail-fast schema throws at the first error instead of returning it.
+            if (!failFast || e.getValidationMessage() == null) {
+                throw e;
             }
-            schemaCache.put(key, schema);
+            result = Set.of(e.getValidationMessage());
         }
-        var result = schema.validate(eventJson);
         if (!result.isEmpty()) {
             throw new EventValidationFailedException(result, eventJson);
         }
     }
+
+    /**
+     * Validates an Eiffel event and raises an exception if unsuccessful. The plugin's own event types
+     * are checked directly by {@link TypedEventValidators}, and only events that those validators don't
+     * accept (including all other event types) are validated against a schema.
+     *
+     * @param event the event
+     * @param eventJson the JSON form of the event
+     * @throws EventValidationFailedException if the event fails validation
+     * @throws SchemaUnavailableException if a schema can't be located
+     */
+    public void validate(@NonNull final EiffelEvent event, @NonNull final JsonNode eventJson)
+            throws EventValidationFailedException, SchemaUnavailableException {
+        validate(event, eventJson, ValidationPolicy.ALWAYS, 1, false);
+    }
+
+    /**
+     * Validates an Eiffel event according to a {@link ValidationPolicy} and raises an exception if unsuccessful.
+     * Events that the policy says shouldn't be validated are counted as skipped.
+     *
+     * @param event the event
+     * @param eventJson the JSON form of the event
+     * @param policy the validation policy
+     * @param sampleInterval with {@link ValidationPolicy#SAMPLED}, one in this many of the plugin's
+     *                       own events is validated
+     * @param userSupplied whether the event was sent from a pipeline step rather than by the plugin itself,
+     *                     in which case it's always validated against a schema
+     * @throws EventValidationFailedException if the event fails validation
+     * @throws SchemaUnavailableException if a schema can't be located
+     */
+    public void validate(@NonNull final EiffelEvent event, @NonNull final JsonNode eventJson,
+                         @NonNull final ValidationPolicy policy, final int sampleInterval, final boolean userSupplied)
+            throws EventValidationFailedException, SchemaUnavailableException {
+        if (needsSchemaValidation(event, policy, sampleInterval, userSupplied)) {
+            validate(event.getMeta().getType(), event.getMeta().getVersion(), eventJson,
+                    policy == ValidationPolicy.FAIL_FAST);
+        }
+    }
+
+    /**
+     * Like {@link #validate(EiffelEvent, JsonNode, ValidationPolicy, int, boolean)}, but takes the serialized
+     * event and only parses it if it actually has to be validated against a schema, which most of the plugin's
+     * own events don't.
+     *
+     * @param event the event
+     * @param eventBytes the serialized event
+     * @param policy the validation policy
+     * @param sampleInterval with {@link ValidationPolicy#SAMPLED}, one in this many of the plugin's
+     *                       own events is validated
+     * @param userSupplied whether the event was sent from a pipeline step rather than by the plugin itself,
+     *                     in which case it's always validated against a schema
+     * @throws EventValidationFailedException if the event fails validation
+     * @throws JsonProcessingException if the serialized event can't be parsed
+     * @throws SchemaUnavailableException if a schema can't be located
+     */
+    public void validate(@NonNull final EiffelEvent event, @NonNull final byte[] eventBytes,
+                         @NonNull final ValidationPolicy policy, final int sampleInterval, final boolean userSupplied)
+            throws EventValidationFailedException, JsonProcessingException, SchemaUnavailableException {
+        if (needsSchemaValidation(event, policy, sampleInterval, userSupplied)) {
+            validate(event.getMeta().getType(), event.getMeta().getVersion(), EventCodec.readTree(eventBytes),
+                    policy == ValidationPolicy.FAIL_FAST);
+        }
+    }
+
+    /**
+     * Applies the validation policy and, for the plugin's own events, the {@link TypedEventValidators}
+     * to an event, and updates the counters if that settles the matter.
+     *
+     * @return true if the event has to be validated against a schema
+     */
+    private boolean needsSchemaValidation(@NonNull final EiffelEvent event, @NonNull final ValidationPolicy policy,
+                                          final int sampleInterval, final boolean userSupplied) {
+        if (!userSupplied && (policy == ValidationPolicy.USER_EVENTS_ONLY || (policy == ValidationPolicy.SAMPLED
+                && sampleCounter.getAndIncrement() % Math.max(1, sampleInterval) != 0))) {
+            skippedValidationCount.increment();
+            return false;
+        }
+        // Events from pipeline steps are under user control, so they always get the full schema validation.
+        if (!userSupplied && TypedEventValidators.isKnownValid(event)) {
+            validationCount.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /** Returns the number of events that have been validated. */
+    public long getValidationCount() {
+        return validationCount.sum();
+    }
+
+    /** Returns the number of events whose validation was skipped because of the validation policy. */
+    public long getSkippedValidationCount() {
+        return skippedValidationCount.sum();
+    }
+
+    /**
+     * Compiles all bundled schemas in parallel so that the first events of each type don't have to wait
+     * for their schemas. Schemas that are already loaded or being loaded aren't loaded again.
+     *
+     * @param executor the executor to compile the schemas on
+     * @return a future that completes when all schemas have been compiled
+     */
+    @NonNull
+    public CompletableFuture<Void> precompileBundledSchemas(@NonNull final Executor executor) {
+        try {
+            var schemas = bundledSchemaProvider.listSchemas();
+            var failures = new AtomicInteger();
+            var startTime = System.nanoTime();
+            return CompletableFuture.allOf(schemas.stream()
+                    .map(key -> CompletableFuture.runAsync(() -> {
+                        try {
+                            schemaCache.get(key.getEventName(), key.getEventVersion(), null);
+                        } catch (SchemaUnavailableException e) {
+                            failures.incrementAndGet();
+                            logger.warn("Unable to precompile schema: {}", e.getMessage());
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new))
+                    .thenRun(() -> logger.debug("Precompiled {} of {} bundled schemas in {} ms",
+                            schemas.size() - failures.get(), schemas.size(),
+                            (System.nanoTime() - startTime) / 1000000));
+        } catch (IOException e) {
+            logger.warn("Unable to list the bundled schemas, they'll be loaded on first use: {}", e.toString());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    @NonNull
+    private JsonSchema loadSchema(String eventName, String eventVersion, @CheckForNull JsonNode eventJson,
+                                  boolean failFast)
+            throws SchemaUnavailableException {
+        String schemaUri = null;
+        if (eventJson != null) {
+            var schemaUriNode = eventJson.path("meta").path("schemaUri");
+            schemaUri = schemaUriNode.isTextual() ? schemaUriNode.asText() : null;
+        }
+        try (var schemaStream = schemaProvider.getSchema(eventName, eventVersion, schemaUri)) {
+            if (schemaStream == null) {
+                throw new SchemaUnavailableException(
+                        String.format("Unable to locate a schema for %s@%s", eventName, eventVersion));
+            }
+            var schemaJson = jsonMapper.readTree(schemaStream);
+            if (failFast) {
+                var validatorsConfig = new SchemaValidatorsConfig();
+                validatorsConfig.setFailFast(true);
+                return schemaFactory.getSchema(schemaJson, validatorsConfig);
+            }
+            return schemaFactory.getSchema(schemaJson);
+        } catch (IOException e) {
+            throw new SchemaUnavailableException(
+                    String.format("Error reading schema for %s@%s", eventName, eventVersion), e);
+        }
+    }
+
+    /** A compiled schema, or a future one that's being loaded, and when it was last used. */
+    private static final class CachedSchema {
+        final CompletableFuture<JsonSchema> future = new CompletableFuture<>();
+        volatile long lastUsed = System.nanoTime();
+    }
+
+    /**
+     * A bounded cache of compiled schemas, keyed on event name and then on version so that lookups don't
+     * have to allocate a key. A schema that's being loaded is represented by an incomplete future that
+     * other threads that need the same schema wait for. When the cache is full the least recently used
+     * schema is evicted, which requires a scan of the cache, but that only happens when more schemas are
+     * in use than the cache can hold.
+     */
+    private final class SchemaCache {
+        private final ConcurrentMap<String, ConcurrentMap<String, CachedSchema>> schemas = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final boolean failFast;
+        private final int maxSize;
+
+        SchemaCache(boolean failFast, int maxSize) {
+            this.failFast = failFast;
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Returns the compiled schema for an event type and version, loading it if necessary.
+         * Failures aren't cached so that the next request tries again.
+         *
+         * @param eventJson the event that needs the schema, whose <code>meta.schemaUri</code> member
+         *                  is used if the schema has to be loaded, or null
+         */
+        @NonNull
+        JsonSchema get(String eventName, String eventVersion, @CheckForNull JsonNode eventJson)
+                throws SchemaUnavailableException {
+            if (eventName == null || eventVersion == null) {
+                throw new SchemaUnavailableException(
+                        String.format("Unable to locate a schema for %s@%s", eventName, eventVersion));
+            }
+            var versions = schemas.get(eventName);
+            if (versions == null) {
+                versions = schemas.computeIfAbsent(eventName, k -> new ConcurrentHashMap<>());
+            }
+            var cached = versions.get(eventVersion);
+            if (cached == null) {
+                var newCached = new CachedSchema();
+                cached = versions.putIfAbsent(eventVersion, newCached);
+                if (cached == null) {
+                    if (size.incrementAndGet() > maxSize) {
+                        evictLeastRecentlyUsed();
+                    }
+                    try {
+                        var schema = loadSchema(eventName, eventVersion, eventJson, failFast);
+                        newCached.future.complete(schema);
+                        return schema;
+                    } catch (SchemaUnavailableException | RuntimeException e) {
+                        if (versions.remove(eventVersion, newCached)) {
+                            size.decrementAndGet();
+                        }
+                        newCached.future.completeExceptionally(e);
+                        throw e;
+                    }
+                }
+            }
+            cached.lastUsed = System.nanoTime();
+            try {
+                return cached.future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof SchemaUnavailableException) {
+                    throw new SchemaUnavailableException(e.getCause().getMessage(), e.getCause());
+                }
+                throw e;
+            }
+        }
+
+        /** Evicts loaded schemas, least recently used first, until the cache is within its bounds. */
+        private void evictLeastRecentlyUsed() {
+            while (size.get() > maxSize) {
+                String oldestName = null;
+                String oldestVersion = null;
+                CachedSchema oldest = null;
+                for (var nameEntry : schemas.entrySet()) {
+                    for (var versionEntry : nameEntry.getValue().entrySet()) {
+                        var candidate = versionEntry.getValue();
+                        if (candidate.future.isDone() && (oldest == null || candidate.lastUsed - oldest.lastUsed < 0)) {
+                            oldestName = nameEntry.getKey();
+                            oldestVersion = versionEntry.getKey();
+                            oldest = candidate;
+                        }
+                    }
+                }
+                if (oldest == null) {
+                    return;
+                }
+                var versions = schemas.get(oldestName);
+                if (versions != null && versions.remove(oldestVersion, oldest)) {
+                    size.decrementAndGet();
+                    logger.debug("Evicted the schema for {}@{} from the cache", oldestName, oldestVersion);
+                }
+            }
+        }
+    }
 }
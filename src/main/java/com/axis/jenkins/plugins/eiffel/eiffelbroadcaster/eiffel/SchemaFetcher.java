@@ -0,0 +1,69 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+/** Fetches a JSON schema from the URI declared in an event's <code>meta.schemaUri</code> member. */
+@FunctionalInterface
+public interface SchemaFetcher {
+    /**
+     * Fetches a schema.
+     *
+     * @param uri the URI of the schema
+     * @return the schema
+     * @throws IOException if the schema couldn't be fetched
+     */
+    @NonNull
+    InputStream fetch(@NonNull URI uri) throws IOException;
+
+    /** A {@link SchemaFetcher} that fetches schemas over HTTP or HTTPS. */
+    SchemaFetcher HTTP = new SchemaFetcher() {
+        private static final int TIMEOUT_MILLIS = 10000;
+
+        @NonNull
+        @Override
+        public InputStream fetch(@NonNull URI uri) throws IOException {
+            if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) {
+                throw new IOException(String.format("Unsupported schema URI scheme: %s", uri));
+            }
+            var connection = (HttpURLConnection) uri.toURL().openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setInstanceFollowRedirects(false);
+            connection.setRequestProperty("Accept", "application/schema+json, application/json");
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                throw new IOException(String.format("Got HTTP status %d when fetching %s",
+                        connection.getResponseCode(), uri));
+            }
+            return connection.getInputStream();
+        }
+    };
+}
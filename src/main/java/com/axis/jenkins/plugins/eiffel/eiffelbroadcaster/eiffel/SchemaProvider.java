@@ -25,6 +25,7 @@
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.IOException;
 import java.io.InputStream;
 
 /**
@@ -35,5 +36,21 @@ import java.io.InputStream;
  */
 public interface SchemaProvider {
     @CheckForNull
-    InputStream getSchema(String eventName, String eventVersion);
+    InputStream getSchema(String eventName, String eventVersion) throws IOException;
+
+    /**
+     * Locates the JSON schema for an Eiffel event, taking the schema URI declared in the event's
+     * <code>meta.schemaUri</code> member into account if the provider supports it.
+     *
+     * @param eventName the name of the event type
+     * @param eventVersion the version of the event type
+     * @param schemaUri the schema URI declared by the event, or null
+     * @return the schema, or null if this provider doesn't have it
+     * @throws IOException if the schema exists but couldn't be read
+     */
+    @CheckForNull
+    default InputStream getSchema(String eventName, String eventVersion, @CheckForNull String schemaUri)
+            throws IOException {
+        return getSchema(eventName, eventVersion);
+    }
 }
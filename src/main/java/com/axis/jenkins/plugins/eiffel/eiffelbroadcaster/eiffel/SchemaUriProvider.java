@@ -0,0 +1,146 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Locates the JSON schema for an Eiffel event by fetching the URI in its <code>meta.schemaUri</code>
+ * member. Since the events may come from pipelines, only URIs that start with one of the configured
+ * prefixes are fetched, and nothing is fetched unless prefixes have been configured.
+ *
+ * <p>Fetched schemas are stored in a directory, named after the SHA-256 digest of their URI, and are
+ * read from there from then on, so a restart or an unreachable schema server doesn't require the
+ * schema to be fetched again.</p>
+ */
+public class SchemaUriProvider implements SchemaProvider {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaUriProvider.class);
+
+    /** The maximum size (in bytes) of a fetched schema. */
+    private static final int MAX_SCHEMA_SIZE = 1024 * 1024;
+
+    private final File cacheDirectory;
+    private final SchemaFetcher fetcher;
+    private final List<String> allowedUriPrefixes;
+
+    /**
+     * @param cacheDirectory the directory where fetched schemas are stored
+     * @param fetcher the fetcher that fetches schemas that aren't stored yet
+     * @param allowedUriPrefixes the prefixes of the schema URIs that may be fetched
+     */
+    public SchemaUriProvider(@NonNull final File cacheDirectory, @NonNull final SchemaFetcher fetcher,
+                             @NonNull final List<String> allowedUriPrefixes) {
+        this.cacheDirectory = cacheDirectory;
+        this.fetcher = fetcher;
+        this.allowedUriPrefixes = List.copyOf(allowedUriPrefixes);
+    }
+
+    /** This provider only knows about schemas with URIs. */
+    @CheckForNull
+    @Override
+    public InputStream getSchema(String eventName, String eventVersion) {
+        return null;
+    }
+
+    @CheckForNull
+    @Override
+    public InputStream getSchema(String eventName, String eventVersion, @CheckForNull String schemaUri)
+            throws IOException {
+        if (schemaUri == null || !isAllowed(schemaUri)) {
+            return null;
+        }
+        var cacheFile = new File(cacheDirectory, digest(schemaUri) + ".json");
+        if (cacheFile.isFile()) {
+            return Files.newInputStream(cacheFile.toPath());
+        }
+
+        URI uri;
+        try {
+            uri = new URI(schemaUri);
+        } catch (URISyntaxException e) {
+            throw new IOException(String.format(
+                    "Invalid schema URI in %s@%s: %s", eventName, eventVersion, schemaUri), e);
+        }
+        byte[] schema;
+        try (var stream = fetcher.fetch(uri)) {
+            schema = stream.readNBytes(MAX_SCHEMA_SIZE + 1);
+        }
+        if (schema.length > MAX_SCHEMA_SIZE) {
+            throw new IOException(String.format("The schema at %s is larger than %d bytes", uri, MAX_SCHEMA_SIZE));
+        }
+        logger.info("Fetched schema for {}@{} from {}", eventName, eventVersion, uri);
+
+        // Write to a temporary file and move it into place so that a crash never leaves a partial schema behind.
+        try {
+            Files.createDirectories(cacheDirectory.toPath());
+            var tempFile = Files.createTempFile(cacheDirectory.toPath(), "schema", ".tmp");
+            try {
+                Files.write(tempFile, schema);
+                Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to store the schema fetched from {} in {}: {}", uri, cacheDirectory, e.toString());
+        }
+        return new ByteArrayInputStream(schema);
+    }
+
+    private boolean isAllowed(@NonNull final String schemaUri) {
+        for (var prefix : allowedUriPrefixes) {
+            if (schemaUri.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    private static String digest(@NonNull final String s) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 isn't available", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a {@link Signature} engine per thread and signature algorithm so that signing an event doesn't
+ * require a provider lookup and, as long as the same key is used, a new {@link Signature#initSign(PrivateKey)}.
+ * An engine returns to its initialized state after each {@link Signature#sign()}, so it can be reused by
+ * the next event signed by the same thread.
+ */
+final class SignatureEngines {
+    private static final ThreadLocal<Map<String, Engine>> ENGINES = ThreadLocal.withInitial(HashMap::new);
+
+    private SignatureEngines() { }
+
+    /**
+     * Signs data with a private key, reusing the calling thread's engine for the algorithm if it has one.
+     *
+     * @param algorithm the name of the signature algorithm
+     * @param key the private key to sign with
+     * @param signer feeds the data to sign to the engine
+     * @return the signature
+     */
+    @NonNull
+    static byte[] sign(@NonNull final String algorithm, @NonNull final PrivateKey key, @NonNull final Signer signer)
+            throws InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        var engines = ENGINES.get();
+        var engine = engines.get(algorithm);
+        if (engine == null) {
+            engine = new Engine(Signature.getInstance(algorithm));
+            engines.put(algorithm, engine);
+        }
+        // Keys are compared by identity; SigningKeyCache hands out the same instance for as long as it's cached.
+        if (engine.key != key) {
+            engine.key = null;
+            engine.signature.initSign(key);
+            engine.key = key;
+        }
+        try {
+            signer.update(engine.signature);
+            return engine.signature.sign();
+        } catch (SignatureException | RuntimeException e) {
+            // The engine may have been left with partial data, so don't reuse it.
+            engines.remove(algorithm);
+            throw e;
+        }
+    }
+
+    /** Feeds the data to sign to a {@link Signature}. */
+    @FunctionalInterface
+    interface Signer {
+        void update(@NonNull Signature signature) throws SignatureException;
+    }
+
+    private static final class Engine {
+        final Signature signature;
+        PrivateKey key;
+
+        Engine(Signature signature) {
+            this.signature = signature;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Fast-path validation of the event types that the plugin emits itself. Each validator checks a typed
+ * event object directly against the constraints in the bundled schema of the event version that
+ * {@link EiffelEventFactory} creates, so that these events don't have to go through the generic
+ * JSON schema validator.
+ *
+ * <p>Much of what the schemas say is already guaranteed by the Java types (e.g. enum values and
+ * integer timestamps), so what's left is mostly required fields, string patterns, and attributes
+ * that the classes support but that the schema versions don't allow. The validators only tell
+ * whether an event is known to be valid. Anything they don't accept is passed on to the generic
+ * validator, which has the final word and produces the error messages, so a validator that's
+ * stricter than its schema only costs time while one that's more lenient is a bug. Events sent from
+ * pipeline steps are under user control and never take this path.
+ * <code>TypedEventValidatorsTest</code> checks the validators against the bundled schemas.</p>
+ */
+final class TypedEventValidators {
+    private static final String PURL_PREFIX = "pkg:";
+
+    private static final Map<Class<? extends EiffelEvent>, TypedValidator> VALIDATORS = Map.of(
+            EiffelActivityTriggeredEvent.class, new TypedValidator("EiffelActivityTriggeredEvent", "4.0.0",
+                    event -> isValid(((EiffelActivityTriggeredEvent) event).getData())),
+            EiffelActivityStartedEvent.class, new TypedValidator("EiffelActivityStartedEvent", "4.0.0",
+                    event -> isValid(((EiffelActivityStartedEvent) event).getData())),
+            EiffelActivityFinishedEvent.class, new TypedValidator("EiffelActivityFinishedEvent", "3.0.0",
+                    event -> isValid(((EiffelActivityFinishedEvent) event).getData())),
+            EiffelActivityCanceledEvent.class, new TypedValidator("EiffelActivityCanceledEvent", "3.0.0",
+                    event -> ((EiffelActivityCanceledEvent) event).getData() != null),
+            EiffelArtifactCreatedEvent.class, new TypedValidator("EiffelArtifactCreatedEvent", "3.0.0",
+                    event -> isValid(((EiffelArtifactCreatedEvent) event).getData())),
+            EiffelArtifactPublishedEvent.class, new TypedValidator("EiffelArtifactPublishedEvent", "3.1.0",
+                    event -> isValid(((EiffelArtifactPublishedEvent) event).getData())));
+
+    private TypedEventValidators() {
+    }
+
+    /**
+     * Returns true if the event is of one of the plugin's own types and versions and is known to pass
+     * validation against its schema. A false return value doesn't mean that the event is invalid, only
+     * that it has to be validated by the generic validator.
+     *
+     * @param event the event to check
+     */
+    static boolean isKnownValid(@NonNull final EiffelEvent event) {
+        var validator = VALIDATORS.get(event.getClass());
+        return validator != null && validator.isKnownValid(event);
+    }
+
+    /** Returns true if there's a typed validator for the given event type and version. */
+    static boolean hasValidator(@NonNull final Class<? extends EiffelEvent> eventClass, final String eventVersion) {
+        var validator = VALIDATORS.get(eventClass);
+        return validator != null && validator.eventVersion.equals(eventVersion);
+    }
+
+    private static final class TypedValidator {
+        private final String eventType;
+        private final String eventVersion;
+        private final Predicate<EiffelEvent> dataValidator;
+
+        TypedValidator(String eventType, String eventVersion, Predicate<EiffelEvent> dataValidator) {
+            this.eventType = eventType;
+            this.eventVersion = eventVersion;
+            this.dataValidator = dataValidator;
+        }
+
+        boolean isKnownValid(EiffelEvent event) {
+            return isValid(event.getMeta(), eventType, eventVersion)
+                    && areValid(event.getLinks())
+                    && dataValidator.test(event);
+        }
+    }
+
+    // The meta and links objects look the same in all supported event versions.
+
+    private static boolean isValid(EiffelEvent.Meta meta, String eventType, String eventVersion) {
+        if (meta == null || !isValidEventId(meta.getId()) || !eventType.equals(meta.getType())
+                || !eventVersion.equals(meta.getVersion()) || meta.getSchemaUri() != null
+                || !noneNull(meta.getTags())) {
+            return false;
+        }
+        var source = meta.getSource();
+        if (source != null && source.getSerializer() != null && !source.getSerializer().startsWith(PURL_PREFIX)) {
+            return false;
+        }
+        var security = meta.getSecurity();
+        if (security == null) {
+            return true;
+        }
+        if (security.getAuthorIdentity() == null) {
+            return false;
+        }
+        var integrityProtection = security.getIntegrityProtection();
+        return integrityProtection == null
+                || (integrityProtection.getSignature() != null && integrityProtection.getAlg() != null
+                    && isEmpty(integrityProtection.getSequenceProtection()));
+    }
+
+    private static boolean areValid(Collection<EiffelEvent.Link> links) {
+        for (var link : links) {
+            if (link == null || link.getType() == null || !isValidEventId(link.getTarget())
+                    || link.getDomainId() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the id matches the event id pattern in the schemas, i.e. if it's
+     * a version 1-5 UUID of the variant specified in RFC 4122.
+     */
+    private static boolean isValidEventId(UUID id) {
+        return id != null && id.variant() == 2 && id.version() >= 1 && id.version() <= 5;
+    }
+
+    private static boolean isValid(EiffelActivityTriggeredEvent.Data data) {
+        if (data == null || data.getName() == null || !noneNull(data.getCategories())) {
+            return false;
+        }
+        for (var trigger : data.getTriggers()) {
+            if (trigger == null || trigger.getType() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValid(EiffelActivityStartedEvent.Data data) {
+        if (data == null) {
+            return false;
+        }
+        for (var liveLog : data.getLiveLogs()) {
+            if (liveLog == null || liveLog.getName() == null || liveLog.getURI() == null
+                    || liveLog.getMediaType() != null || !isEmpty(liveLog.getTags())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValid(EiffelActivityFinishedEvent.Data data) {
+        if (data == null || data.getOutcome() == null || data.getOutcome().getConclusion() == null) {
+            return false;
+        }
+        for (var persistentLog : data.getPersistentLogs()) {
+            if (persistentLog == null || persistentLog.getName() == null || persistentLog.getURI() == null
+                    || persistentLog.getMediaType() != null || !isEmpty(persistentLog.getTags())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValid(EiffelArtifactCreatedEvent.Data data) {
+        if (data == null || !isPurl(data.getIdentity())) {
+            return false;
+        }
+        if (data.getFileInformation() != null) {
+            for (var fileInformation : data.getFileInformation()) {
+                if (fileInformation == null || fileInformation.getName() == null
+                        || fileInformation.getIntegrityProtection() != null
+                        || (fileInformation.getTags() != null && !noneNull(fileInformation.getTags()))) {
+                    return false;
+                }
+            }
+        }
+        return allPurls(data.getImplementsPurls()) && allPurls(data.getDependsOn());
+    }
+
+    private static boolean isValid(EiffelArtifactPublishedEvent.Data data) {
+        if (data == null || data.getLocations() == null) {
+            return false;
+        }
+        for (var location : data.getLocations()) {
+            if (location == null || location.getType() == null || location.getUri() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPurl(String s) {
+        return s != null && s.startsWith(PURL_PREFIX);
+    }
+
+    private static boolean allPurls(Collection<String> strings) {
+        if (strings != null) {
+            for (var s : strings) {
+                if (!isPurl(s)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(Collection<?> collection) {
+        return collection == null || collection.isEmpty();
+    }
+
+    private static boolean noneNull(Collection<?> collection) {
+        if (collection != null) {
+            for (var element : collection) {
+                if (element == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+/**
+ * Describes which outbound events should be validated against their schemas and how thoroughly.
+ * Events sent from pipeline steps are under user control, while events sent by the plugin
+ * itself (e.g. when builds start and finish) are built from typed objects and rarely
+ * differ in anything but their values.
+ */
+public enum ValidationPolicy {
+    /** Validate all events and collect all errors */
+    ALWAYS("Validate all events"),
+
+    /** Validate only the events sent from pipeline steps */
+    USER_EVENTS_ONLY("Validate only events sent from pipeline steps"),
+
+    /** Validate the events sent from pipeline steps and a sample of the plugin's own events */
+    SAMPLED("Validate events sent from pipeline steps and a sample of the plugin's own events"),
+
+    /** Validate all events but stop at the first error */
+    FAIL_FAST("Validate all events, stopping at the first error");
+
+    private final String description;
+
+    ValidationPolicy(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
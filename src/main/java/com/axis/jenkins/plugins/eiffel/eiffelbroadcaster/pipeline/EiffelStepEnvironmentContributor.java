@@ -0,0 +1,66 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.pipeline;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelActivityAction;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelEventFiles;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepEnvironmentContributor;
+
+/**
+ * Writes the activity events of a pipeline {@link Run} to the workspace of each step that runs in a
+ * <code>node</code> block and injects the paths of the files, if
+ * {@link EiffelEventFiles#isEnabled() enabled}. The workspace of a step isn't known by
+ * {@link com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelEnvironmentContributor}, which
+ * handles the same thing for other kinds of builds.
+ */
+@Extension
+public class EiffelStepEnvironmentContributor extends StepEnvironmentContributor {
+    @Override
+    public void buildEnvironmentFor(@NonNull StepContext stepContext, @NonNull EnvVars envs,
+                                    @CheckForNull TaskListener listener) throws IOException, InterruptedException {
+        if (!EiffelEventFiles.isEnabled()) {
+            return;
+        }
+        var workspace = stepContext.get(FilePath.class);
+        var run = stepContext.get(Run.class);
+        if (workspace == null || run == null) {
+            return;
+        }
+        var action = run.getAction(EiffelActivityAction.class);
+        if (action != null) {
+            // Called once per step, which makes it a reasonable place to check that the files still exist.
+            EiffelEventFiles.addFiles(run, action, workspace, envs, true);
+        }
+    }
+}
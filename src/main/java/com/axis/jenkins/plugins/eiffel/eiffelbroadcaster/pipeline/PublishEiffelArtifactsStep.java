@@ -28,17 +28,19 @@ import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelActivityAction;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelArtifactPublisher;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelArtifactToPublishAction;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EmptyArtifactException;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EventJournal;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EventQueueFullException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.MissingArtifactException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.Util;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactCreatedEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactPublishedEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventCodec;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventValidationFailedException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.SchemaUnavailableException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.SystemEventSigner;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSet;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -113,24 +115,31 @@ public class PublishEiffelArtifactsStep extends Step {
                 for (var savedArtifact : run.getActions(EiffelArtifactToPublishAction.class)) {
                     result.add(publishArtifact(artifactPublisher, savedArtifact.getEvent()));
                 }
+                try (var savedArtifacts = EventJournal.of(run).events(
+                        EiffelArtifactCreatedEvent.class.getSimpleName())) {
+                    for (var savedArtifact : (Iterable<String>) savedArtifacts::iterator) {
+                        result.add(publishArtifact(artifactPublisher,
+                                EventCodec.readValue(savedArtifact, EiffelArtifactCreatedEvent.class)));
+                    }
+                }
 
                 if (step.getArtifactEventFiles() != null) {
                     for (var file : getContext().get(FilePath.class).list(step.getArtifactEventFiles())) {
                         result.addAll(publishArtifactsFromFile(artifactPublisher, file));
                     }
                 }
-            } catch (EmptyArtifactException | EventValidationFailedException | JsonProcessingException
-                    | MissingArtifactException | SchemaUnavailableException e) {
+            } catch (EmptyArtifactException | EventQueueFullException | EventValidationFailedException
+                    | JsonProcessingException | MissingArtifactException | SchemaUnavailableException e) {
                 throw new AbortException(String.format(
                         "%s (%s): %s", ERROR_MESSAGE_PREFIX, e.getClass().getSimpleName(), e.getMessage()));
             }
-            return new ObjectMapper().convertValue(result, List.class);
+            return EventCodec.convertValue(result, List.class);
         }
 
         private JsonNode publishArtifact(@NonNull final EiffelArtifactPublisher artifactPublisher,
                                          @NonNull final EiffelArtifactCreatedEvent creationEvent) throws Exception {
             var event = artifactPublisher.prepareEvent(creationEvent);
-            var sentJSON = Util.mustPublishEvent(event, new SystemEventSigner());
+            var sentJSON = Util.mustPublishEvent(event, new SystemEventSigner(), getContext().get(Run.class));
             if (sentJSON != null) {
                 getContext().get(TaskListener.class).getLogger().format(
                         "Successfully sent %s with id %s for artifact with id %s%n",
@@ -149,7 +158,7 @@ public class PublishEiffelArtifactsStep extends Step {
                     try (var br = new BufferedReader(isr)) {
                         String line;
                         while ((line = br.readLine()) != null) {
-                            var event = new ObjectMapper().readValue(line, EiffelEvent.class);
+                            var event = EventCodec.readValue(line, EiffelEvent.class);
                             if (!(event instanceof EiffelArtifactCreatedEvent)) {
                                 throw new AbortException(String.format(
                                         "%s: This event in %s was of the type %s but only " +
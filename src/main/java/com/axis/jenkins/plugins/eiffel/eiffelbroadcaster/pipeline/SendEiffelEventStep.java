@@ -26,16 +26,18 @@ package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.pipeline;
 
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelActivityAction;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelArtifactToPublishAction;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EventJournal;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EventQueueFullException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.Util;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactCreatedEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventCodec;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EventValidationFailedException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.HashAlgorithm;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.SchemaUnavailableException;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.EventSigner;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.UserEventSigner;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSet;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.AbortException;
@@ -183,8 +185,7 @@ public class SendEiffelEventStep extends Step {
         @Override
         protected Map run() throws Exception {
             try {
-                var mapper = new ObjectMapper();
-                var event = mapper.convertValue(step.getEvent(), EiffelEvent.class);
+                var event = EventCodec.convertValue(step.getEvent(), EiffelEvent.class);
                 var run = getContext().get(Run.class);
 
                 if (step.getLinkToActivity()) {
@@ -192,7 +193,7 @@ public class SendEiffelEventStep extends Step {
                     // There should always be an EiffelActivityAction connected to the Run,
                     // but if not we can't do much than to crash the build.
                     event.getLinks().add(new EiffelEvent.Link(
-                            step.getActivityLinkType(), action.getTriggerEvent().getMeta().getId()));
+                            step.getActivityLinkType(), action.getTriggerEventId()));
                 }
 
                 EventSigner signer = null;
@@ -206,7 +207,7 @@ public class SendEiffelEventStep extends Step {
                             step.getSignatureHashAlgorithm(), run);
                 }
 
-                var sentJSON = Util.mustPublishEvent(event, signer);
+                var sentJSON = Util.mustPublishEvent(event, signer, run);
                 var taskListener = getContext().get(TaskListener.class);
                 if (sentJSON != null && taskListener != null) {
                     taskListener.getLogger().format(
@@ -215,12 +216,16 @@ public class SendEiffelEventStep extends Step {
                 }
 
                 if (step.getPublishArtifact() && event instanceof EiffelArtifactCreatedEvent) {
-                    run.addAction(new EiffelArtifactToPublishAction((EiffelArtifactCreatedEvent) event));
+                    if (EventJournal.isEnabled()) {
+                        EventJournal.of(run).append(event.toJSON());
+                    } else {
+                        run.addAction(new EiffelArtifactToPublishAction((EiffelArtifactCreatedEvent) event));
+                    }
                 }
 
-                return mapper.convertValue(event, Map.class);
-            } catch (EventValidationFailedException | IllegalArgumentException | JsonProcessingException
-                    | SchemaUnavailableException e) {
+                return EventCodec.convertValue(event, Map.class);
+            } catch (EventQueueFullException | EventValidationFailedException | IllegalArgumentException
+                    | JsonProcessingException | SchemaUnavailableException e) {
                 throw new AbortException(String.format(
                         "%s (%s): %s", ERROR_MESSAGE_PREFIX, e.getClass().getSimpleName(), e.getMessage()));
             }
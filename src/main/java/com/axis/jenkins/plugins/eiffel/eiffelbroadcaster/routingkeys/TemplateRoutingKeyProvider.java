@@ -0,0 +1,335 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.routingkeys;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RoutingKeyProvider} implementation that produces routing keys from a template like
+ * <code>eiffel.{type}.{domainId}.{category}</code>, where each placeholder is replaced with the
+ * corresponding field of the event (see {@link Field} for the available fields). Blank values are
+ * replaced with an underscore and any dots in a value are replaced with underscores, so that each
+ * placeholder always occupies the same words of the routing key.
+ * <p>
+ * The template is compiled once into a list of precomputed segments. If the template only refers to
+ * fields that are fixed for a given combination of event type and domain id the resulting routing keys
+ * are also cached per such combination, so the typical case is reduced to two map lookups per event.
+ * <p>
+ * Templates are validated in the UI, but not when they're set through JCasC or a script. An invalid
+ * template is logged and replaced with {@link #FALLBACK_TEMPLATE} rather than failing every event.
+ */
+public class TemplateRoutingKeyProvider extends RoutingKeyProvider {
+    private static final Logger logger = LoggerFactory.getLogger(TemplateRoutingKeyProvider.class);
+
+    /** The template used in place of an invalid one, which gives routing keys in the Sepia format. */
+    static final String FALLBACK_TEMPLATE = "eiffel._.{type}.{tag}.{domainId}";
+
+    /**
+     * The maximum number of domain ids whose routing keys are cached per event type. Should
+     * this be exceeded the cache for that type is cleared and repopulated as events come in.
+     */
+    private static final int MAX_CACHED_DOMAIN_IDS = SystemProperties.getInteger(
+            TemplateRoutingKeyProvider.class.getName() + ".maxCachedDomainIds", 64);
+
+    /** The cache key used for events without a domain id, since {@link ConcurrentHashMap} doesn't accept nulls. */
+    private static final String NO_DOMAIN_ID = "";
+
+    @NonNull
+    private String template;
+
+    private String tag;
+
+    private transient volatile CompiledTemplate compiled;
+
+    @DataBoundConstructor
+    public TemplateRoutingKeyProvider(@NonNull String template) {
+        this.template = template;
+    }
+
+    /** {@inheritDoc} */
+    @NonNull
+    @Override
+    public String getRoutingKey(final EiffelEvent event) {
+        return getCompiledTemplate().format(event);
+    }
+
+    @NonNull
+    public String getTemplate() {
+        return template;
+    }
+
+    @DataBoundSetter
+    public void setTemplate(@NonNull String template) {
+        this.template = template;
+        this.compiled = null;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    @DataBoundSetter
+    public void setTag(String tag) {
+        this.tag = tag;
+        this.compiled = null;
+    }
+
+    @Override
+    public Descriptor<RoutingKeyProvider> getDescriptor() {
+        return Jenkins.get().getDescriptorByType(TemplateRoutingKeyProviderDescriptor.class);
+    }
+
+    @NonNull
+    private CompiledTemplate getCompiledTemplate() {
+        var result = compiled;
+        if (result == null) {
+            // Racing threads may compile the same template more than once, but that's harmless.
+            try {
+                result = compile(template, this);
+            } catch (IllegalArgumentException e) {
+                logger.error("Invalid routing key template \"{}\", using \"{}\" instead: {}",
+                        template, FALLBACK_TEMPLATE, e.getMessage());
+                result = compile(FALLBACK_TEMPLATE, this);
+            }
+            compiled = result;
+        }
+        return result;
+    }
+
+    /**
+     * Parses a template into a {@link CompiledTemplate}.
+     *
+     * @param template the template string
+     * @param provider the provider whose properties (e.g. the tag) the template's fields are evaluated against
+     * @throws IllegalArgumentException if the template is blank, has unbalanced braces,
+     *                                  or refers to an unknown field
+     */
+    @NonNull
+    static CompiledTemplate compile(@NonNull String template, @NonNull TemplateRoutingKeyProvider provider) {
+        if (StringUtils.isBlank(template)) {
+            throw new IllegalArgumentException("The template must be a non-empty string.");
+        }
+        var segments = new ArrayList<Segment>();
+        var literal = new StringBuilder();
+        int pos = 0;
+        while (pos < template.length()) {
+            char c = template.charAt(pos);
+            if (c == '}') {
+                throw new IllegalArgumentException(String.format(
+                        "Unexpected '}' at position %d of the template.", pos + 1));
+            }
+            if (c != '{') {
+                literal.append(c);
+                pos++;
+                continue;
+            }
+            int end = template.indexOf('}', pos);
+            if (end == -1) {
+                throw new IllegalArgumentException(String.format(
+                        "The '{' at position %d of the template isn't closed.", pos + 1));
+            }
+            var field = Field.forPlaceholder(template.substring(pos + 1, end));
+            if (literal.length() > 0) {
+                segments.add(new Segment(literal.toString(), null));
+                literal.setLength(0);
+            }
+            segments.add(new Segment(null, field));
+            pos = end + 1;
+        }
+        if (literal.length() > 0) {
+            segments.add(new Segment(literal.toString(), null));
+        }
+        return new CompiledTemplate(segments, provider);
+    }
+
+    /** Returns a routing key word for a field value, i.e. a non-empty string without dots. */
+    private static String toWord(String value) {
+        return StringUtils.isBlank(value) ? "_" : value.replace('.', '_');
+    }
+
+    /** The event fields that can be referenced from a template. */
+    enum Field {
+        /** The event type, e.g. EiffelActivityTriggeredEvent. */
+        TYPE("type", true, (event, provider) -> event.getMeta().getType()),
+        /** The version of the event type. */
+        VERSION("version", false, (event, provider) -> event.getMeta().getVersion()),
+        /** The domain id given in the event's meta.source.domainId member. */
+        DOMAIN_ID("domainId", true, (event, provider) -> event.getMeta().getSource().getDomainId()),
+        /** The {@link TemplateRoutingKeyProvider#getTag() tag} configured for the provider. */
+        TAG("tag", true, (event, provider) -> provider.getTag()),
+        /** The first category of an {@link EiffelActivityTriggeredEvent}. */
+        CATEGORY("category", false, (event, provider) -> {
+            if (event instanceof EiffelActivityTriggeredEvent) {
+                var categories = ((EiffelActivityTriggeredEvent) event).getData().getCategories();
+                return categories.isEmpty() ? null : categories.get(0);
+            }
+            return null;
+        }),
+        /** The activity name of an {@link EiffelActivityTriggeredEvent}, i.e. the full name of the job. */
+        JOB("job", false, (event, provider) -> event instanceof EiffelActivityTriggeredEvent
+                ? ((EiffelActivityTriggeredEvent) event).getData().getName()
+                : null),
+        /** The hostname given in the event's meta.source.host member. */
+        HOST("host", false, (event, provider) -> event.getMeta().getSource().getHost());
+
+        private final String placeholder;
+        private final boolean cacheable;
+        private final BiFunction<EiffelEvent, TemplateRoutingKeyProvider, String> extractor;
+
+        Field(String placeholder, boolean cacheable,
+              BiFunction<EiffelEvent, TemplateRoutingKeyProvider, String> extractor) {
+            this.placeholder = placeholder;
+            this.cacheable = cacheable;
+            this.extractor = extractor;
+        }
+
+        static Field forPlaceholder(String placeholder) {
+            for (var field : values()) {
+                if (field.placeholder.equals(placeholder)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException(String.format(
+                    "Unknown field \"%s\" in template. Available fields: %s", placeholder,
+                    Arrays.stream(values()).map(f -> f.placeholder).collect(Collectors.joining(", "))));
+        }
+    }
+
+    /** A piece of a compiled template, i.e. either a literal string or a field reference. */
+    private static final class Segment {
+        private final String literal;
+        private final Field field;
+
+        Segment(String literal, Field field) {
+            this.literal = literal;
+            this.field = field;
+        }
+    }
+
+    /**
+     * A parsed template that can format routing keys without any further parsing. The provider's tag is
+     * treated as a constant; changing it discards the compiled template along with its cache.
+     */
+    static final class CompiledTemplate {
+        private final Segment[] segments;
+        private final TemplateRoutingKeyProvider provider;
+
+        /**
+         * Routing keys keyed by event type and domain id, or null if the template
+         * refers to fields that may vary between events with the same type and domain id.
+         */
+        private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> cache;
+
+        CompiledTemplate(List<Segment> segments, TemplateRoutingKeyProvider provider) {
+            this.segments = segments.toArray(new Segment[0]);
+            this.provider = provider;
+            this.cache = segments.stream().allMatch(s -> s.field == null || s.field.cacheable)
+                    ? new ConcurrentHashMap<>()
+                    : null;
+        }
+
+        boolean isCached() {
+            return cache != null;
+        }
+
+        String format(EiffelEvent event) {
+            if (cache == null) {
+                return render(event);
+            }
+            var domainId = event.getMeta().getSource().getDomainId();
+            var typeCache = cache.computeIfAbsent(event.getMeta().getType(), t -> new ConcurrentHashMap<>());
+            var key = domainId != null ? domainId : NO_DOMAIN_ID;
+            var result = typeCache.get(key);
+            if (result == null) {
+                if (typeCache.size() >= MAX_CACHED_DOMAIN_IDS) {
+                    typeCache.clear();
+                }
+                result = render(event);
+                typeCache.put(key, result);
+            }
+            return result;
+        }
+
+        private String render(EiffelEvent event) {
+            if (segments.length == 1 && segments[0].field == null) {
+                return segments[0].literal;
+            }
+            var sb = new StringBuilder(64);
+            for (var segment : segments) {
+                if (segment.field == null) {
+                    sb.append(segment.literal);
+                } else {
+                    sb.append(toWord(segment.field.extractor.apply(event, provider)));
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Descriptor for {@link TemplateRoutingKeyProvider}. */
+    @Extension
+    public static class TemplateRoutingKeyProviderDescriptor extends RoutingKeyProviderDescriptor {
+        public FormValidation doCheckTemplate(@QueryParameter String value) {
+            try {
+                compile(value, new TemplateRoutingKeyProvider(value));
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckTag(@QueryParameter String value) {
+            if (value.contains(".")) {
+                return FormValidation.error("The tag must not contain any dots since that would "
+                        + "make the resulting routing key ambiguous.");
+            }
+            return FormValidation.ok();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Template";
+        }
+    }
+}
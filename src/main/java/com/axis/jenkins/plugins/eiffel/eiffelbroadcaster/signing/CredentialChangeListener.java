@@ -25,6 +25,7 @@
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing;
 
 import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.CertificateCredentials;
 import hudson.Extension;
 import hudson.XmlFile;
 import hudson.model.Saveable;
@@ -33,9 +34,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Listens to changes in saveable objects and clears the cache of signing keys
- * via {@link SigningKeyCache#clear()} when it's the XML file of
- * the {@link SystemCredentialsProvider} that changed.
+ * Listens to changes in saveable objects and, when it's the XML file of the
+ * {@link SystemCredentialsProvider} that changed, removes the cached signing keys
+ * of the certificate credentials that have been replaced via
+ * {@link SigningKeyCache#invalidateIfChanged(CertificateCredentials)}. The credential
+ * resolved by {@link SystemEventSigner} is also looked up again.
  */
 @Extension
 public class CredentialChangeListener extends SaveableListener {
@@ -46,7 +49,15 @@ public class CredentialChangeListener extends SaveableListener {
         if (!SystemCredentialsProvider.getConfigFile().getFile().equals(file.getFile())) {
             return;
         }
-        logger.info("Credentials changed, clearing cache");
-        SigningKeyCache.getInstance().clear();
+        SystemEventSigner.invalidateCredential();
+        var cache = SigningKeyCache.getInstance();
+        for (var domainCredentials : SystemCredentialsProvider.getInstance().getDomainCredentials()) {
+            for (var cred : domainCredentials.getCredentials()) {
+                if (cred instanceof CertificateCredentials
+                        && cache.invalidateIfChanged((CertificateCredentials) cred)) {
+                    logger.info("Certificate credentials changed, removed their signing key from the cache");
+                }
+            }
+        }
     }
 }
@@ -35,30 +35,67 @@ import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.TemporalAmount;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import jenkins.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A singleton that implements a simple time-based in-memory pull-through cache of event signing keys
  * to avoid decoding keystores and keys every time an event is sent.
  * <p>
- * Even though an item in the cache is only deemed valid for a limited time (see {@link #TTL}),
- * items are currently never evicted from the cache so the cache will grow over time if
+ * Lookups never lock the cache. An item that's about to expire (see {@link #REFRESH_AHEAD}) is refreshed
+ * in the background while the current item keeps being returned, so signing threads only have to
+ * extract a key themselves the first time a credential is used or if it hasn't been used for longer
+ * than {@link #TTL}.
+ * <p>
+ * Items are currently never evicted from the cache so the cache will grow over time if
  * a large number of credential objects are created and referenced by code that signs events.
  */
 public class SigningKeyCache {
+    private static final Logger logger = LoggerFactory.getLogger(SigningKeyCache.class);
+
     /** The maximum time a cached item will be reused without requiring a refresh from the credential. */
     private static final TemporalAmount TTL = Duration.ofMinutes(1);
 
-    private final Map<CertificateCredentials, Item> cache = new HashMap<>();
+    /** The age at which a cached item is refreshed in the background when it's used. */
+    private static final TemporalAmount REFRESH_AHEAD = Duration.ofSeconds(45);
+
+    private final ConcurrentMap<CertificateCredentials, Item> cache = new ConcurrentHashMap<>();
+
+    /** The credentials whose items are currently being refreshed in the background. */
+    private final Set<CertificateCredentials> refreshing = ConcurrentHashMap.newKeySet();
 
-    private SigningKeyCache() { }
+    private final Executor refreshExecutor;
+
+    private SigningKeyCache() {
+        this(Timer.get());
+    }
+
+    SigningKeyCache(@NonNull final Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
 
     /** Clears the cache of all entries. */
-    public synchronized void clear() {
+    public void clear() {
         cache.clear();
     }
 
+    /**
+     * Removes the cached item of a credential if it was extracted from a different instance
+     * of the credential, i.e. if the credential has been replaced since the item was cached.
+     *
+     * @param cred the current instance of the credential
+     * @return true if an item was removed
+     */
+    public boolean invalidateIfChanged(@NonNull final CertificateCredentials cred) {
+        var cachedItem = cache.get(cred);
+        return cachedItem != null && cachedItem.credentials != cred && cache.remove(cred, cachedItem);
+    }
+
     /**
      * Looks up a credential and returns the identity (subject) of the certificate and the private key.
      *
@@ -71,21 +108,52 @@ public class SigningKeyCache {
      * @throws NoSuchAlgorithmException if the algorithm needed to decrypt the key isn't available
      * @throws UnrecoverableKeyException if the key couldn't be decrypted, e.g. because the password is wrong
      */
-    public synchronized @NonNull Item get(@NonNull final CertificateCredentials cred)
+    public @NonNull Item get(@NonNull final CertificateCredentials cred)
             throws InvalidCertificateConfigurationException, KeyStoreException, NoSuchAlgorithmException,
             UnrecoverableKeyException {
         var cachedItem = cache.get(cred);
         if (cachedItem != null && !cachedItem.hasExpired()) {
+            if (cachedItem.isDueForRefresh()) {
+                refreshInBackground(cred, cachedItem);
+            }
             return cachedItem;
         }
 
+        // Concurrent callers may extract the same key at the same time, which is cheaper than making
+        // them wait for each other and only happens when a credential hasn't been used for a while.
         var newCacheItem = new Item(cred);
         cache.put(cred, newCacheItem);
         return newCacheItem;
     }
 
+    /**
+     * Replaces a cached item with a freshly extracted one on the refresh executor, unless a refresh of
+     * the credential is already in progress. The new item isn't stored if the old one has been removed
+     * or replaced in the meantime, e.g. because the credential changed.
+     */
+    private void refreshInBackground(@NonNull final CertificateCredentials cred, @NonNull final Item cachedItem) {
+        if (!refreshing.add(cred)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    cache.replace(cred, cachedItem, new Item(cred));
+                } catch (Exception e) {
+                    // The old item expires soon and the next lookup reports the problem to the caller.
+                    logger.warn("Unable to refresh the signing key from the credential: {}", e.toString());
+                } finally {
+                    refreshing.remove(cred);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(cred);
+            logger.warn("Unable to schedule a refresh of the signing key: {}", e.toString());
+        }
+    }
+
     /** Returns the current number of (possibly expired) items in the cache. */
-    public synchronized int size() {
+    public int size() {
         return cache.size();
     }
 
@@ -94,6 +162,9 @@ public class SigningKeyCache {
      * and the time when the data was extracted from the {@link KeyStore}.
      */
     public static class Item {
+        /** The credential instance that the key and identity were extracted from. */
+        private final CertificateCredentials credentials;
+
         private final String identity;
 
         private final PrivateKey key;
@@ -142,6 +213,7 @@ public class SigningKeyCache {
                 throw new InvalidCertificateConfigurationException(
                         "No X.509 certificate was found in the credential object's keystore.");
             }
+            this.credentials = cred;
             this.identity = identity;
             this.key = key;
         }
@@ -159,6 +231,11 @@ public class SigningKeyCache {
         public boolean hasExpired() {
             return refreshTime.isBefore(Instant.now().minus(TTL));
         }
+
+        /** Returns true if the item is old enough to be refreshed, even though it hasn't expired yet. */
+        public boolean isDueForRefresh() {
+            return refreshTime.isBefore(Instant.now().minus(REFRESH_AHEAD));
+        }
     }
 
     /** Returns the singleton object of this class. */
@@ -38,13 +38,34 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 import java.security.UnrecoverableKeyException;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Signs an {@link EiffelEvent} using a system credential, i.e. a global credential
  * that isn't available to normal builds. Events signed with this class shouldn't be
  * under user control.
+ * <p>
+ * The credential is looked up once and then reused by all instances of this class until the credentials
+ * are changed (see {@link #invalidateCredential()}), a different credential is configured, or a minute has
+ * passed, so that signing doesn't require a scan of all credentials for each event.
  */
 public class SystemEventSigner implements EventSigner {
+    /** How long a resolved credential is reused, for credential providers that don't notify us of changes. */
+    private static final long RESOLVED_CREDENTIAL_TTL = TimeUnit.MINUTES.toNanos(1);
+
+    /** Incremented when the credentials change so that credentials resolved before then aren't reused. */
+    private static final AtomicLong generation = new AtomicLong();
+
+    /** The most recently resolved credential, or null if none has been resolved. */
+    private static volatile ResolvedCredential resolvedCredential;
+
+    /** Makes the next signing look up the credential again. Called when the credentials have changed. */
+    public static void invalidateCredential() {
+        generation.incrementAndGet();
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean sign(@NonNull EiffelEvent event)
@@ -56,16 +77,51 @@ public class SystemEventSigner implements EventSigner {
             return false;
         }
 
+        var cred = resolveCredential(config.getSystemSigningCredentialsId());
+        var sigData = SigningKeyCache.getInstance().get(cred);
+        event.sign(sigData.getKey(), sigData.getIdentity(), config.getSystemSigningHashAlg());
+        return true;
+    }
+
+    @NonNull
+    private static StandardCertificateCredentials resolveCredential(String credentialsId)
+            throws InvalidCertificateConfigurationException {
+        var resolved = resolvedCredential;
+        if (resolved != null && resolved.isValidFor(credentialsId)) {
+            return resolved.credentials;
+        }
+
+        // Read the generation before the lookup so that a change made during the lookup invalidates the result.
+        var currentGeneration = generation.get();
         var cred = CredentialsMatchers.firstOrNull(
                 CredentialsProvider.lookupCredentials(
                         StandardCertificateCredentials.class, (ItemGroup) null, null, List.of()),
-                CredentialsMatchers.allOf(CredentialsMatchers.withId(config.getSystemSigningCredentialsId())));
+                CredentialsMatchers.allOf(CredentialsMatchers.withId(credentialsId)));
         if (cred == null) {
             throw new InvalidCertificateConfigurationException(
-                    String.format("No credentials with the id %s could be found", config.getSystemSigningCredentialsId()));
+                    String.format("No credentials with the id %s could be found", credentialsId));
+        }
+        resolvedCredential = new ResolvedCredential(credentialsId, cred, currentGeneration);
+        return cred;
+    }
+
+    /** A credential that was looked up by its id. */
+    private static final class ResolvedCredential {
+        final String credentialsId;
+        final StandardCertificateCredentials credentials;
+        final long generation;
+        final long resolvedAt = System.nanoTime();
+
+        ResolvedCredential(String credentialsId, StandardCertificateCredentials credentials, long generation) {
+            this.credentialsId = credentialsId;
+            this.credentials = credentials;
+            this.generation = generation;
+        }
+
+        boolean isValidFor(String credentialsId) {
+            return Objects.equals(this.credentialsId, credentialsId)
+                    && generation == SystemEventSigner.generation.get()
+                    && System.nanoTime() - resolvedAt < RESOLVED_CREDENTIAL_TTL;
         }
-        var sigData = SigningKeyCache.getInstance().get(cred);
-        event.sign(sigData.getKey(), sigData.getIdentity(), config.getSystemSigningHashAlg());
-        return true;
     }
 }
@@ -60,6 +60,36 @@ f.section(title: "Eiffel Broadcaster Plugin") {
         f.entry(title: "Persistent Delivery mode", help: l+"help-persistent-delivery.html") {
             f.checkbox(field: "persistentDelivery", checked: instance.persistentDelivery)
         }
+        f.entry(title: "Spool events to disk", help: l+"help-spool-events.html") {
+            f.checkbox(field: "spoolEvents", checked: instance.spoolEvents)
+        }
+        f.entry(title: "Store build events in a separate file", help: l+"help-journal-events.html") {
+            f.checkbox(field: "journalEvents", checked: instance.journalEvents)
+        }
+        f.entry(title: "Index the events sent by builds", help: l+"help-index-events.html") {
+            f.checkbox(field: "indexEvents", checked: instance.indexEvents)
+        }
+        f.entry(title: "Pass events to builds in files", help: l+"help-pass-events-in-files.html") {
+            f.checkbox(field: "passEventsInFiles", checked: instance.passEventsInFiles)
+        }
+        f.entry(title: "Queue overflow policy", field: "overflowPolicy", help: l+"help-overflow-policy.html") {
+            f.enum {
+                raw(my.description)
+            }
+        }
+        f.entry(title: "Validation policy", field: "validationPolicy", help: l+"help-validation-policy.html") {
+            f.enum {
+                raw(my.description)
+            }
+        }
+        f.entry(title: "Validation sample interval", field: "validationSampleInterval",
+                help: l+"help-validation-sample-interval.html") {
+            f.number(value: instance.validationSampleInterval, min: 1, clazz: "positive-number")
+        }
+        f.entry(title: "Validation statistics") {
+            text("${instance.eventValidator.validationCount} events validated, " +
+                    "${instance.eventValidator.skippedValidationCount} skipped since Jenkins started")
+        }
         f.entry(title: "Activity Categories", field: "activityCategories", help: l+"help-activity-categories.html") {
             f.textarea(value: instance.activityCategories)
         }
@@ -0,0 +1,120 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import java.util.List;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class ConfirmTrackerTest {
+    private static ConfirmTracker<String> trackerWith(int count) {
+        var tracker = new ConfirmTracker<String>(8);
+        for (var i = 1; i <= count; i++) {
+            tracker.track(i, "message" + i, 100L * i);
+        }
+        return tracker;
+    }
+
+    @Test
+    public void testConfirm_Single() {
+        var tracker = trackerWith(3);
+        assertThat(tracker.confirm(2, false), is(List.of("message2")));
+        assertThat(tracker.size(), is(2));
+        assertThat(tracker.drain(), is(List.of("message1", "message3")));
+    }
+
+    @Test
+    public void testConfirm_Multiple() {
+        var tracker = trackerWith(4);
+        tracker.confirm(2, false);
+        assertThat(tracker.confirm(3, true), is(List.of("message1", "message3")));
+        assertThat(tracker.getOldestDeadline(), is(400L));
+        assertThat(tracker.drain(), is(List.of("message4")));
+    }
+
+    @Test
+    public void testConfirm_IgnoresUnknownSequenceNumbers() {
+        var tracker = trackerWith(2);
+        assertThat(tracker.confirm(5, true), is(empty()));
+        assertThat(tracker.confirm(1, false), is(List.of("message1")));
+        assertThat(tracker.confirm(1, false), is(empty()));
+        assertThat(tracker.size(), is(1));
+    }
+
+    @Test
+    public void testTrack_WrapsAroundTheRing() {
+        var tracker = new ConfirmTracker<String>(4);
+        for (var i = 1; i <= 20; i++) {
+            tracker.track(i, "message" + i, i);
+            if (i > 2) {
+                assertThat(tracker.confirm(i - 2, false), is(List.of("message" + (i - 2))));
+            }
+        }
+        assertThat(tracker.drain(), is(List.of("message19", "message20")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTrack_RefusesTooManyUnconfirmedMessages() {
+        var tracker = trackerWith(8);
+        tracker.track(9, "message9", 900L);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTrack_RefusesOutOfOrderSequenceNumbers() {
+        var tracker = trackerWith(2);
+        tracker.track(4, "message4", 400L);
+    }
+
+    @Test
+    public void testFail_KeepsMessagesForRepublishing() {
+        var tracker = trackerWith(3);
+        tracker.confirm(1, false);
+        tracker.fail();
+        assertThat(tracker.hasFailed(0L), is(true));
+        assertThat(tracker.drain(), is(List.of("message2", "message3")));
+    }
+
+    @Test
+    public void testHasFailed_AfterDeadlineOrNack() {
+        var tracker = trackerWith(2);
+        assertThat(tracker.hasFailed(99L), is(false));
+        assertThat(tracker.hasFailed(100L), is(true));
+        tracker.confirm(1, false);
+        assertThat(tracker.hasFailed(100L), is(false));
+        tracker.fail();
+        assertThat(tracker.hasFailed(0L), is(true));
+    }
+
+    @Test
+    public void testGetOldestDeadline_WhenEmpty() {
+        var tracker = trackerWith(1);
+        tracker.confirm(1, false);
+        assertThat(tracker.getOldestDeadline(), is(Long.MAX_VALUE));
+        assertThat(tracker.hasFailed(Long.MAX_VALUE - 1), is(false));
+    }
+}
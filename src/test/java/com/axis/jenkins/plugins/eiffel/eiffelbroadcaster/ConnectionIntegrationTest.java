@@ -26,13 +26,16 @@ package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing.SystemEventSigner;
+import com.rabbitmq.client.AMQP;
 import eu.rekawek.toxiproxy.model.ToxicDirection;
 import eu.rekawek.toxiproxy.model.toxic.Timeout;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Rule;
@@ -178,6 +181,84 @@ public class ConnectionIntegrationTest {
         assertThat(actualMessageHashes, containsInAnyOrder(expectedMessageHashes.toArray()));
     }
 
+    /**
+     * Test that a burst of events from many threads gets through the batching publisher
+     * in its entirety, and log the achieved end-to-end throughput.
+     */
+    @Test
+    public void testBatchedPublishingThroughput() throws InterruptedException, IOException {
+        var conn = MQConnection.getInstance();
+        var batchSize = 2500;
+        var threadCount = 8;
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < threadCount; i++) {
+            var batch = TestUtil.createEvents(batchSize);
+            threads.add(new Thread(() -> batch.forEach(this::publishSilently)));
+        }
+        var startTime = System.nanoTime();
+        threads.forEach(Thread::start);
+        var actualMessages = TestUtil.waitForMessages(
+                conn,
+                batchSize * threadCount,
+                DEFAULT_MESSAGE_WAIT,
+                TestUtil.QUEUE_NAME
+        );
+        var elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        LOGGER.info("Published {} events in {} ms ({} events/s)", actualMessages.size(), elapsedMillis,
+                actualMessages.size() * 1000L / elapsedMillis);
+        assertThat(actualMessages.size(), is(batchSize * threadCount));
+    }
+
+    /**
+     * Test that messages to an exchange that doesn't exist are dropped instead of
+     * holding up the messages that are published after them.
+     */
+    @Test
+    public void testMissingExchangeDoesNotBlockLaterMessages() throws InterruptedException, IOException {
+        var conn = MQConnection.getInstance();
+        var props = new AMQP.BasicProperties.Builder().contentType("application/json").build();
+        // Messages without an ordering key are spread over all publishers.
+        for (var i = 0; i < 16; i++) {
+            conn.addMessageToQueue("no-such-exchange", TestUtil.QUEUE_NAME, props,
+                    "{}".getBytes(StandardCharsets.UTF_8));
+        }
+        var messageCount = 100;
+        var expectedMessages = TestUtil.createEvents(messageCount);
+        expectedMessages.forEach(this::publishSilently);
+        var actualMessages = TestUtil.waitForMessages(
+                conn,
+                messageCount,
+                DEFAULT_MESSAGE_WAIT,
+                TestUtil.QUEUE_NAME
+        );
+        assertThat(actualMessages, containsInAnyOrder(expectedMessages.toArray()));
+    }
+
+    /**
+     * Test that events published while the configured exchange doesn't exist are dropped
+     * once its validation fails, instead of being retried ahead of the events that are
+     * published after the configuration has been corrected.
+     */
+    @Test
+    public void testFailedExchangeValidationDoesNotBlockLaterMessages() throws InterruptedException, IOException {
+        var config = EiffelBroadcasterConfig.getInstance();
+        config.setExchangeName("no-such-exchange");
+        TestUtil.createEvents(50).forEach(this::publishSilently);
+        config.setExchangeName(TestUtil.EXCHANGE);
+
+        var conn = MQConnection.getInstance();
+        var messageCount = 50;
+        var expectedMessages = TestUtil.createEvents(messageCount);
+        expectedMessages.forEach(this::publishSilently);
+        var actualMessages = TestUtil.waitForMessages(
+                conn,
+                messageCount,
+                DEFAULT_MESSAGE_WAIT,
+                TestUtil.QUEUE_NAME
+        );
+        assertThat(actualMessages, containsInAnyOrder(expectedMessages.toArray()));
+    }
+
     /**
      * Test that the publisher receives ACKs.
      */
@@ -0,0 +1,84 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityStartedEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEventFactory;
+import hudson.util.XStream2;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class EiffelActivityActionTest {
+    private static EiffelActivityTriggeredEvent createActT() {
+        var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+        event.getData().setName("activity name");
+        return event;
+    }
+
+    @Test
+    public void testHeadersMatchEvents() throws Exception {
+        var actT = createActT();
+        var action = new EiffelActivityAction(actT);
+        assertThat(action.getTriggerEventId(), is(actT.getMeta().getId()));
+        assertThat(action.getTriggerEventHeader().getType(), is(actT.getMeta().getType()));
+        assertThat(action.getTriggerEventHeader().getTime(), is(actT.getMeta().getTime()));
+        assertThat(action.getStartedEventHeader(), is(nullValue()));
+
+        var actS = EiffelEventFactory.getInstance().create(EiffelActivityStartedEvent.class);
+        action.setStartedEvent(actS);
+        assertThat(action.getStartedEventHeader().getId(), is(actS.getMeta().getId()));
+    }
+
+    @Test
+    public void testParsedEventIsReused() throws Exception {
+        var action = new EiffelActivityAction(createActT());
+        assertThat(action.getSharedTriggerEvent(), sameInstance(action.getSharedTriggerEvent()));
+    }
+
+    @Test
+    public void testPublicGettersReturnCopies() throws Exception {
+        var action = new EiffelActivityAction(createActT());
+        action.setStartedEvent(EiffelEventFactory.getInstance().create(EiffelActivityStartedEvent.class));
+        assertThat(action.getTriggerEvent(), not(sameInstance(action.getSharedTriggerEvent())));
+        assertThat(action.getStartedEvent(), not(sameInstance(action.getSharedStartedEvent())));
+        action.getTriggerEvent().getData().setName("modified");
+        assertThat(action.getSharedTriggerEvent().getData().getName(), is("activity name"));
+    }
+
+    @Test
+    public void testHeaderOfActionFromOlderVersion() throws Exception {
+        var actT = createActT();
+        var xstream = new XStream2();
+        var xml = xstream.toXML(new EiffelActivityAction(actT))
+                .replaceAll("(?s)<triggerEventHeader>.*</triggerEventHeader>", "");
+        var action = (EiffelActivityAction) xstream.fromXML(xml);
+        assertThat(action.getTriggerEventId(), is(actT.getMeta().getId()));
+    }
+}
@@ -27,6 +27,10 @@ package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import hudson.model.Result;
+import hudson.model.TaskListener;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -37,8 +41,10 @@ import org.jvnet.hudson.test.CaptureEnvironmentBuilder;
 import org.jvnet.hudson.test.JenkinsRule;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 
 public class EiffelEnvironmentContributorTest {
     @Rule
@@ -91,4 +97,72 @@ public class EiffelEnvironmentContributorTest {
         jenkins.assertLogContains(String.format("STARTED=%s", activityAction.getStartedEventJSON()), run);
         jenkins.assertLogContains(String.format("TRIGGER=%s", activityAction.getTriggerEventJSON()), run);
     }
+
+    @Test
+    public void testEventFilesAreAvailable_FreeStyle() throws Exception {
+        EiffelBroadcasterConfig.getInstance().setPassEventsInFiles(true);
+        var job = jenkins.createFreeStyleProject("test");
+        var capture = new CaptureEnvironmentBuilder();
+        job.getBuildersList().add(capture);
+        jenkins.assertBuildStatus(Result.SUCCESS, job.scheduleBuild2(0));
+
+        var run = job.getBuildByNumber(1);
+        var activityAction = run.getAction(EiffelActivityAction.class);
+        var envVars = capture.getEnvVars();
+        assertThat(envVars.get(EiffelEnvironmentContributor.ACTIVITY_TRIGGERED), is(nullValue()));
+        assertThat(envVars.get(EiffelEnvironmentContributor.ACTIVITY_TRIGGERED_ID),
+                is(activityAction.getTriggerEventId().toString()));
+        assertThat(envVars.get(EiffelEnvironmentContributor.ACTIVITY_STARTED_ID),
+                is(activityAction.getStartedEventHeader().getId().toString()));
+        assertThat(Files.readString(Path.of(envVars.get(EiffelEnvironmentContributor.ACTIVITY_TRIGGERED_FILE))),
+                is(activityAction.getTriggerEventJSON()));
+        assertThat(Files.readString(Path.of(envVars.get(EiffelEnvironmentContributor.ACTIVITY_STARTED_FILE))),
+                is(activityAction.getStartedEventJSON()));
+    }
+
+    @Test
+    public void testEventFilesAreNotWrittenForCompletedBuilds() throws Exception {
+        EiffelBroadcasterConfig.getInstance().setPassEventsInFiles(true);
+        var job = jenkins.createFreeStyleProject("test");
+        var capture = new CaptureEnvironmentBuilder();
+        job.getBuildersList().add(capture);
+        jenkins.assertBuildStatus(Result.SUCCESS, job.scheduleBuild2(0));
+
+        // The workspace of a completed build may be in use by another build, so its files must be left alone.
+        var run = job.getBuildByNumber(1);
+        var triggerFile = Path.of(capture.getEnvVars().get(EiffelEnvironmentContributor.ACTIVITY_TRIGGERED_FILE));
+        assertThat(triggerFile.getFileName().toString(),
+                containsString(run.getAction(EiffelActivityAction.class).getTriggerEventId().toString()));
+        Files.delete(triggerFile);
+        var envVars = run.getEnvironment(TaskListener.NULL);
+        assertThat(envVars.get(EiffelEnvironmentContributor.ACTIVITY_TRIGGERED_FILE), is(nullValue()));
+        assertThat(Files.exists(triggerFile), is(false));
+    }
+
+    @Test
+    public void testEventFilesAreAvailable_Pipeline() throws Exception {
+        EiffelBroadcasterConfig.getInstance().setPassEventsInFiles(true);
+        var job = jenkins.createProject(WorkflowJob.class, "test");
+        var pipelineCode = String.format(
+                "node {" +
+                        "  if (isUnix()) {" +
+                        "    sh('echo FILE=$%s ; echo JSON=$%s')" +
+                        "  } else {" +
+                        "    bat('@echo FILE=%%%s%% & @echo JSON=%%%s%%')" +
+                        "  }" +
+                        "}",
+                EiffelEnvironmentContributor.ACTIVITY_TRIGGERED_FILE,
+                EiffelEnvironmentContributor.ACTIVITY_TRIGGERED,
+                EiffelEnvironmentContributor.ACTIVITY_TRIGGERED_FILE,
+                EiffelEnvironmentContributor.ACTIVITY_TRIGGERED);
+        job.setDefinition(new CpsFlowDefinition(pipelineCode, true));
+        jenkins.assertBuildStatus(Result.SUCCESS, job.scheduleBuild2(0));
+
+        var run = job.getBuildByNumber(1);
+        var activityAction = run.getAction(EiffelActivityAction.class);
+        jenkins.assertLogNotContains(String.format("JSON=%s", activityAction.getTriggerEventJSON()), run);
+        var matcher = Pattern.compile("^FILE=(.+)$", Pattern.MULTILINE).matcher(JenkinsRule.getLog(run));
+        assertThat(matcher.find(), is(true));
+        assertThat(Files.readString(Path.of(matcher.group(1).trim())), is(activityAction.getTriggerEventJSON()));
+    }
 }
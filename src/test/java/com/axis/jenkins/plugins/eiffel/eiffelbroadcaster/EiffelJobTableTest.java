@@ -0,0 +1,176 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class EiffelJobTableTest {
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(1234567890000L);
+
+    private EiffelJobTable openTable;
+
+    private File journalFile() {
+        return new File(tempFolder.getRoot(), EiffelJobTable.JOURNAL_FILE);
+    }
+
+    private EiffelJobTable open(int maxEntries) {
+        closeTable();
+        openTable = new EiffelJobTable(journalFile(), maxEntries, TTL, clock::get);
+        return openTable;
+    }
+
+    @After
+    public void closeTable() {
+        if (openTable != null) {
+            openTable.close();
+        }
+    }
+
+    @Test
+    public void testGetAndClearEventTrigger_RemovesEntry() {
+        var table = open(10);
+        var id = UUID.randomUUID();
+        table.setEventTrigger(1L, id);
+        assertThat(table.getEventTrigger(1L), is(id));
+        assertThat(table.getAndClearEventTrigger(1L), is(id));
+        assertThat(table.getEventTrigger(1L), is(nullValue()));
+        assertThat(table.getAndClearEventTrigger(1L), is(nullValue()));
+    }
+
+    @Test
+    public void testEntriesSurviveReload() {
+        var table = open(10);
+        var first = UUID.randomUUID();
+        var second = UUID.randomUUID();
+        table.setEventTrigger(1L, first);
+        table.setEventTrigger(2L, second);
+        table.setEventTrigger(3L, UUID.randomUUID());
+        table.getAndClearEventTrigger(3L);
+
+        table = open(10);
+        assertThat(table.size(), is(2));
+        assertThat(table.getEventTrigger(1L), is(first));
+        assertThat(table.getEventTrigger(2L), is(second));
+        assertThat(table.getEventTrigger(3L), is(nullValue()));
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        var table = open(10);
+        table.setEventTrigger(1L, UUID.randomUUID());
+        clock.addAndGet(TTL);
+        assertThat(table.getEventTrigger(1L), is(nullValue()));
+        assertThat(open(10).size(), is(0));
+    }
+
+    @Test
+    public void testOldestEntryIsEvictedWhenFull() {
+        var table = open(3);
+        for (var queueId = 1L; queueId <= 4L; queueId++) {
+            clock.incrementAndGet();
+            table.setEventTrigger(queueId, UUID.randomUUID());
+        }
+        assertThat(table.size(), is(3));
+        assertThat(table.getEventTrigger(1L), is(nullValue()));
+        assertThat(table.getEventTrigger(4L), is(notNullValue()));
+    }
+
+    @Test
+    public void testReplacedEntryIsEvictedByItsNewAge() {
+        var table = open(3);
+        var id = UUID.randomUUID();
+        table.setEventTrigger(1L, UUID.randomUUID());
+        clock.incrementAndGet();
+        table.setEventTrigger(2L, UUID.randomUUID());
+        clock.incrementAndGet();
+        table.setEventTrigger(1L, id);
+        clock.incrementAndGet();
+        table.setEventTrigger(3L, UUID.randomUUID());
+        clock.incrementAndGet();
+        table.setEventTrigger(4L, UUID.randomUUID());
+        assertThat(table.size(), is(3));
+        assertThat(table.getEventTrigger(1L), is(id));
+        assertThat(table.getEventTrigger(2L), is(nullValue()));
+    }
+
+    @Test
+    public void testOldEntrySurvivesManyNewerEntries() {
+        var table = open(10);
+        var id = UUID.randomUUID();
+        table.setEventTrigger(0L, id);
+        for (var queueId = 1L; queueId < 10000L; queueId++) {
+            table.setEventTrigger(queueId, UUID.randomUUID());
+            table.getAndClearEventTrigger(queueId);
+        }
+        assertThat(table.getEventTrigger(0L), is(id));
+        assertThat(open(10).getEventTrigger(0L), is(id));
+    }
+
+    @Test
+    public void testJournalIsCompacted() {
+        var table = open(10);
+        for (var queueId = 0L; queueId < 10000L; queueId++) {
+            table.setEventTrigger(queueId, UUID.randomUUID());
+            table.getAndClearEventTrigger(queueId);
+        }
+        table.flush();
+        assertThat(journalFile().length(), is(lessThan(10000L * 33)));
+        assertThat(open(10).size(), is(0));
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        var table = open(10);
+        var id = UUID.randomUUID();
+        table.setEventTrigger(1L, id);
+        table.close();
+        try (var out = new FileOutputStream(journalFile(), true)) {
+            out.write(new byte[] {1, 0, 0, 0});
+        }
+        table = open(10);
+        assertThat(table.getEventTrigger(1L), is(id));
+        table.setEventTrigger(2L, UUID.randomUUID());
+        assertThat(open(10).size(), is(2));
+    }
+}
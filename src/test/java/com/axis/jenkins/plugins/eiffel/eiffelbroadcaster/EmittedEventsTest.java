@@ -39,6 +39,7 @@ import hudson.model.Result;
 import hudson.tasks.BuildTrigger;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.junit.Before;
@@ -156,6 +157,7 @@ public class EmittedEventsTest {
         // But our goal is just to cancel it so we might as well clear the whole queue.
         job.scheduleBuild2(0);
         jenkins.jenkins.getQueue().clear();
+        assertThat(ActivityEventExecutor.getInstance().flush(10, TimeUnit.SECONDS), is(true));
 
         var events = new EventSet(Mocks.messages);
 
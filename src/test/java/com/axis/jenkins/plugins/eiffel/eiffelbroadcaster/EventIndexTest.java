@@ -0,0 +1,141 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class EventIndexTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private EventIndex openIndex;
+
+    private EventIndex open() throws Exception {
+        closeIndex();
+        openIndex = new EventIndex(tempFolder.getRoot());
+        return openIndex;
+    }
+
+    @After
+    public void closeIndex() throws Exception {
+        if (openIndex != null) {
+            openIndex.close();
+            openIndex = null;
+        }
+    }
+
+    private static List<String> describe(List<EventIndex.Link> links) {
+        return links.stream().map(EventIndex.Link::toString).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testGet_ReturnsEventsSentByBuilds() throws Exception {
+        var index = open();
+        var actT = UUID.randomUUID();
+        var sourceChange = UUID.randomUUID();
+        index.add(actT, "EiffelActivityTriggeredEvent", "folder/job", 42,
+                List.of(new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE, sourceChange)));
+
+        var entry = index.get(actT);
+        assertThat(entry.getEventType(), is("EiffelActivityTriggeredEvent"));
+        assertThat(entry.getJobName(), is("folder/job"));
+        assertThat(entry.getBuildNumber(), is(42));
+        // The link target is known, but not as an event sent by a build.
+        assertThat(index.contains(sourceChange), is(true));
+        assertThat(index.get(sourceChange), is(nullValue()));
+        assertThat(index.get(UUID.randomUUID()), is(nullValue()));
+    }
+
+    @Test
+    public void testLinksAreIndexedInBothDirections() throws Exception {
+        var index = open();
+        var sourceChange = UUID.randomUUID();
+        var actT1 = UUID.randomUUID();
+        var actT2 = UUID.randomUUID();
+        var actS = UUID.randomUUID();
+        index.add(actT1, "EiffelActivityTriggeredEvent", "job", 1,
+                List.of(new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE, sourceChange)));
+        index.add(actT2, "EiffelActivityTriggeredEvent", "job", 2,
+                List.of(new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE, sourceChange)));
+        index.add(actS, "EiffelActivityStartedEvent", "job", 2,
+                List.of(new EiffelEvent.Link(EiffelEvent.Link.Type.ACTIVITY_EXECUTION, actT2)));
+
+        assertThat(describe(index.getDownstream(sourceChange)), contains("CAUSE:" + actT1, "CAUSE:" + actT2));
+        assertThat(describe(index.getDownstream(sourceChange, 1)), contains("CAUSE:" + actT2));
+        assertThat(describe(index.getUpstream(actS)), contains("ACTIVITY_EXECUTION:" + actT2));
+        assertThat(describe(index.getDownstream(actT2)), contains("ACTIVITY_EXECUTION:" + actS));
+        assertThat(index.getUpstream(sourceChange), is(empty()));
+    }
+
+    @Test
+    public void testEventsSurviveGrowthAndReopening() throws Exception {
+        var index = open();
+        var ids = new ArrayList<UUID>();
+        // Enough events to make the table grow at least once.
+        for (var i = 0; i < 100000; i++) {
+            var id = UUID.randomUUID();
+            var links = ids.isEmpty()
+                    ? List.<EiffelEvent.Link>of()
+                    : List.of(new EiffelEvent.Link(EiffelEvent.Link.Type.CONTEXT, ids.get(ids.size() - 1)));
+            index.add(id, "EiffelArtifactCreatedEvent", "job", i, links);
+            ids.add(id);
+        }
+
+        index = open();
+        assertThat(index.size(), is(ids.size()));
+        for (var i = 0; i < ids.size(); i++) {
+            assertThat(index.get(ids.get(i)).getBuildNumber(), is(i));
+        }
+        assertThat(describe(index.getUpstream(ids.get(1))), contains("CONTEXT:" + ids.get(0)));
+        assertThat(describe(index.getDownstream(ids.get(0))), contains("CONTEXT:" + ids.get(1)));
+    }
+
+    @Test
+    public void testAddingAnEventTwiceIsIgnored() throws Exception {
+        var index = open();
+        var id = UUID.randomUUID();
+        var target = UUID.randomUUID();
+        var links = List.of(new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE, target));
+        index.add(id, "EiffelActivityTriggeredEvent", "job", 1, links);
+        index.add(id, "EiffelActivityTriggeredEvent", "other-job", 2, links);
+
+        assertThat(index.get(id).getJobName(), is("job"));
+        assertThat(index.getUpstream(id).size(), is(1));
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityStartedEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactCreatedEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEventFactory;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class EventJournalTest {
+    private static final String ACTS = EiffelActivityStartedEvent.class.getSimpleName();
+    private static final String ACTT = EiffelActivityTriggeredEvent.class.getSimpleName();
+    private static final String ARTC = EiffelArtifactCreatedEvent.class.getSimpleName();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File journalFile() {
+        return new File(tempFolder.getRoot(), EventJournal.FILE_NAME);
+    }
+
+    private static String createEventJSON(Class<? extends EiffelEvent> type) throws Exception {
+        return EiffelEventFactory.getInstance().create(type).toJSON();
+    }
+
+    @Test
+    public void testEvents_ReturnsEventsOfTypeInOrder() throws Exception {
+        var journal = new EventJournal(journalFile());
+        var actT = createEventJSON(EiffelActivityTriggeredEvent.class);
+        var artC1 = createEventJSON(EiffelArtifactCreatedEvent.class);
+        var artC2 = createEventJSON(EiffelArtifactCreatedEvent.class);
+        journal.append(artC1);
+        journal.append(actT);
+        journal.append(artC2);
+
+        try (var events = journal.events(ARTC)) {
+            assertThat(events.collect(Collectors.toList()), contains(artC1, artC2));
+        }
+        try (var events = journal.events(ACTT)) {
+            assertThat(events.collect(Collectors.toList()), contains(actT));
+        }
+    }
+
+    @Test
+    public void testEvents_EmptyWithoutJournal() throws Exception {
+        var journal = new EventJournal(journalFile());
+        assertThat(journal.exists(), is(false));
+        try (var events = journal.events(ARTC)) {
+            assertThat(events.collect(Collectors.toList()), is(empty()));
+        }
+        assertThat(journal.firstEvents(Set.of(ACTT)), is(Map.of()));
+    }
+
+    @Test
+    public void testFirstEvents_ReturnsFirstEventOfEachType() throws Exception {
+        var journal = new EventJournal(journalFile());
+        var actT = createEventJSON(EiffelActivityTriggeredEvent.class);
+        var actS1 = createEventJSON(EiffelActivityStartedEvent.class);
+        var actS2 = createEventJSON(EiffelActivityStartedEvent.class);
+        journal.append(actT);
+        journal.append(actS1);
+        journal.append(actS2);
+
+        assertThat(journal.firstEvents(Set.of(ACTS, ACTT)), is(Map.of(ACTS, actS1, ACTT, actT)));
+    }
+
+    @Test
+    public void testEvents_SkipsTornLastLine() throws Exception {
+        var journal = new EventJournal(journalFile());
+        var artC = createEventJSON(EiffelArtifactCreatedEvent.class);
+        journal.append(artC);
+        var torn = createEventJSON(EiffelArtifactCreatedEvent.class);
+        Files.write(journalFile().toPath(), torn.substring(0, torn.length() / 2).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (var events = journal.events(ARTC)) {
+            assertThat(events.collect(Collectors.toList()), contains(artC));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAppend_RejectsMultipleLines() throws Exception {
+        new EventJournal(journalFile()).append("{\n}");
+    }
+}
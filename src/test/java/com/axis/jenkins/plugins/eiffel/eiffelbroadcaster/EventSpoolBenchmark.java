@@ -0,0 +1,155 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.rabbitmq.client.AMQP;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of appending a message to the {@link EventSpool}, and how fast
+ * a spool full of unconfirmed messages is replayed after a restart.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventSpoolBenchmark {
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int MESSAGE_SIZE = 1024;
+    private static final int REPLAYED_MESSAGES = 100000;
+    private static final int READ_BATCH_SIZE = 100;
+
+    private static AMQP.BasicProperties props() {
+        return new AMQP.BasicProperties.Builder()
+                .appId("benchmark")
+                .contentType("application/json")
+                .deliveryMode(2)
+                .timestamp(new Date())
+                .build();
+    }
+
+    private static byte[] body() {
+        var body = new byte[MESSAGE_SIZE];
+        Arrays.fill(body, (byte) 'x');
+        return body;
+    }
+
+    @State(Scope.Thread)
+    public static class AppendState {
+        private static final int ACKNOWLEDGE_INTERVAL = 10000;
+
+        File directory;
+        EventSpool spool;
+        AMQP.BasicProperties props = props();
+        byte[] body = body();
+        int appended;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("spool").toFile();
+            spool = EventSpool.open(directory, SEGMENT_SIZE, Integer.MAX_VALUE);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            spool.close();
+            FileUtils.deleteDirectory(directory);
+        }
+
+        /**
+         * Consumes the spool every now and then so that the disk usage stays bounded.
+         * The cost is amortized over the appends, like it is when the spool is in use.
+         */
+        void consumeIfNeeded() throws InterruptedException {
+            if (++appended % ACKNOWLEDGE_INTERVAL != 0) {
+                return;
+            }
+            for (var entries = spool.read(READ_BATCH_SIZE, 0, TimeUnit.MILLISECONDS); !entries.isEmpty();
+                 entries = spool.read(READ_BATCH_SIZE, 0, TimeUnit.MILLISECONDS)) {
+                entries.forEach(entry -> spool.acknowledge(entry.getPosition()));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ReplayState {
+        File directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("spool").toFile();
+            var spool = EventSpool.open(directory, SEGMENT_SIZE, Integer.MAX_VALUE);
+            var props = props();
+            var body = body();
+            for (var i = 0; i < REPLAYED_MESSAGES; i++) {
+                spool.append(Integer.toString(i), "exchange", "routing.key", props, body);
+            }
+            spool.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Benchmark
+    public boolean append(AppendState state) throws IOException, InterruptedException {
+        var appended = state.spool.append("key", "exchange", "routing.key", state.props, state.body);
+        state.consumeIfNeeded();
+        return appended;
+    }
+
+    /**
+     * Opens a spool with {@link #REPLAYED_MESSAGES} unconfirmed messages and reads all of them.
+     * Nothing is acknowledged, so every invocation replays the same messages.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void replay(ReplayState state, Blackhole blackhole) throws IOException, InterruptedException {
+        try (var spool = EventSpool.open(state.directory, SEGMENT_SIZE, Integer.MAX_VALUE)) {
+            for (var entries = spool.read(READ_BATCH_SIZE, 0, TimeUnit.MILLISECONDS); !entries.isEmpty();
+                 entries = spool.read(READ_BATCH_SIZE, 0, TimeUnit.MILLISECONDS)) {
+                blackhole.consume(entries);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import com.rabbitmq.client.AMQP;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class EventSpoolTest {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static AMQP.BasicProperties props() {
+        return new AMQP.BasicProperties.Builder()
+                .appId("app")
+                .contentType("application/json")
+                .deliveryMode(2)
+                .timestamp(new Date(1234567890000L))
+                .build();
+    }
+
+    private static void append(EventSpool spool, String body) throws IOException {
+        assertThat(spool.append("key", "exchange", "routing.key", props(), body.getBytes(StandardCharsets.UTF_8)),
+                is(true));
+    }
+
+    private static List<String> bodies(List<EventSpool.Entry> entries) {
+        return entries.stream()
+                .map(entry -> new String(entry.getBody(), StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+    }
+
+    private static int segmentCount(File directory) {
+        return directory.listFiles((dir, name) -> name.endsWith(".seg")).length;
+    }
+
+    @Test
+    public void testRead_ReturnsAppendedMessagesInOrder() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        append(spool, "first");
+        append(spool, "second");
+        var entries = spool.read(10, 0, TimeUnit.MILLISECONDS);
+        assertThat(bodies(entries), is(List.of("first", "second")));
+
+        var entry = entries.get(0);
+        assertThat(entry.getOrderingKey(), is("key"));
+        assertThat(entry.getExchange(), is("exchange"));
+        assertThat(entry.getRoutingKey(), is("routing.key"));
+        assertThat(entry.getProps().getAppId(), is("app"));
+        assertThat(entry.getProps().getContentType(), is("application/json"));
+        assertThat(entry.getProps().getDeliveryMode(), is(2));
+        assertThat(entry.getProps().getTimestamp(), is(new Date(1234567890000L)));
+        assertThat(spool.read(10, 0, TimeUnit.MILLISECONDS), is(empty()));
+    }
+
+    @Test
+    public void testOpen_ReplaysUnacknowledgedMessages() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        append(spool, "first");
+        append(spool, "second");
+        append(spool, "third");
+        var entries = spool.read(10, 0, TimeUnit.MILLISECONDS);
+        spool.acknowledge(entries.get(0).getPosition());
+        spool.acknowledge(entries.get(2).getPosition());
+        spool.close();
+
+        // Everything from the oldest unacknowledged message onwards is replayed.
+        var reopened = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        assertThat(bodies(reopened.read(10, 0, TimeUnit.MILLISECONDS)), is(List.of("second", "third")));
+    }
+
+    @Test
+    public void testOpen_DiscardsTornRecord() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        append(spool, "first");
+        append(spool, "second");
+        spool.close();
+
+        // Corrupt the payload of the second record, as if the process had died while writing it.
+        var segment = tempFolder.getRoot().listFiles((dir, name) -> name.endsWith(".seg"))[0];
+        try (var file = new RandomAccessFile(segment, "rw")) {
+            var content = new byte[(int) file.length()];
+            file.readFully(content);
+            var text = new String(content, StandardCharsets.ISO_8859_1);
+            file.seek(text.indexOf("second"));
+            file.write("garbage".getBytes(StandardCharsets.UTF_8));
+        }
+
+        var reopened = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        assertThat(bodies(reopened.read(10, 0, TimeUnit.MILLISECONDS)), is(List.of("first")));
+        append(reopened, "third");
+        assertThat(bodies(reopened.read(10, 0, TimeUnit.MILLISECONDS)), is(List.of("third")));
+    }
+
+    @Test
+    public void testAcknowledge_DeletesConsumedSegments() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        var body = "x".repeat(1000);
+        for (var i = 0; i < 12; i++) {
+            append(spool, body);
+        }
+        assertThat(segmentCount(tempFolder.getRoot()), is(4));
+        for (var entry : spool.read(100, 0, TimeUnit.MILLISECONDS)) {
+            spool.acknowledge(entry.getPosition());
+        }
+        assertThat(spool.isDrained(), is(true));
+        assertThat(segmentCount(tempFolder.getRoot()), is(1));
+    }
+
+    @Test
+    public void testClose_DeletesSegmentsOfDrainedSpool() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        append(spool, "first");
+        spool.acknowledge(spool.read(10, 0, TimeUnit.MILLISECONDS).get(0).getPosition());
+        spool.close();
+        assertThat(segmentCount(tempFolder.getRoot()), is(0));
+        assertThat(EventSpool.exists(tempFolder.getRoot()), is(false));
+
+        var reopened = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        append(reopened, "second");
+        assertThat(bodies(reopened.read(10, 0, TimeUnit.MILLISECONDS)), is(List.of("second")));
+    }
+
+    @Test
+    public void testClose_KeepsSegmentsWithUnacknowledgedMessages() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        append(spool, "first");
+        spool.read(10, 0, TimeUnit.MILLISECONDS);
+        spool.close();
+        assertThat(EventSpool.exists(tempFolder.getRoot()), is(true));
+    }
+
+    @Test
+    public void testOpen_DeletesConsumedSegmentsThatWereLeftBehind() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        var body = "x".repeat(1000);
+        for (var i = 0; i < 6; i++) {
+            append(spool, body);
+        }
+        for (var entry : spool.read(100, 0, TimeUnit.MILLISECONDS)) {
+            spool.acknowledge(entry.getPosition());
+        }
+        // As if the first segment couldn't be deleted, and the process then died without closing the spool.
+        Files.write(new File(tempFolder.getRoot(), String.format("%020d.seg", 0)).toPath(), new byte[SEGMENT_SIZE]);
+        assertThat(segmentCount(tempFolder.getRoot()), is(2));
+
+        var reopened = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        assertThat(segmentCount(tempFolder.getRoot()), is(1));
+        assertThat(reopened.read(10, 0, TimeUnit.MILLISECONDS), is(empty()));
+    }
+
+    @Test
+    public void testAppend_RefusesMessagesWhenFull() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 2);
+        var body = "x".repeat(1000);
+        var appended = 0;
+        while (spool.append(null, "exchange", "routing.key", props(), body.getBytes(StandardCharsets.UTF_8))) {
+            appended++;
+        }
+        assertThat(appended * 1000, lessThanOrEqualTo(2 * SEGMENT_SIZE));
+        assertThat(bodies(spool.read(100, 0, TimeUnit.MILLISECONDS)).size(), is(appended));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAppend_RejectsMessagesLargerThanASegment() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        spool.append(null, "exchange", "routing.key", props(), new byte[SEGMENT_SIZE]);
+    }
+
+    @Test(timeout = 10000)
+    public void testRead_ReturnsEarlyWhenSpoolBecomesDrained() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        append(spool, "first");
+        var entries = spool.read(10, 0, TimeUnit.MILLISECONDS);
+        spool.acknowledge(entries.get(0).getPosition());
+        assertThat(spool.isDrained(), is(true));
+        assertThat(spool.read(10, Long.MAX_VALUE, TimeUnit.NANOSECONDS), is(empty()));
+    }
+
+    @Test(timeout = 10000)
+    public void testWakeUp_ReleasesWaitingReader() throws Exception {
+        var spool = EventSpool.open(tempFolder.getRoot(), SEGMENT_SIZE, 10);
+        var waker = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            spool.wakeUp();
+        });
+        waker.start();
+        assertThat(spool.read(10, Long.MAX_VALUE, TimeUnit.NANOSECONDS), is(empty()));
+        waker.join();
+    }
+}
@@ -41,6 +41,9 @@ public final class Mocks {
     /** Stores received messages. */
     public static final List<String> messages = new CopyOnWriteArrayList<>();
 
+    /** If true, the mocked queue behaves as if it was full and drops all messages. */
+    public static volatile boolean queueFull = false;
+
     // Private constructor to avoid unnecessary instantiation of the class
     private Mocks() { }
 
@@ -49,8 +52,13 @@ public final class Mocks {
      * */
     public static final class RabbitMQConnectionMock extends MockUp<MQConnection> {
         @Mock
-        public void addMessageToQueue(String exchangeName, String routingKey, AMQP.BasicProperties props, byte[] body) {
+        public boolean addMessageToQueue(String exchangeName, String routingKey, AMQP.BasicProperties props,
+                                         byte[] body, String orderingKey, OverflowPolicy overflowPolicy) {
+            if (queueFull) {
+                return false;
+            }
             messages.add(new String(body));
+            return true;
         }
     }
 }
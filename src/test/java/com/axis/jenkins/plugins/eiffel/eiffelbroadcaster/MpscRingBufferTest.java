@@ -0,0 +1,176 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class MpscRingBufferTest {
+    @Test
+    public void testCapacity_IsRoundedUpToPowerOfTwo() {
+        assertThat(new MpscRingBuffer<String>(1).capacity(), is(2));
+        assertThat(new MpscRingBuffer<String>(4).capacity(), is(4));
+        assertThat(new MpscRingBuffer<String>(100000).capacity(), is(131072));
+    }
+
+    @Test
+    public void testOffer_RefusesElementsWhenFull() {
+        var queue = new MpscRingBuffer<String>(4);
+        for (var i = 0; i < 4; i++) {
+            assertThat(queue.offer("element" + i), is(true));
+        }
+        assertThat(queue.offer("overflow"), is(false));
+        assertThat(queue.remainingCapacity(), is(0));
+        assertThat(queue.poll(), is("element0"));
+        assertThat(queue.offer("element4"), is(true));
+        assertThat(queue.size(), is(4));
+    }
+
+    @Test
+    public void testPoll_ReturnsElementsInOrderAcrossLaps() {
+        var queue = new MpscRingBuffer<Integer>(4);
+        for (var i = 0; i < 20; i++) {
+            queue.offer(i);
+            assertThat(queue.poll(), is(i));
+        }
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void testPollWithTimeout_ReturnsNullWhenEmpty() throws Exception {
+        var queue = new MpscRingBuffer<String>(4);
+        assertThat(queue.poll(10, TimeUnit.MILLISECONDS), is(nullValue()));
+    }
+
+    @Test
+    public void testDrainTo_MovesAtMostMaxElements() {
+        var queue = new MpscRingBuffer<Integer>(8);
+        for (var i = 0; i < 5; i++) {
+            queue.offer(i);
+        }
+        var drained = new ArrayList<Integer>();
+        assertThat(queue.drainTo(drained, 3), is(3));
+        assertThat(drained, is(List.of(0, 1, 2)));
+        assertThat(queue.drainTo(drained, 10), is(2));
+        assertThat(queue.size(), is(0));
+    }
+
+    @Test(timeout = 10000)
+    public void testTake_WakesUpWhenElementIsAdded() throws Exception {
+        var queue = new MpscRingBuffer<String>(4);
+        var producer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.offer("element");
+        });
+        producer.start();
+        assertThat(queue.take(), is("element"));
+        producer.join();
+    }
+
+    @Test(timeout = 10000)
+    public void testPollWithTimeout_ReturnsNullWhenWokenUp() throws Exception {
+        var queue = new MpscRingBuffer<String>(2);
+        queue.offer("first");
+        queue.offer("second");
+        // Works with a full queue, and a wake-up that arrives before the consumer waits isn't lost.
+        queue.wakeUp();
+        assertThat(queue.poll(10, TimeUnit.SECONDS), is("first"));
+        assertThat(queue.poll(10, TimeUnit.SECONDS), is("second"));
+        assertThat(queue.poll(10, TimeUnit.SECONDS), is(nullValue()));
+        var waker = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.wakeUp();
+        });
+        waker.start();
+        assertThat(queue.poll(10, TimeUnit.SECONDS), is(nullValue()));
+        waker.join();
+        assertThat(queue.size(), is(0));
+    }
+
+    @Test(timeout = 10000)
+    public void testOfferWithTimeout_WaitsForRoom() throws Exception {
+        var queue = new MpscRingBuffer<String>(2);
+        queue.offer("first");
+        queue.offer("second");
+        assertThat(queue.offer("third", 10, TimeUnit.MILLISECONDS), is(false));
+        var consumer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.poll();
+        });
+        consumer.start();
+        assertThat(queue.offer("third", 10, TimeUnit.SECONDS), is(true));
+        consumer.join();
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentProducers_PreserveEachProducersOrder() throws Exception {
+        final int producerCount = 8;
+        final int elementsPerProducer = 100000;
+        var queue = new MpscRingBuffer<int[]>(64);
+        var producers = new ArrayList<Thread>();
+        for (var p = 0; p < producerCount; p++) {
+            final int producer = p;
+            var thread = new Thread(() -> {
+                try {
+                    for (var i = 0; i < elementsPerProducer; i++) {
+                        queue.put(new int[] {producer, i});
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        var next = new int[producerCount];
+        for (var received = 0; received < producerCount * elementsPerProducer; received++) {
+            var element = queue.take();
+            assertThat(element[1], is(next[element[0]]));
+            next[element[0]]++;
+        }
+        for (var thread : producers) {
+            thread.join();
+        }
+        assertThat(queue.poll(), is(nullValue()));
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the latency of handing off a message to the publisher's queue when many threads
+ * publish events at the same time, comparing {@link MpscRingBuffer} with the
+ * {@link LinkedBlockingQueue} it replaced. A single consumer thread drains the queue
+ * like the publisher thread does. Look at the p99 of the sampled times.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PublishQueueBenchmark {
+    private static final int QUEUE_SIZE = 100000;
+    private static final int DRAIN_BATCH_SIZE = 100;
+    private static final Object MESSAGE = new Object();
+
+    /** The operations that the benchmark needs, implemented by both queues. */
+    private interface HandOff {
+        boolean offer(Object message);
+
+        Object take() throws InterruptedException;
+
+        int drain(int maxMessages);
+    }
+
+    @State(Scope.Benchmark)
+    public static class QueueState {
+        @Param({"MpscRingBuffer", "LinkedBlockingQueue"})
+        String queueType;
+
+        HandOff queue;
+        Thread consumer;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            queue = "MpscRingBuffer".equals(queueType) ? ringBuffer() : linkedBlockingQueue();
+            consumer = new Thread(this::consume, "benchmark consumer");
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws InterruptedException {
+            consumer.interrupt();
+            consumer.join();
+        }
+
+        private void consume() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    queue.take();
+                    queue.drain(DRAIN_BATCH_SIZE - 1);
+                }
+            } catch (InterruptedException e) {
+                // The iteration is over.
+            }
+        }
+
+        private static HandOff ringBuffer() {
+            var ringBuffer = new MpscRingBuffer<Object>(QUEUE_SIZE);
+            return new HandOff() {
+                @Override
+                public boolean offer(Object message) {
+                    return ringBuffer.offer(message);
+                }
+
+                @Override
+                public Object take() throws InterruptedException {
+                    return ringBuffer.take();
+                }
+
+                @Override
+                public int drain(int maxMessages) {
+                    var drained = 0;
+                    while (drained < maxMessages && ringBuffer.poll() != null) {
+                        drained++;
+                    }
+                    return drained;
+                }
+            };
+        }
+
+        private static HandOff linkedBlockingQueue() {
+            var linkedQueue = new LinkedBlockingQueue<Object>(QUEUE_SIZE);
+            return new HandOff() {
+                @Override
+                public boolean offer(Object message) {
+                    return linkedQueue.offer(message);
+                }
+
+                @Override
+                public Object take() throws InterruptedException {
+                    return linkedQueue.take();
+                }
+
+                @Override
+                public int drain(int maxMessages) {
+                    var drained = 0;
+                    while (drained < maxMessages && linkedQueue.poll() != null) {
+                        drained++;
+                    }
+                    return drained;
+                }
+            };
+        }
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean offer(QueueState state) {
+        return state.queue.offer(MESSAGE);
+    }
+}
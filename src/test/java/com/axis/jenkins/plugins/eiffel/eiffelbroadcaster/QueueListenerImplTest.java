@@ -29,6 +29,7 @@ import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEventFactory;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -89,4 +90,16 @@ public class QueueListenerImplTest {
         assertThat(trigger.getDescription(), containsString(cause1.toString()));
         assertThat(trigger.getDescription(), containsString(cause2.toString()));
     }
+
+    @Test
+    public void testLockHoldStatistics() {
+        var stats = new QueueListenerImpl.LockHoldStatistics();
+        stats.record(TimeUnit.MICROSECONDS.toNanos(100));
+        stats.record(TimeUnit.MICROSECONDS.toNanos(300));
+
+        assertThat(stats.getCount(), is(2L));
+        assertThat(stats.getTotalNanos(), is(TimeUnit.MICROSECONDS.toNanos(400)));
+        assertThat(stats.getMaxNanos(), is(TimeUnit.MICROSECONDS.toNanos(300)));
+        assertThat(stats.toString(), is("count=2, mean=200 us, max=300 us"));
+    }
 }
@@ -24,7 +24,12 @@
 
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster;
 
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityStartedEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactCreatedEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
 import java.util.Arrays;
+import java.util.UUID;
 import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -56,4 +61,27 @@ public class UtilTest {
     public void testLinesToCollection_PrefixPostfixWhitespaceTrimmed() {
         assertThat(Util.getLinesInString("  foo  "), is(Arrays.asList("foo")));
     }
+
+    @Test
+    public void testGetOrderingKey_ActivityExecutionLinkPreferred() {
+        var activityId = UUID.randomUUID();
+        var event = new EiffelActivityStartedEvent("4.0.0");
+        event.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.CONTEXT, UUID.randomUUID()));
+        event.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.ACTIVITY_EXECUTION, activityId));
+        assertThat(Util.getOrderingKey(event), is(activityId.toString()));
+    }
+
+    @Test
+    public void testGetOrderingKey_ContextLinkUsedAsFallback() {
+        var activityId = UUID.randomUUID();
+        var event = new EiffelArtifactCreatedEvent("3.0.0");
+        event.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.CONTEXT, activityId));
+        assertThat(Util.getOrderingKey(event), is(activityId.toString()));
+    }
+
+    @Test
+    public void testGetOrderingKey_OwnIdWithoutLinks() {
+        var event = new EiffelActivityTriggeredEvent("4.0.0");
+        assertThat(Util.getOrderingKey(event), is(event.getMeta().getId().toString()));
+    }
 }
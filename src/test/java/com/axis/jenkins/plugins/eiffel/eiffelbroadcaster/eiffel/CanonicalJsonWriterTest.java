@@ -0,0 +1,163 @@
+/**
+ The MIT License
+
+ Copyright 2021-2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.erdtman.jcs.JsonCanonicalizer;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Checks that {@link CanonicalJsonWriter} produces the same bytes as {@link JsonCanonicalizer}
+ * for the plugin's events and for a corpus of randomly generated JSON documents.
+ */
+public class CanonicalJsonWriterTest {
+    private static final int DOCUMENTS = 2000;
+    private static final int MAX_DEPTH = 4;
+    private static final String SPECIAL_CHARACTERS = "\"\\/\b\f\n\r\t\u0000\u001f\u007f\u0080\u00e5\u2003\u2028\ufeff";
+
+    private final JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+    private static byte[] canonicalize(JsonNode tree) throws IOException {
+        return new JsonCanonicalizer(EventCodec.writeValueAsString(tree)).getEncodedUTF8();
+    }
+
+    @Test
+    public void testEventsMatchCanonicalizer() throws Exception {
+        var artC = EiffelEventFactory.getInstance().create(EiffelArtifactCreatedEvent.class);
+        artC.getData().setIdentity("pkg:generic/artifact@1.0");
+        var actT = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+        actT.getData().setName("activity name \u00e5\u00e4\u00f6 \"quoted\"\n");
+        actT.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE, artC.getMeta().getId()));
+        for (EiffelEvent event : new EiffelEvent[] { actT, artC }) {
+            assertThat(new String(CanonicalJsonWriter.writeValueAsBytes(event), StandardCharsets.UTF_8),
+                    is(new String(canonicalize(EventCodec.valueToTree(event)), StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    public void testRandomDocumentsMatchCanonicalizer() throws Exception {
+        // A fixed seed keeps failures reproducible; the seed and document are part of the failure message.
+        var random = new Random(8785);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            var document = randomNode(random, 0);
+            var expected = new String(canonicalize(document), StandardCharsets.UTF_8);
+            var actual = new String(CanonicalJsonWriter.writeTreeAsBytes(document), StandardCharsets.UTF_8);
+            if (!actual.equals(expected)) {
+                throw new AssertionError(String.format(
+                        "Document %d differs:%n  input:    %s%n  expected: %s%n  actual:   %s",
+                        i, EventCodec.writeValueAsString(document), expected, actual));
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsNonFiniteNumbers() {
+        var document = nodes.objectNode().put("value", Double.NaN);
+        assertThrows(IOException.class, () -> CanonicalJsonWriter.writeTreeAsBytes(document));
+    }
+
+    private JsonNode randomNode(Random random, int depth) {
+        switch (random.nextInt(depth < MAX_DEPTH ? 6 : 4)) {
+            case 0:
+                return nodes.textNode(randomString(random));
+            case 1:
+                return randomNumber(random);
+            case 2:
+                return nodes.booleanNode(random.nextBoolean());
+            case 3:
+                return nodes.nullNode();
+            case 4:
+                var object = nodes.objectNode();
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    object.set(randomString(random), randomNode(random, depth + 1));
+                }
+                return object;
+            default:
+                var array = nodes.arrayNode();
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    array.add(randomNode(random, depth + 1));
+                }
+                return array;
+        }
+    }
+
+    private JsonNode randomNumber(Random random) {
+        switch (random.nextInt(7)) {
+            case 0:
+                return nodes.numberNode(random.nextInt(2001) - 1000);
+            case 1:
+                return nodes.numberNode(random.nextLong());
+            case 2:
+                return nodes.numberNode(random.nextDouble() * Math.pow(10, random.nextInt(60) - 30));
+            case 3:
+                // Any finite double, including subnormals and the extremes.
+                double value;
+                do {
+                    value = Double.longBitsToDouble(random.nextLong());
+                } while (Double.isNaN(value) || Double.isInfinite(value));
+                return nodes.numberNode(value);
+            case 4:
+                return nodes.numberNode(random.nextFloat() * 1000);
+            case 5:
+                return nodes.numberNode(new BigInteger(80, random));
+            default:
+                return nodes.numberNode(BigDecimal.valueOf(random.nextInt(100000), random.nextInt(8)));
+        }
+    }
+
+    private static String randomString(Random random) {
+        var sb = new StringBuilder();
+        for (int i = random.nextInt(12); i > 0; i--) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    sb.append(SPECIAL_CHARACTERS.charAt(random.nextInt(SPECIAL_CHARACTERS.length())));
+                    break;
+                case 1:
+                    // Outside the basic multilingual plane, i.e. a surrogate pair.
+                    sb.appendCodePoint(0x10000 + random.nextInt(0x10ffff - 0x10000));
+                    break;
+                case 2:
+                    char c;
+                    do {
+                        c = (char) random.nextInt(0x10000);
+                    } while (Character.isSurrogate(c));
+                    sb.append(c);
+                    break;
+                default:
+                    sb.append((char) (0x20 + random.nextInt(0x5f)));
+            }
+        }
+        return sb.toString();
+    }
+}
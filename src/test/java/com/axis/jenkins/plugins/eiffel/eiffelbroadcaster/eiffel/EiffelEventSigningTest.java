@@ -25,6 +25,7 @@
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyPairGenerator;
 import java.security.SecureRandom;
 import java.security.Signature;
@@ -104,4 +105,47 @@ public class EiffelEventSigningTest {
         sig.update(new JsonCanonicalizer(mapper.writeValueAsString(mapper.valueToTree(event))).getEncodedUTF8());
         assertThat(sig.verify(originalSignature), is(true));
     }
+
+    @Test
+    public void testSignedJSONIsCanonicalFormOfSignedEvent() throws Exception {
+        var keyGen = KeyPairGenerator.getInstance(signingAlg);
+        if (algParamSpec != null) {
+            keyGen.initialize(algParamSpec, new SecureRandom());
+        }
+
+        var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+        event.getData().setName("activity name");
+        event.sign(keyGen.generateKeyPair().getPrivate(), "CN=test", hashAlg);
+
+        var mapper = new ObjectMapper();
+        assertThat(event.signedJSON(), is(notNullValue()));
+        assertThat(new String(event.signedJSON(), StandardCharsets.UTF_8),
+                is(new JsonCanonicalizer(mapper.writeValueAsString(event)).getEncodedString()));
+    }
+
+    @Test
+    public void testReusedSignatureEnginesProduceValidSignatures() throws Exception {
+        var keyGen = KeyPairGenerator.getInstance(signingAlg);
+        if (algParamSpec != null) {
+            keyGen.initialize(algParamSpec, new SecureRandom());
+        }
+
+        // Alternate between two keys so that the thread's engine is both reused and reinitialized.
+        var pairs = Arrays.asList(keyGen.generateKeyPair(), keyGen.generateKeyPair());
+        var mapper = new ObjectMapper();
+        for (int i = 0; i < 6; i++) {
+            var pair = pairs.get(i / 2 % 2);
+            var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+            event.getData().setName("activity " + i);
+            event.sign(pair.getPrivate(), "CN=test", hashAlg);
+
+            var integrityProtection = event.getMeta().getSecurity().getIntegrityProtection();
+            var sig = Signature.getInstance(integrityProtection.getAlg().getSignatureAlgorithm());
+            sig.initVerify(pair.getPublic());
+            var originalSignature = Base64.getDecoder().decode(integrityProtection.getSignature());
+            integrityProtection.setSignature("");
+            sig.update(new JsonCanonicalizer(mapper.writeValueAsString(event)).getEncodedUTF8());
+            assertThat(sig.verify(originalSignature), is(true));
+        }
+    }
 }
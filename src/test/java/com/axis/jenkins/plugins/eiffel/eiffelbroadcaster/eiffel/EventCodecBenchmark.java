@@ -0,0 +1,91 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.TimeUnit;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the serialization and deserialization throughput of {@link EventCodec} per event type,
+ * compared to creating a new {@link ObjectMapper} for each event like the plugin used to do.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventCodecBenchmark {
+    @State(Scope.Benchmark)
+    public static class EventState {
+        @Param({
+                "EiffelActivityTriggeredEvent",
+                "EiffelActivityStartedEvent",
+                "EiffelActivityFinishedEvent",
+                "EiffelArtifactCreatedEvent",
+        })
+        String eventType;
+
+        EiffelEvent event;
+        String json;
+
+        @Setup(Level.Trial)
+        public void setUp() throws ClassNotFoundException, JsonProcessingException {
+            var eventClass = Class.forName(EiffelEvent.class.getPackage().getName() + "." + eventType)
+                    .asSubclass(EiffelEvent.class);
+            event = EiffelEventFactory.getInstance().create(eventClass);
+            event.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.CONTEXT, event.getMeta().getId()));
+            json = EventCodec.writeValueAsString(event);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(EventState state) throws JsonProcessingException {
+        return EventCodec.writeValueAsBytes(state.event);
+    }
+
+    @Benchmark
+    public byte[] serializeWithNewMapper(EventState state) throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsBytes(state.event);
+    }
+
+    @Benchmark
+    public EiffelEvent deserialize(EventState state) throws JsonProcessingException {
+        return EventCodec.readValue(state.json, EiffelEvent.class);
+    }
+
+    @Benchmark
+    public EiffelEvent deserializeWithNewMapper(EventState state) throws JsonProcessingException {
+        return new ObjectMapper().readValue(state.json, EiffelEvent.class);
+    }
+}
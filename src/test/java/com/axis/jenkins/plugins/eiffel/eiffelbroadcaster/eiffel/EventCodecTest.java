@@ -0,0 +1,62 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class EventCodecTest {
+    @Test
+    public void testReadersAndWritersAreCached() {
+        assertThat(EventCodec.getReader(EiffelActivityTriggeredEvent.class),
+                sameInstance(EventCodec.getReader(EiffelActivityTriggeredEvent.class)));
+        assertThat(EventCodec.getWriter(EiffelActivityTriggeredEvent.class),
+                sameInstance(EventCodec.getWriter(EiffelActivityTriggeredEvent.class)));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+        event.getData().setName("activity name");
+        var json = new String(EventCodec.writeValueAsBytes(event), StandardCharsets.UTF_8);
+        assertThat(json, is(EventCodec.writeValueAsString(event)));
+
+        var deserializedEvent = EventCodec.readValue(json, EiffelEvent.class);
+        assertThat(deserializedEvent, instanceOf(EiffelActivityTriggeredEvent.class));
+        assertThat(deserializedEvent, is(event));
+    }
+
+    @Test
+    public void testCreateMapper_WithoutBlackbirdOnClasspath() {
+        // The module isn't a dependency of the plugin, so the mapper is created without it.
+        assertThat(EventCodec.createMapper(true), is(notNullValue()));
+    }
+}
@@ -25,8 +25,15 @@
 package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
 import org.junit.Test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
 public class EventValidatorTest {
     @Test
     public void testValidateAcceptsValidEvent() throws Exception {
@@ -52,4 +59,102 @@ public class EventValidatorTest {
         validator.validate("EiffelActivityTriggeredEvent", "4.0.0",
                 new ObjectMapper().readTree("{\"message\": \"this is an invalid event\"}"));
     }
+
+    @Test
+    public void testBundledSchemasAreListed() throws Exception {
+        var schemas = new BundledSchemaProvider().listSchemas();
+        assertThat(schemas, hasItem(new EventVersionKey("EiffelActivityTriggeredEvent", "4.0.0")));
+        assertThat(schemas, hasItem(new EventVersionKey("EiffelArtifactCreatedEvent", "3.0.0")));
+    }
+
+    @Test
+    public void testPrecompileBundledSchemas() throws Exception {
+        var validator = new EventValidator();
+        validator.precompileBundledSchemas(Runnable::run).get();
+        var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+        event.getData().setName("activity name");
+        validator.validate(event.getMeta().getType(), event.getMeta().getVersion(),
+                new ObjectMapper().valueToTree(event));
+    }
+
+    private static EiffelActivityTriggeredEvent createActT() {
+        var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+        event.getData().setName("activity name");
+        return event;
+    }
+
+    @Test
+    public void testUserEventsOnlyPolicySkipsSystemEvents() throws Exception {
+        var validator = new EventValidator();
+        var event = createActT();
+        var eventJson = new ObjectMapper().valueToTree(event);
+        validator.validate(event, eventJson, ValidationPolicy.USER_EVENTS_ONLY, 1, false);
+        validator.validate(event, eventJson, ValidationPolicy.USER_EVENTS_ONLY, 1, true);
+        assertThat(validator.getValidationCount(), is(1L));
+        assertThat(validator.getSkippedValidationCount(), is(1L));
+    }
+
+    @Test
+    public void testSampledPolicyValidatesSampleOfSystemEvents() throws Exception {
+        var validator = new EventValidator();
+        var event = createActT();
+        var eventJson = new ObjectMapper().valueToTree(event);
+        for (int i = 0; i < 6; i++) {
+            validator.validate(event, eventJson, ValidationPolicy.SAMPLED, 3, false);
+        }
+        validator.validate(event, eventJson, ValidationPolicy.SAMPLED, 3, true);
+        assertThat(validator.getValidationCount(), is(3L));
+        assertThat(validator.getSkippedValidationCount(), is(4L));
+    }
+
+    @Test
+    public void testFailFastPolicyReportsFirstError() throws Exception {
+        var validator = new EventValidator();
+        var event = createActT();
+        var eventJson = new ObjectMapper().readTree("{\"message\": \"this is an invalid event\"}");
+        try {
+            validator.validate(event.getMeta().getType(), event.getMeta().getVersion(), eventJson);
+            fail("Expected validation to fail");
+        } catch (EventValidationFailedException e) {
+            assertThat(e.getValidationResult().size(), is(greaterThan(1)));
+        }
+        event.getData().setName(null);
+        try {
+            validator.validate(event, eventJson, ValidationPolicy.FAIL_FAST, 1, false);
+            fail("Expected validation to fail");
+        } catch (EventValidationFailedException e) {
+            assertThat(e.getValidationResult().size(), is(1));
+        }
+    }
+
+    @Test
+    public void testUserSuppliedEventsAreAlwaysValidatedAgainstSchema() throws Exception {
+        var validator = new EventValidator();
+        var event = createActT();
+        var eventJson = new ObjectMapper().readTree("{\"message\": \"this is an invalid event\"}");
+        // The typed validator only looks at the event object, which is valid.
+        validator.validate(event, eventJson, ValidationPolicy.ALWAYS, 1, false);
+        try {
+            validator.validate(event, eventJson, ValidationPolicy.ALWAYS, 1, true);
+            fail("Expected validation to fail");
+        } catch (EventValidationFailedException e) {
+            assertThat(e.getValidationResult().size(), is(greaterThan(0)));
+        }
+    }
+
+    @Test
+    public void testValidateBytesOnlyParsesEventsThatNeedSchemaValidation() throws Exception {
+        var validator = new EventValidator();
+        var event = createActT();
+        // The plugin's own valid events are accepted without looking at the bytes.
+        validator.validate(event, "not JSON".getBytes(StandardCharsets.UTF_8), ValidationPolicy.ALWAYS, 1, false);
+        event.getData().setName(null);
+        try {
+            validator.validate(event, EventCodec.writeValueAsBytes(event), ValidationPolicy.ALWAYS, 1, false);
+            fail("Expected validation to fail");
+        } catch (EventValidationFailedException e) {
+            assertThat(e.getValidationResult().size(), is(greaterThan(0)));
+        }
+        assertThat(validator.getValidationCount(), is(2L));
+    }
 }
@@ -0,0 +1,170 @@
+/**
+ The MIT License
+
+ Copyright 2021-2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SchemaProvidersTest {
+    private static final String SCHEMA =
+            "{\"type\": \"object\", \"required\": [\"meta\"], \"properties\": {\"meta\": {\"type\": \"object\"}}}";
+    private static final String SCHEMA_URI = "https://schemas.example.com/EiffelCustomEvent/1.0.0.json";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testDirectoryProviderFindsSchema() throws Exception {
+        var dir = tempFolder.newFolder();
+        writeSchema(new File(new File(dir, "EiffelCustomEvent"), "1.0.0.json"));
+        var provider = new DirectorySchemaProvider(dir);
+        try (var stream = provider.getSchema("EiffelCustomEvent", "1.0.0")) {
+            assertThat(stream, notNullValue());
+        }
+        assertThat(provider.getSchema("EiffelCustomEvent", "2.0.0"), nullValue());
+    }
+
+    @Test
+    public void testDirectoryProviderRejectsPathTraversal() throws Exception {
+        var dir = tempFolder.newFolder();
+        writeSchema(new File(dir, "secret.json"));
+        var provider = new DirectorySchemaProvider(new File(dir, "schemas"));
+        assertThat(provider.getSchema("..", "secret"), nullValue());
+        assertThat(provider.getSchema("schemas/..", "secret"), nullValue());
+    }
+
+    @Test
+    public void testUriProviderStoresFetchedSchema() throws Exception {
+        var cacheDir = tempFolder.newFolder();
+        var fetcher = new CountingFetcher();
+        var provider = new SchemaUriProvider(cacheDir, fetcher, List.of("https://schemas.example.com/"));
+        try (var stream = provider.getSchema("EiffelCustomEvent", "1.0.0", SCHEMA_URI)) {
+            assertThat(new String(stream.readAllBytes(), StandardCharsets.UTF_8), is(SCHEMA));
+        }
+
+        // A new provider, e.g. after a restart, reads the stored schema instead of fetching it again.
+        provider = new SchemaUriProvider(cacheDir, fetcher, List.of("https://schemas.example.com/"));
+        try (var stream = provider.getSchema("EiffelCustomEvent", "1.0.0", SCHEMA_URI)) {
+            assertThat(new String(stream.readAllBytes(), StandardCharsets.UTF_8), is(SCHEMA));
+        }
+        assertThat(fetcher.count.get(), is(1));
+    }
+
+    @Test
+    public void testUriProviderOnlyFetchesAllowedUris() throws Exception {
+        var fetcher = new CountingFetcher();
+        var provider = new SchemaUriProvider(tempFolder.newFolder(), fetcher, List.of("https://other.example.com/"));
+        assertThat(provider.getSchema("EiffelCustomEvent", "1.0.0", SCHEMA_URI), nullValue());
+        provider = new SchemaUriProvider(tempFolder.newFolder(), fetcher, List.of());
+        assertThat(provider.getSchema("EiffelCustomEvent", "1.0.0", SCHEMA_URI), nullValue());
+        assertThat(fetcher.count.get(), is(0));
+    }
+
+    @Test
+    public void testChainedProviderPrefersEarlierProviders() throws Exception {
+        var dir = tempFolder.newFolder();
+        writeSchema(new File(new File(dir, "EiffelActivityTriggeredEvent"), "4.0.0.json"));
+        var provider = new ChainedSchemaProvider(List.of(
+                new BundledSchemaProvider(), new DirectorySchemaProvider(dir)));
+        try (var stream = provider.getSchema("EiffelActivityTriggeredEvent", "4.0.0", null)) {
+            assertThat(new String(stream.readAllBytes(), StandardCharsets.UTF_8).equals(SCHEMA), is(false));
+        }
+    }
+
+    @Test
+    public void testValidatorUsesSchemaFromUri() throws Exception {
+        var fetcher = new CountingFetcher();
+        var validator = new EventValidator(new ChainedSchemaProvider(List.of(
+                new BundledSchemaProvider(),
+                new SchemaUriProvider(tempFolder.newFolder(), fetcher, List.of("https://schemas.example.com/")))));
+        var event = new ObjectMapper().readTree("{\"meta\": {\"schemaUri\": \"" + SCHEMA_URI + "\"}}");
+        validator.validate("EiffelCustomEvent", "1.0.0", event);
+        validator.validate("EiffelCustomEvent", "1.0.0", event);
+        assertThat(fetcher.count.get(), is(1));
+    }
+
+    @Test
+    public void testValidatorEvictsSchemasWhenFull() throws Exception {
+        var dir = tempFolder.newFolder();
+        for (var version : List.of("1.0.0", "2.0.0", "3.0.0")) {
+            writeSchema(new File(new File(dir, "EiffelCustomEvent"), version + ".json"));
+        }
+        var loads = new AtomicInteger();
+        var directoryProvider = new DirectorySchemaProvider(dir);
+        SchemaProvider countingProvider = (eventName, eventVersion) -> {
+            loads.incrementAndGet();
+            return directoryProvider.getSchema(eventName, eventVersion);
+        };
+        var validator = new EventValidator(countingProvider, 2);
+        var event = new ObjectMapper().readTree("{\"meta\": {}}");
+        validator.validate("EiffelCustomEvent", "1.0.0", event);
+        validator.validate("EiffelCustomEvent", "2.0.0", event);
+        validator.validate("EiffelCustomEvent", "1.0.0", event);
+        assertThat(loads.get(), is(2));
+
+        // 2.0.0 is the least recently used schema and is evicted to make room for 3.0.0.
+        validator.validate("EiffelCustomEvent", "3.0.0", event);
+        validator.validate("EiffelCustomEvent", "1.0.0", event);
+        assertThat(loads.get(), is(3));
+        validator.validate("EiffelCustomEvent", "2.0.0", event);
+        assertThat(loads.get(), is(4));
+    }
+
+    private static void writeSchema(File file) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), SCHEMA);
+    }
+
+    /** Serves {@link #SCHEMA} at {@link #SCHEMA_URI} and counts the fetches. */
+    private static class CountingFetcher implements SchemaFetcher {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public InputStream fetch(URI uri) throws IOException {
+            count.incrementAndGet();
+            if (!uri.toString().equals(SCHEMA_URI)) {
+                throw new FileNotFoundException(uri.toString());
+            }
+            return new ByteArrayInputStream(SCHEMA.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
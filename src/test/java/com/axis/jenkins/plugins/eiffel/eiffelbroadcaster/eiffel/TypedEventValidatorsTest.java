@@ -0,0 +1,256 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Checks the typed validators against the bundled schemas. Valid events must be accepted by both,
+ * and a typed validator must never accept an event that the schema rejects.
+ */
+public class TypedEventValidatorsTest {
+    private final EventValidator schemaValidator = new EventValidator();
+
+    private boolean isValidAccordingToSchema(EiffelEvent event) throws Exception {
+        try {
+            schemaValidator.validate(event.getMeta().getType(), event.getMeta().getVersion(),
+                    EventCodec.valueToTree(event));
+            return true;
+        } catch (EventValidationFailedException e) {
+            return false;
+        }
+    }
+
+    private void assertValid(EiffelEvent event) throws Exception {
+        assertThat("schema accepts " + event, isValidAccordingToSchema(event), is(true));
+        assertThat("typed validator accepts " + event, TypedEventValidators.isKnownValid(event), is(true));
+    }
+
+    private void assertInvalid(EiffelEvent event) throws Exception {
+        assertThat("schema rejects " + event, isValidAccordingToSchema(event), is(false));
+        assertThat("typed validator rejects " + event, TypedEventValidators.isKnownValid(event), is(false));
+    }
+
+    private static <T extends EiffelEvent> T create(Class<T> eventClass) {
+        return EiffelEventFactory.getInstance().create(eventClass);
+    }
+
+    private static EiffelActivityTriggeredEvent createActT() {
+        var event = create(EiffelActivityTriggeredEvent.class);
+        event.getData().setName("activity name");
+        return event;
+    }
+
+    private static EiffelArtifactCreatedEvent createArtC() {
+        var event = create(EiffelArtifactCreatedEvent.class);
+        event.getData().setIdentity("pkg:generic/artifact@1.0");
+        return event;
+    }
+
+    private static List<EiffelEvent> createMinimalEvents() {
+        var events = new ArrayList<EiffelEvent>();
+        events.add(createActT());
+        events.add(create(EiffelActivityStartedEvent.class));
+        var actF = create(EiffelActivityFinishedEvent.class);
+        actF.getData().setOutcome(new EiffelActivityFinishedEvent.Data.Outcome(
+                EiffelActivityFinishedEvent.Data.Outcome.Conclusion.SUCCESSFUL));
+        events.add(actF);
+        events.add(create(EiffelActivityCanceledEvent.class));
+        events.add(createArtC());
+        var artP = create(EiffelArtifactPublishedEvent.class);
+        artP.getData().getLocations().add(new EiffelArtifactPublishedEvent.Data.Location(
+                EiffelArtifactPublishedEvent.Data.Location.Type.PLAIN, URI.create("http://example.com/artifact")));
+        events.add(artP);
+        return events;
+    }
+
+    @Test
+    public void testAllEmittedEventTypesHaveValidators() throws Exception {
+        for (var event : createMinimalEvents()) {
+            assertThat(event.getMeta().getType(),
+                    TypedEventValidators.hasValidator(event.getClass(), event.getMeta().getVersion()), is(true));
+        }
+    }
+
+    @Test
+    public void testMinimalEventsAreValid() throws Exception {
+        for (var event : createMinimalEvents()) {
+            assertValid(event);
+        }
+    }
+
+    @Test
+    public void testCommonAttributes() throws Exception {
+        for (var event : createMinimalEvents()) {
+            event.getMeta().getTags().add("tag");
+            event.getMeta().getSource().setSerializer("pkg:maven/com.axis.jenkins.plugins.eiffel/eiffel-broadcaster");
+            event.getMeta().getSource().setHost("host");
+            event.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE, UUID.randomUUID()));
+            assertValid(event);
+        }
+    }
+
+    @Test
+    public void testSignedEventsAreValid() throws Exception {
+        for (var alg : EiffelEvent.Meta.Security.IntegrityProtection.Alg.values()) {
+            var event = createActT();
+            var security = new EiffelEvent.Meta.Security("CN=test");
+            security.setIntegrityProtection(new EiffelEvent.Meta.Security.IntegrityProtection("signature", alg));
+            event.getMeta().setSecurity(security);
+            assertValid(event);
+        }
+    }
+
+    @Test
+    public void testAllEnumValuesAreValid() throws Exception {
+        for (var type : EiffelActivityTriggeredEvent.Data.Trigger.Type.values()) {
+            var event = createActT();
+            event.getData().getTriggers().add(new EiffelActivityTriggeredEvent.Data.Trigger(type));
+            assertValid(event);
+        }
+        for (var executionType : EiffelActivityTriggeredEvent.Data.ExecutionType.values()) {
+            var event = createActT();
+            event.getData().setExecutionType(executionType);
+            assertValid(event);
+        }
+        for (var conclusion : EiffelActivityFinishedEvent.Data.Outcome.Conclusion.values()) {
+            var event = create(EiffelActivityFinishedEvent.class);
+            event.getData().setOutcome(new EiffelActivityFinishedEvent.Data.Outcome(conclusion));
+            assertValid(event);
+        }
+        for (var requiresImplementation : EiffelArtifactCreatedEvent.Data.RequiresImplementation.values()) {
+            var event = createArtC();
+            event.getData().setRequiresImplementation(requiresImplementation);
+            assertValid(event);
+        }
+        for (var type : EiffelArtifactPublishedEvent.Data.Location.Type.values()) {
+            var event = create(EiffelArtifactPublishedEvent.class);
+            event.getData().getLocations().add(
+                    new EiffelArtifactPublishedEvent.Data.Location(type, URI.create("http://example.com/artifact")));
+            assertValid(event);
+        }
+    }
+
+    @Test
+    public void testOptionalDataAttributes() throws Exception {
+        var actS = create(EiffelActivityStartedEvent.class);
+        actS.getData().setExecutionUri(URI.create("http://example.com/job/1/"));
+        actS.getData().getLiveLogs().add(new EiffelActivityStartedEvent.Data.LiveLogs(
+                "log", URI.create("http://example.com/job/1/console")));
+        assertValid(actS);
+
+        var actF = create(EiffelActivityFinishedEvent.class);
+        var outcome = new EiffelActivityFinishedEvent.Data.Outcome(
+                EiffelActivityFinishedEvent.Data.Outcome.Conclusion.FAILED);
+        outcome.setDescription("description");
+        actF.getData().setOutcome(outcome);
+        actF.getData().getPersistentLogs().add(new EiffelActivityFinishedEvent.Data.PersistentLogs(
+                "log", URI.create("http://example.com/job/1/consoleText")));
+        assertValid(actF);
+
+        var actC = create(EiffelActivityCanceledEvent.class);
+        actC.getData().setReason("reason");
+        assertValid(actC);
+
+        var artC = createArtC();
+        var fileInformation = new EiffelArtifactCreatedEvent.Data.FileInformation("file.txt");
+        fileInformation.getTags().add("tag");
+        artC.getData().getFileInformation().add(fileInformation);
+        artC.getData().getImplementsPurls().add("pkg:generic/interface@1.0");
+        artC.getData().getDependsOn().add("pkg:generic/dependency@1.0");
+        artC.getData().setBuildCommand("make");
+        artC.getData().setName("artifact");
+        assertValid(artC);
+    }
+
+    @Test
+    public void testInvalidEventsAreRejected() throws Exception {
+        var missingName = createActT();
+        missingName.getData().setName(null);
+        assertInvalid(missingName);
+
+        var missingOutcome = create(EiffelActivityFinishedEvent.class);
+        assertInvalid(missingOutcome);
+
+        var badIdentity = createArtC();
+        badIdentity.getData().setIdentity("generic/artifact");
+        assertInvalid(badIdentity);
+
+        var badDependency = createArtC();
+        badDependency.getData().getDependsOn().add("generic/dependency");
+        assertInvalid(badDependency);
+
+        var fileDigest = createArtC();
+        var fileInformation = new EiffelArtifactCreatedEvent.Data.FileInformation("file.txt");
+        fileInformation.setIntegrityProtection(new EiffelArtifactCreatedEvent.Data.FileInformation.IntegrityProtection(
+                EiffelArtifactCreatedEvent.Data.FileInformation.IntegrityProtection.Alg.SHA256, "0123"));
+        fileDigest.getData().getFileInformation().add(fileInformation);
+        assertInvalid(fileDigest);
+
+        var liveLogMediaType = create(EiffelActivityStartedEvent.class);
+        var liveLog = new EiffelActivityStartedEvent.Data.LiveLogs("log", URI.create("http://example.com/log"));
+        liveLog.setMediaType("text/plain");
+        liveLogMediaType.getData().getLiveLogs().add(liveLog);
+        assertInvalid(liveLogMediaType);
+
+        var badSerializer = createActT();
+        badSerializer.getMeta().getSource().setSerializer("maven:eiffel-broadcaster");
+        assertInvalid(badSerializer);
+
+        var schemaUri = createActT();
+        schemaUri.getMeta().setSchemaUri("http://example.com/schema.json");
+        assertInvalid(schemaUri);
+
+        var linkDomainId = createActT();
+        var link = new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE, UUID.randomUUID());
+        link.setDomainId("domain");
+        linkDomainId.getLinks().add(link);
+        assertInvalid(linkDomainId);
+
+        var badLinkTarget = createActT();
+        badLinkTarget.getLinks().add(new EiffelEvent.Link(EiffelEvent.Link.Type.CAUSE, new UUID(0L, 0L)));
+        assertInvalid(badLinkTarget);
+
+        var badId = createActT();
+        badId.getMeta().setId(new UUID(0L, 0L));
+        assertInvalid(badId);
+
+        var sequenceProtection = createActT();
+        var security = new EiffelEvent.Meta.Security("CN=test");
+        security.setIntegrityProtection(new EiffelEvent.Meta.Security.IntegrityProtection(
+                "signature", EiffelEvent.Meta.Security.IntegrityProtection.Alg.RS256));
+        security.getIntegrityProtection().getSequenceProtection().add(
+                new EiffelEvent.Meta.Security.IntegrityProtection.SequenceProtection("sequence", 1));
+        sequenceProtection.getMeta().setSecurity(security);
+        assertInvalid(sequenceProtection);
+    }
+}
@@ -29,6 +29,7 @@ import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelBroadcasterConfig
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EventSet;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.JobCreatingJenkinsRule;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.Mocks;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.OverflowPolicy;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactCreatedEvent;
 import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEvent;
@@ -45,6 +46,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.Result;
 import java.io.IOException;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Rule;
@@ -70,9 +72,15 @@ public class SendEiffelEventStepTest {
     @Before
     public void setUp() {
         Mocks.messages.clear();
+        Mocks.queueFull = false;
         EiffelBroadcasterConfig.getInstance().setEnableBroadcaster(true);
     }
 
+    @After
+    public void tearDown() {
+        Mocks.queueFull = false;
+    }
+
     @Test
     public void testSuccessful_WithDefaultLinkType() throws Exception {
         var job = jenkins.createPipeline("successful_send_event_step_with_default_linktype.groovy");
@@ -99,6 +107,23 @@ public class SendEiffelEventStepTest {
                 job.getBuildByNumber(1));
     }
 
+    @Test
+    public void testFailed_QueueFullWithRejectPolicy() throws Exception {
+        EiffelBroadcasterConfig.getInstance().setOverflowPolicy(OverflowPolicy.REJECT);
+        Mocks.queueFull = true;
+        var job = jenkins.createPipeline("successful_send_event_step_with_default_linktype.groovy");
+        var build = jenkins.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+        jenkins.assertLogContains("EventQueueFullException", build);
+    }
+
+    @Test
+    public void testSuccessful_QueueFullWithDropNewestPolicy() throws Exception {
+        EiffelBroadcasterConfig.getInstance().setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+        Mocks.queueFull = true;
+        var job = jenkins.createPipeline("successful_send_event_step_with_default_linktype.groovy");
+        jenkins.assertBuildStatus(Result.SUCCESS, job.scheduleBuild2(0));
+    }
+
     @Test
     public void testSuccessful_WithCustomLinkType() throws Exception {
         var job = jenkins.createPipeline("successful_send_event_step_with_custom_linktype.groovy");
@@ -0,0 +1,118 @@
+/**
+ The MIT License
+
+ Copyright 2024 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.routingkeys;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelArtifactCreatedEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEventFactory;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TemplateRoutingKeyProviderTest {
+    @Test
+    public void testGetRoutingKey_UsesUnderscoreInsteadOfNull() {
+        var rp = new TemplateRoutingKeyProvider("eiffel.{type}.{tag}.{domainId}");
+        var event = EiffelEventFactory.getInstance().create(EiffelArtifactCreatedEvent.class);
+        assertThat(rp.getRoutingKey(event), is("eiffel.EiffelArtifactCreatedEvent._._"));
+    }
+
+    @Test
+    public void testGetRoutingKey_ReplacesDotsInValues() {
+        var rp = new TemplateRoutingKeyProvider("eiffel.{type}.{domainId}");
+        var event = EiffelEventFactory.getInstance().create(EiffelArtifactCreatedEvent.class);
+        event.getMeta().getSource().setDomainId("example.com");
+        assertThat(rp.getRoutingKey(event), is("eiffel.EiffelArtifactCreatedEvent.example_com"));
+    }
+
+    @Test
+    public void testGetRoutingKey_UsesActivityFields() {
+        var rp = new TemplateRoutingKeyProvider("{type}.{category}.{job}");
+        var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+        event.getData().setName("folder/job");
+        event.getData().getCategories().add("first");
+        event.getData().getCategories().add("second");
+        assertThat(rp.getRoutingKey(event), is("EiffelActivityTriggeredEvent.first.folder/job"));
+
+        var other = EiffelEventFactory.getInstance().create(EiffelArtifactCreatedEvent.class);
+        assertThat(rp.getRoutingKey(other), is("EiffelArtifactCreatedEvent._._"));
+    }
+
+    @Test
+    public void testGetRoutingKey_UsesTagIfSet() {
+        var rp = new TemplateRoutingKeyProvider("{type}.{tag}");
+        var event = EiffelEventFactory.getInstance().create(EiffelArtifactCreatedEvent.class);
+        assertThat(rp.getRoutingKey(event), is("EiffelArtifactCreatedEvent._"));
+        rp.setTag("some-tag");
+        assertThat(rp.getRoutingKey(event), is("EiffelArtifactCreatedEvent.some-tag"));
+    }
+
+    @Test
+    public void testGetRoutingKey_CachesPerTypeAndDomainId() {
+        var rp = new TemplateRoutingKeyProvider("eiffel.{type}.{domainId}");
+        var event1 = EiffelEventFactory.getInstance().create(EiffelArtifactCreatedEvent.class);
+        var event2 = EiffelEventFactory.getInstance().create(EiffelArtifactCreatedEvent.class);
+        assertThat(rp.getRoutingKey(event2), sameInstance(rp.getRoutingKey(event1)));
+
+        event2.getMeta().getSource().setDomainId("some-domainid");
+        assertThat(rp.getRoutingKey(event2), is("eiffel.EiffelArtifactCreatedEvent.some-domainid"));
+        assertThat(rp.getRoutingKey(event1), is("eiffel.EiffelArtifactCreatedEvent._"));
+    }
+
+    @Test
+    public void testGetRoutingKey_FallsBackToSepiaFormatForInvalidTemplate() {
+        var rp = new TemplateRoutingKeyProvider("eiffel.{foo}");
+        rp.setTag("some-tag");
+        var event = EiffelEventFactory.getInstance().create(EiffelArtifactCreatedEvent.class);
+        assertThat(rp.getRoutingKey(event), is("eiffel._.EiffelArtifactCreatedEvent.some-tag._"));
+        rp.setTemplate("{type}");
+        assertThat(rp.getRoutingKey(event), is("EiffelArtifactCreatedEvent"));
+    }
+
+    @Test
+    public void testCompile_CachesOnlyIfTemplateIsDeterminedByTypeAndDomainId() {
+        var rp = new TemplateRoutingKeyProvider("");
+        assertThat(TemplateRoutingKeyProvider.compile("{type}.{tag}.{domainId}", rp).isCached(), is(true));
+        assertThat(TemplateRoutingKeyProvider.compile("{type}.{job}", rp).isCached(), is(false));
+        assertThat(TemplateRoutingKeyProvider.compile("{type}.{host}", rp).isCached(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompile_RejectsUnknownField() {
+        TemplateRoutingKeyProvider.compile("eiffel.{foo}", new TemplateRoutingKeyProvider(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompile_RejectsUnclosedBrace() {
+        TemplateRoutingKeyProvider.compile("eiffel.{type", new TemplateRoutingKeyProvider(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompile_RejectsBlankTemplate() {
+        TemplateRoutingKeyProvider.compile(" ", new TemplateRoutingKeyProvider(""));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ The MIT License
+
+ Copyright 2023 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEventFactory;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.HashAlgorithm;
+import com.cloudbees.plugins.credentials.common.CertificateCredentials;
+import java.util.concurrent.TimeUnit;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the throughput of signing threads that look up their key in the {@link SigningKeyCache},
+ * compared to serializing the lookups on a global lock like the cache used to do.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class SigningKeyCacheBenchmark {
+    @State(Scope.Benchmark)
+    public static class CacheState extends JmhBenchmarkState {
+        final Object lock = new Object();
+        CertificateCredentials cred;
+
+        @Override
+        public void setup() throws Exception {
+            cred = new TestKeyStore().createCredential("benchmark-id");
+            SigningKeyCache.getInstance().get(cred);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EventState {
+        final EiffelActivityTriggeredEvent event = createEvent();
+
+        private static EiffelActivityTriggeredEvent createEvent() {
+            var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+            event.getData().setName("benchmark");
+            return event;
+        }
+    }
+
+    @Benchmark
+    public SigningKeyCache.Item get(CacheState state) throws Exception {
+        return SigningKeyCache.getInstance().get(state.cred);
+    }
+
+    @Benchmark
+    public SigningKeyCache.Item getWithGlobalLock(CacheState state) throws Exception {
+        synchronized (state.lock) {
+            return SigningKeyCache.getInstance().get(state.cred);
+        }
+    }
+
+    @Benchmark
+    public EiffelActivityTriggeredEvent sign(CacheState state, EventState eventState) throws Exception {
+        var item = SigningKeyCache.getInstance().get(state.cred);
+        eventState.event.sign(item.getKey(), item.getIdentity(), HashAlgorithm.SHA_256);
+        return eventState.event;
+    }
+}
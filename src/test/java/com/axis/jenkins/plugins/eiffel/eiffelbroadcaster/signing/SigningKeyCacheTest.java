@@ -31,7 +31,9 @@ import org.jvnet.hudson.test.JenkinsRule;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 /** Rudimentary happy path tests for {@link SigningKeyCache}. */
 public class SigningKeyCacheTest {
@@ -55,4 +57,46 @@ public class SigningKeyCacheTest {
         assertThat(item.getKey(), notNullValue());
         assertThat(cache.size(), is(1));
     }
+
+    @Test
+    public void testInvalidatesOnlyReplacedCredentials() throws Exception {
+        var testKeyStore = new TestKeyStore();
+        var cred = testKeyStore.createCredential("replaced-id");
+        var otherCred = testKeyStore.createCredential("other-id");
+        var cache = new SigningKeyCache(Runnable::run);
+        var item = cache.get(cred);
+        cache.get(otherCred);
+
+        assertThat(cache.invalidateIfChanged(cred), is(false));
+        assertThat(cache.get(cred), sameInstance(item));
+
+        var replacement = testKeyStore.createCredential("replaced-id");
+        assertThat(cache.invalidateIfChanged(replacement), is(true));
+        assertThat(cache.size(), is(1));
+        assertThat(cache.get(replacement), not(sameInstance(item)));
+    }
+
+    @Test
+    public void testSavingReplacedCredentialInvalidatesCache() throws Exception {
+        var testKeyStore = new TestKeyStore();
+        var cred = testKeyStore.createCredential("saved-id");
+        var credProvider = SystemCredentialsProvider.getInstance();
+        credProvider.getCredentials().add(cred);
+        credProvider.save();
+
+        var cache = SigningKeyCache.getInstance();
+        cache.clear();
+        try {
+            cache.get(cred);
+            credProvider.save();
+            assertThat(cache.size(), is(1));
+
+            credProvider.getCredentials().set(
+                    credProvider.getCredentials().indexOf(cred), testKeyStore.createCredential("saved-id"));
+            credProvider.save();
+            assertThat(cache.size(), is(0));
+        } finally {
+            cache.clear();
+        }
+    }
 }
@@ -0,0 +1,79 @@
+/**
+ The MIT License
+
+ Copyright 2023 Axis Communications AB.
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in
+ all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ THE SOFTWARE.
+ */
+package com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.signing;
+
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.EiffelBroadcasterConfig;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelActivityTriggeredEvent;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.EiffelEventFactory;
+import com.axis.jenkins.plugins.eiffel.eiffelbroadcaster.eiffel.HashAlgorithm;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThrows;
+
+public class SystemEventSignerTest {
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    private static EiffelActivityTriggeredEvent createEvent() {
+        var event = EiffelEventFactory.getInstance().create(EiffelActivityTriggeredEvent.class);
+        event.getData().setName("activity name");
+        return event;
+    }
+
+    @Test
+    public void testDoesNotSignWhenDisabled() throws Exception {
+        EiffelBroadcasterConfig.getInstance().setSystemSigningEnabled(false);
+        assertThat(new SystemEventSigner().sign(createEvent()), is(false));
+    }
+
+    @Test
+    public void testLooksUpCredentialAgainWhenCredentialsChange() throws Exception {
+        final String credentialsId = "system-signing-id";
+        var cred = new TestKeyStore().createCredential(credentialsId);
+        var credProvider = SystemCredentialsProvider.getInstance();
+        credProvider.getCredentials().add(cred);
+        credProvider.save();
+
+        var config = EiffelBroadcasterConfig.getInstance();
+        config.setSystemSigningEnabled(true);
+        config.setSystemSigningCredentialsId(credentialsId);
+        config.setSystemSigningHashAlg(HashAlgorithm.SHA_256);
+
+        var event = createEvent();
+        assertThat(new SystemEventSigner().sign(event), is(true));
+        assertThat(event.getMeta().getSecurity().getIntegrityProtection(), notNullValue());
+
+        // Removing the credential is noticed by the next signing.
+        credProvider.getCredentials().remove(cred);
+        credProvider.save();
+        assertThrows(InvalidCertificateConfigurationException.class,
+                () -> new SystemEventSigner().sign(createEvent()));
+    }
+}